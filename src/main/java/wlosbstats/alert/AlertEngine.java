@@ -0,0 +1,303 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.alert;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import wlosbstats.snapshot.ColumnarStatistics;
+import wlosbstats.snapshot.NameDictionary;
+import wlosbstats.snapshot.NamePattern;
+import wlosbstats.snapshot.StatisticsDictionary;
+import wlosbstats.snapshot.StatisticsSnapshot;
+import wlosbstats.util.LongIntHashMap;
+
+/**
+ * Evaluates the alerting rules on each published snapshot and publishes a
+ * notification only when the state of a rule changes for a statistic (raised,
+ * cleared or value changed). The rules are compiled into a plan indexed by
+ * metric id, so a value is only compared with the rules of its metric. The
+ * plan is rebuilt when the rules change : the states of the unchanged rules
+ * are carried over so their active alerts are not raised again.
+ */
+public class AlertEngine {
+
+	/**
+	 * Receives the notifications of the engine
+	 */
+	public interface NotificationPublisher {
+		public void publish(String type, String message, Map<String, Object> userData, long timeStamp);
+	}
+
+	/**
+	 * State of one rule for the statistics of one query
+	 */
+	private static class RuleState {
+		private final LongIntHashMap slots = new LongIntHashMap(INITIAL_STATES);
+		private boolean[] raised = new boolean[INITIAL_STATES];
+		private double[] lastValues = new double[INITIAL_STATES];
+		private int size = 0;
+
+		private int getSlot(long key) {
+
+			int slot = slots.get(key);
+			if (slot != LongIntHashMap.ABSENT) {
+				return slot;
+			}
+			if (size == raised.length) {
+				raised = Arrays.copyOf(raised, size * 2);
+				lastValues = Arrays.copyOf(lastValues, size * 2);
+			}
+			slot = size++;
+			lastValues[slot] = Double.NaN;
+			slots.put(key, slot);
+			return slot;
+		}
+	}
+
+	/**
+	 * Compiled rules
+	 */
+	private static class Plan {
+		private final AlertRule[] rules;
+		private final NamePattern[] servicePatterns;
+		private final int[][] rulesByMetric;
+		private final Map<String, RuleState[]> states = new HashMap<>();
+
+		private Plan(AlertRule[] rules, Plan previous) {
+
+			this.rules = rules;
+			this.servicePatterns = new NamePattern[rules.length];
+			int[] metricIds = new int[rules.length];
+			int maxMetricId = -1;
+			for (int i = 0; i < rules.length; i++) {
+				// The metric of a rule is checked by the rule (AlertRule)
+				metricIds[i] = StatisticsDictionary.METRICS.findId(rules[i].getMetricName());
+				maxMetricId = Math.max(maxMetricId, metricIds[i]);
+				if (rules[i].getServicePattern() != null) {
+					servicePatterns[i] = new NamePattern(rules[i].getServicePattern(), StatisticsDictionary.SERVICES);
+				}
+			}
+
+			this.rulesByMetric = new int[maxMetricId + 1][];
+			for (int i = 0; i < rules.length; i++) {
+				if (metricIds[i] == NameDictionary.UNKNOWN) {
+					continue;
+				}
+				int[] metricRules = rulesByMetric[metricIds[i]];
+				metricRules = (metricRules == null) ? new int[1] : Arrays.copyOf(metricRules, metricRules.length + 1);
+				metricRules[metricRules.length - 1] = i;
+				rulesByMetric[metricIds[i]] = metricRules;
+			}
+
+			// -----------------------------------------------------
+			// States of the unchanged rules (same definition)
+			if (previous != null) {
+
+				int[] previousIndexes = new int[rules.length];
+				for (int i = 0; i < rules.length; i++) {
+					previousIndexes[i] = -1;
+					for (int j = 0; j < previous.rules.length; j++) {
+						if (rules[i].toString().equals(previous.rules[j].toString())) {
+							previousIndexes[i] = j;
+							break;
+						}
+					}
+				}
+
+				for (Map.Entry<String, RuleState[]> entry : previous.states.entrySet()) {
+					RuleState[] states = new RuleState[rules.length];
+					for (int i = 0; i < rules.length; i++) {
+						states[i] = (previousIndexes[i] >= 0) ? entry.getValue()[previousIndexes[i]] : new RuleState();
+					}
+					this.states.put(entry.getKey(), states);
+				}
+			}
+			// -----------------------------------------------------
+		}
+	}
+
+	// Notification types
+	public final static String ALERT_RAISED_TYPE = "wlosbstats.alert.raised";
+	public final static String ALERT_CLEARED_TYPE = "wlosbstats.alert.cleared";
+	public final static String ALERT_CHANGED_TYPE = "wlosbstats.alert.changed";
+
+	// Members
+	private final NotificationPublisher publisher;
+	private final Map<String, AlertRule> rules = new LinkedHashMap<>();
+	private Plan plan = new Plan(new AlertRule[0], null);
+
+	// Constants
+	private final static int INITIAL_STATES = 16;
+
+	/**
+	 *
+	 * @param publisher
+	 */
+	public AlertEngine(NotificationPublisher publisher) {
+		this.publisher = publisher;
+	}
+
+	/**
+	 * Adds (or replaces) a rule
+	 *
+	 * @param rule
+	 */
+	public synchronized void addRule(AlertRule rule) {
+		rules.put(rule.getName(), rule);
+		plan = new Plan(rules.values().toArray(new AlertRule[rules.size()]), plan);
+	}
+
+	/**
+	 *
+	 * @param name
+	 * @return true if the rule existed
+	 */
+	public synchronized boolean removeRule(String name) {
+
+		if (rules.remove(name) == null) {
+			return false;
+		}
+		plan = new Plan(rules.values().toArray(new AlertRule[rules.size()]), plan);
+		return true;
+	}
+
+	/**
+	 * @return The rules
+	 */
+	public synchronized List<AlertRule> getRules() {
+		return new ArrayList<>(rules.values());
+	}
+
+	/**
+	 * Evaluates the rules on the values of the snapshot
+	 *
+	 * @param snapshot
+	 */
+	public synchronized void evaluate(StatisticsSnapshot snapshot) {
+
+		if (plan.rules.length == 0) {
+			return;
+		}
+
+		String scopeKey = snapshot.scopeKey();
+		RuleState[] states = plan.states.get(scopeKey);
+		if (states == null) {
+			states = new RuleState[plan.rules.length];
+			for (int i = 0; i < states.length; i++) {
+				states[i] = new RuleState();
+			}
+			plan.states.put(scopeKey, states);
+		}
+
+		ColumnarStatistics columns = snapshot.columns();
+		int[][] rulesByMetric = plan.rulesByMetric;
+		for (int row = 0; row < columns.size(); row++) {
+
+			long key = columns.getKey(row);
+			int metricId = StatisticsDictionary.getMetricId(key);
+			if (metricId >= rulesByMetric.length || rulesByMetric[metricId] == null) {
+				continue;
+			}
+
+			double value = columns.getValue(row);
+			if (Double.isNaN(value)) {
+				continue;
+			}
+
+			for (int ruleIndex : rulesByMetric[metricId]) {
+				NamePattern servicePattern = plan.servicePatterns[ruleIndex];
+				if (servicePattern == null || servicePattern.matches(StatisticsDictionary.getServiceId(key))) {
+					evaluate(plan.rules[ruleIndex], states[ruleIndex], key, value, snapshot);
+				}
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param rule
+	 * @param state
+	 * @param key
+	 * @param value
+	 * @param snapshot
+	 */
+	private void evaluate(AlertRule rule, RuleState state, long key, double value, StatisticsSnapshot snapshot) {
+
+		int slot = state.getSlot(key);
+		boolean raised = state.raised[slot];
+		double lastValue = state.lastValues[slot];
+		state.lastValues[slot] = value;
+
+		switch (rule.getOperator()) {
+		case ABOVE:
+			if (!raised && value > rule.getThreshold()) {
+				state.raised[slot] = true;
+				publish(ALERT_RAISED_TYPE, rule, key, value, lastValue, snapshot);
+			} else if (raised && value <= rule.getClearThreshold()) {
+				state.raised[slot] = false;
+				publish(ALERT_CLEARED_TYPE, rule, key, value, lastValue, snapshot);
+			}
+			break;
+		case BELOW:
+			if (!raised && value < rule.getThreshold()) {
+				state.raised[slot] = true;
+				publish(ALERT_RAISED_TYPE, rule, key, value, lastValue, snapshot);
+			} else if (raised && value >= rule.getClearThreshold()) {
+				state.raised[slot] = false;
+				publish(ALERT_CLEARED_TYPE, rule, key, value, lastValue, snapshot);
+			}
+			break;
+		case CHANGED:
+			if (!Double.isNaN(lastValue) && value != lastValue) {
+				publish(ALERT_CHANGED_TYPE, rule, key, value, lastValue, snapshot);
+			}
+			break;
+		}
+	}
+
+	/**
+	 *
+	 * @param type
+	 * @param rule
+	 * @param key
+	 * @param value
+	 * @param previousValue
+	 * @param snapshot
+	 */
+	private void publish(String type, AlertRule rule, long key, double value, double previousValue, StatisticsSnapshot snapshot) {
+
+		String serviceName = StatisticsDictionary.SERVICES.getName(StatisticsDictionary.getServiceId(key));
+		String resourceStatisticName = StatisticsDictionary.RESOURCE_STATISTICS.getName(StatisticsDictionary.getResourceStatisticId(key));
+
+		Map<String, Object> userData = new HashMap<>();
+		userData.put("rule", rule.getName());
+		userData.put("scopeKey", snapshot.scopeKey());
+		userData.put("serviceName", serviceName);
+		userData.put("resourceStatisticName", resourceStatisticName);
+		userData.put("statisticName", rule.getMetricName());
+		userData.put("value", value);
+		userData.put("previousValue", previousValue);
+		userData.put("threshold", rule.getThreshold());
+		userData.put("version", snapshot.getVersion());
+
+		String message = "Rule [" + rule.getName() + "] " + type.substring(type.lastIndexOf('.') + 1) + " for [" + serviceName + "/" + resourceStatisticName + "/" + rule.getMetricName() + "] - Value is [" + value + "]";
+		publisher.publish(type, message, userData, snapshot.getCaptureTime());
+	}
+}
@@ -0,0 +1,157 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.alert;
+
+import wlosbstats.snapshot.MetricCatalog;
+import wlosbstats.util.AppProperties;
+
+/**
+ * Alerting rule on a metric of the services. Definition :
+ * "name,metric,operator,threshold[,clearThreshold[,servicePattern]]" where the
+ * operator is '>' (raised above threshold, cleared at or below clearThreshold),
+ * '<' (raised below threshold, cleared at or above clearThreshold) or
+ * 'changed' (notified at each change of the value, the thresholds are ignored).
+ * The distance between threshold and clearThreshold is the hysteresis.
+ */
+public class AlertRule {
+
+	/**
+	 * Condition of the rule
+	 */
+	public enum Operator {
+		ABOVE(">"), BELOW("<"), CHANGED("changed");
+
+		private final String symbol;
+
+		private Operator(String symbol) {
+			this.symbol = symbol;
+		}
+
+		public String getSymbol() {
+			return symbol;
+		}
+
+		/**
+		 *
+		 * @param symbol
+		 * @return The operator of the symbol
+		 * @throws IllegalArgumentException If the symbol is unknown
+		 */
+		public static Operator fromSymbol(String symbol) {
+			for (Operator operator : values()) {
+				if (operator.symbol.equalsIgnoreCase(symbol)) {
+					return operator;
+				}
+			}
+			throw new IllegalArgumentException("Operator [" + symbol + "] not supported - Use [>], [<] or [changed]");
+		}
+	}
+
+	// Members
+	private final String name;
+	private final String metricName;
+	private final Operator operator;
+	private final double threshold;
+	private final double clearThreshold;
+	private final String servicePattern;
+
+	/**
+	 *
+	 * @param name
+	 * @param metricName For example error-ratio, response-time_max or status_current
+	 * @param operator
+	 * @param threshold
+	 * @param clearThreshold
+	 * @param servicePattern Wildcard pattern of the services ('*' and '?') or null for all the services
+	 */
+	public AlertRule(String name, String metricName, Operator operator, double threshold, double clearThreshold, String servicePattern) {
+
+		if (name == null || name.trim().length() == 0 || metricName == null || metricName.trim().length() == 0 || operator == null) {
+			throw new IllegalArgumentException("The name, the metric and the operator of a rule are mandatory");
+		}
+		if (!MetricCatalog.isKnownMetric(metricName.trim())) {
+			throw new IllegalArgumentException("Unknown metric [" + metricName.trim() + "] in the rule [" + name.trim() + "] - Use a statistic with its suffix (for example response-time_max or status_current) or a derived value (for example error-ratio)");
+		}
+		if ((operator == Operator.ABOVE && clearThreshold > threshold) || (operator == Operator.BELOW && clearThreshold < threshold)) {
+			throw new IllegalArgumentException("The clear threshold [" + clearThreshold + "] of the rule [" + name + "] must be on the other side of the threshold [" + threshold + "]");
+		}
+
+		this.name = name.trim();
+		this.metricName = metricName.trim();
+		this.operator = operator;
+		this.threshold = threshold;
+		this.clearThreshold = clearThreshold;
+		this.servicePattern = (servicePattern != null && servicePattern.trim().length() > 0) ? servicePattern.trim() : null;
+	}
+
+	/**
+	 *
+	 * @param definition "name,metric,operator,threshold[,clearThreshold[,servicePattern]]"
+	 * @return The rule
+	 * @throws IllegalArgumentException If the definition is not valid
+	 */
+	public static AlertRule parse(String definition) {
+
+		String[] fields = definition.split(AppProperties.ALERT_RULE_FIELD_SEPARATOR, -1);
+		if (fields.length < 3 || fields.length > 6) {
+			throw new IllegalArgumentException("Invalid rule [" + definition + "] - Expected [name,metric,operator,threshold[,clearThreshold[,servicePattern]]]");
+		}
+
+		Operator operator = Operator.fromSymbol(fields[2].trim());
+		double threshold = 0;
+		double clearThreshold = 0;
+		if (operator != Operator.CHANGED) {
+			if (fields.length < 4) {
+				throw new IllegalArgumentException("Invalid rule [" + definition + "] - The threshold is mandatory");
+			}
+			threshold = Double.parseDouble(fields[3].trim());
+			clearThreshold = (fields.length > 4 && fields[4].trim().length() > 0) ? Double.parseDouble(fields[4].trim()) : threshold;
+		}
+		return new AlertRule(fields[0], fields[1], operator, threshold, clearThreshold, (fields.length > 5) ? fields[5] : null);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getMetricName() {
+		return metricName;
+	}
+
+	public Operator getOperator() {
+		return operator;
+	}
+
+	public double getThreshold() {
+		return threshold;
+	}
+
+	public double getClearThreshold() {
+		return clearThreshold;
+	}
+
+	public String getServicePattern() {
+		return servicePattern;
+	}
+
+	/**
+	 * @return The definition of the rule
+	 */
+	@Override
+	public String toString() {
+		String separator = AppProperties.ALERT_RULE_FIELD_SEPARATOR;
+		return name + separator + metricName + separator + operator.getSymbol() + separator + threshold + separator + clearThreshold + separator + (servicePattern != null ? servicePattern : "");
+	}
+}
@@ -0,0 +1,103 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.baseline;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Statistic of a service deviating from its baseline (exponentially weighted
+ * mean and standard deviation) by more than the configured number of sigmas
+ */
+public class Anomaly {
+
+	// Members
+	private final String scopeKey;
+	private final String serviceName;
+	private final String resourceStatisticName;
+	private final String statisticName;
+	private final double value;
+	private final double mean;
+	private final double standardDeviation;
+	private final double deviation;
+	private final long sinceTime;
+	private final long captureTime;
+
+	/**
+	 *
+	 * @param scopeKey The query (see StatisticsSnapshot.toScopeKey)
+	 * @param serviceName
+	 * @param resourceStatisticName
+	 * @param statisticName
+	 * @param value The last value
+	 * @param mean The baseline before the last value
+	 * @param standardDeviation
+	 * @param deviation (value - mean) in number of standard deviations
+	 * @param sinceTime The capture time of the first anomalous value
+	 * @param captureTime The capture time of the last value
+	 */
+	@ConstructorProperties({"scopeKey", "serviceName", "resourceStatisticName", "statisticName", "value", "mean", "standardDeviation", "deviation", "sinceTime", "captureTime"})
+	public Anomaly(String scopeKey, String serviceName, String resourceStatisticName, String statisticName, double value, double mean, double standardDeviation, double deviation, long sinceTime, long captureTime) {
+		this.scopeKey = scopeKey;
+		this.serviceName = serviceName;
+		this.resourceStatisticName = resourceStatisticName;
+		this.statisticName = statisticName;
+		this.value = value;
+		this.mean = mean;
+		this.standardDeviation = standardDeviation;
+		this.deviation = deviation;
+		this.sinceTime = sinceTime;
+		this.captureTime = captureTime;
+	}
+
+	public String getScopeKey() {
+		return scopeKey;
+	}
+
+	public String getServiceName() {
+		return serviceName;
+	}
+
+	public String getResourceStatisticName() {
+		return resourceStatisticName;
+	}
+
+	public String getStatisticName() {
+		return statisticName;
+	}
+
+	public double getValue() {
+		return value;
+	}
+
+	public double getMean() {
+		return mean;
+	}
+
+	public double getStandardDeviation() {
+		return standardDeviation;
+	}
+
+	public double getDeviation() {
+		return deviation;
+	}
+
+	public long getSinceTime() {
+		return sinceTime;
+	}
+
+	public long getCaptureTime() {
+		return captureTime;
+	}
+}
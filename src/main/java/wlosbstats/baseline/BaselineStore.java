@@ -0,0 +1,244 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.baseline;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import wlosbstats.snapshot.ColumnarStatistics;
+import wlosbstats.snapshot.StatisticsDictionary;
+import wlosbstats.snapshot.StatisticsSnapshot;
+import wlosbstats.util.LongIntHashMap;
+import wlosbstats.util.MonitorProperties;
+
+/**
+ * Baselines of the throughput, error ratio and latency of each service : an
+ * exponentially weighted mean and variance updated in O(1) at each snapshot.
+ * A value further than sigmaThreshold standard deviations from the baseline
+ * (computed before the value is added) flags the statistic as anomalous until
+ * it comes back within the threshold. The baselines are kept per query in
+ * primitive arrays, so the update of a known series doesn't allocate.
+ */
+public class BaselineStore {
+
+	/**
+	 * Baselines of one query (one slot per series)
+	 */
+	private static class ScopeBaselines {
+		private final LongIntHashMap slots = new LongIntHashMap(INITIAL_SERIES);
+		private long[] keys = new long[INITIAL_SERIES];
+		private double[] means = new double[INITIAL_SERIES];
+		private double[] variances = new double[INITIAL_SERIES];
+		private int[] samples = new int[INITIAL_SERIES];
+		private double[] lastValues = new double[INITIAL_SERIES];
+		private double[] lastMeans = new double[INITIAL_SERIES];
+		private double[] lastStandardDeviations = new double[INITIAL_SERIES];
+		private long[] anomalySinceTimes = new long[INITIAL_SERIES];
+		private long[] captureTimes = new long[INITIAL_SERIES];
+		private int size = 0;
+		private long lastCaptureTime = 0;
+
+		/**
+		 *
+		 * @param key
+		 * @return The slot of the series (created if needed)
+		 */
+		private int getSlot(long key) {
+
+			int slot = slots.get(key);
+			if (slot != LongIntHashMap.ABSENT) {
+				return slot;
+			}
+
+			if (size == keys.length) {
+				int capacity = size * 2;
+				keys = Arrays.copyOf(keys, capacity);
+				means = Arrays.copyOf(means, capacity);
+				variances = Arrays.copyOf(variances, capacity);
+				samples = Arrays.copyOf(samples, capacity);
+				lastValues = Arrays.copyOf(lastValues, capacity);
+				lastMeans = Arrays.copyOf(lastMeans, capacity);
+				lastStandardDeviations = Arrays.copyOf(lastStandardDeviations, capacity);
+				anomalySinceTimes = Arrays.copyOf(anomalySinceTimes, capacity);
+				captureTimes = Arrays.copyOf(captureTimes, capacity);
+			}
+			slot = size++;
+			keys[slot] = key;
+			slots.put(key, slot);
+			return slot;
+		}
+	}
+
+	// Members
+	private final double alpha;
+	private final double sigmaThreshold;
+	private final int warmupSamples;
+	private final Map<String, ScopeBaselines> scopes = new ConcurrentHashMap<>();
+
+	// Statistics having a baseline
+	private final static int MESSAGE_RATE_ID = StatisticsDictionary.METRICS.getId(MonitorProperties.OSB_MESSAGE_COUNT_PROPERTY + MonitorProperties.OSB_DERIVED_PROPERTY_RATE);
+	private final static int ERROR_RATIO_ID = StatisticsDictionary.METRICS.getId(MonitorProperties.OSB_ERROR_RATIO_PROPERTY);
+	private final static int RESPONSE_TIME_ID = StatisticsDictionary.METRICS.getId(MonitorProperties.OSB_RESPONSE_TIME_INTERVAL_PROPERTY + MonitorProperties.OSB_STATISTIC_TYPE_INTERVAL_PROPERTY_INTERVAL_AVERAGE);
+	private final static int RESPONSE_TIME_COUNT_ID = StatisticsDictionary.METRICS.getId(MonitorProperties.OSB_RESPONSE_TIME_INTERVAL_PROPERTY + MonitorProperties.OSB_STATISTIC_TYPE_INTERVAL_PROPERTY_INTERVAL_COUNT);
+
+	// Constants
+	private final static int INITIAL_SERIES = 64;
+	private final static double MIN_RELATIVE_DEVIATION = 0.01;
+	private final static long NO_ANOMALY = 0;
+
+	/**
+	 *
+	 * @param halfLifeSamples The number of samples after which the weight of a sample is divided by 2
+	 * @param sigmaThreshold The number of standard deviations from the mean flagging an anomaly
+	 * @param warmupSamples The number of samples of a series before its anomalies are flagged
+	 */
+	public BaselineStore(int halfLifeSamples, double sigmaThreshold, int warmupSamples) {
+		this.alpha = 1 - Math.pow(0.5, 1d / Math.max(1, halfLifeSamples));
+		this.sigmaThreshold = sigmaThreshold;
+		this.warmupSamples = warmupSamples;
+	}
+
+	/**
+	 * Updates the baselines with the values of the snapshot
+	 *
+	 * @param snapshot
+	 */
+	public void record(StatisticsSnapshot snapshot) {
+
+		String scopeKey = snapshot.scopeKey();
+		ScopeBaselines scope = scopes.get(scopeKey);
+		if (scope == null) {
+			synchronized (scopes) {
+				scope = scopes.get(scopeKey);
+				if (scope == null) {
+					scope = new ScopeBaselines();
+					scopes.put(scopeKey, scope);
+				}
+			}
+		}
+
+		long captureTime = snapshot.getCaptureTime();
+		ColumnarStatistics columns = snapshot.columns();
+
+		synchronized (scope) {
+			for (int row = 0; row < columns.size(); row++) {
+
+				long key = columns.getKey(row);
+				int metricId = StatisticsDictionary.getMetricId(key);
+				if (metricId == RESPONSE_TIME_ID) {
+					// No latency without message
+					if (!(columns.getValue(StatisticsDictionary.withMetric(key, RESPONSE_TIME_COUNT_ID), 0) > 0)) {
+						continue;
+					}
+				} else if (metricId != MESSAGE_RATE_ID && metricId != ERROR_RATIO_ID) {
+					continue;
+				}
+
+				double value = columns.getValue(row);
+				if (!Double.isNaN(value)) {
+					update(scope, scope.getSlot(key), value, captureTime);
+				}
+			}
+			scope.lastCaptureTime = captureTime;
+		}
+	}
+
+	/**
+	 * @return The statistics anomalous in the last snapshot of their query (all the queries)
+	 */
+	public List<Anomaly> getAnomalies() {
+
+		List<Anomaly> anomalies = new ArrayList<>();
+		for (Map.Entry<String, ScopeBaselines> entry : scopes.entrySet()) {
+
+			ScopeBaselines scope = entry.getValue();
+			synchronized (scope) {
+				for (int slot = 0; slot < scope.size; slot++) {
+					if (scope.anomalySinceTimes[slot] != NO_ANOMALY && scope.captureTimes[slot] == scope.lastCaptureTime) {
+						anomalies.add(toAnomaly(entry.getKey(), scope, slot));
+					}
+				}
+			}
+		}
+		return anomalies;
+	}
+
+	/**
+	 * Flags the value (against the baseline before the value) and adds it to the baseline
+	 *
+	 * @param scope
+	 * @param slot
+	 * @param value
+	 * @param captureTime
+	 */
+	private void update(ScopeBaselines scope, int slot, double value, long captureTime) {
+
+		double mean = scope.means[slot];
+		double variance = scope.variances[slot];
+		int samples = scope.samples[slot];
+
+		if (samples == 0) {
+			scope.means[slot] = value;
+			scope.variances[slot] = 0;
+		} else {
+			double diff = value - mean;
+			double standardDeviation = Math.sqrt(variance);
+
+			// A (nearly) constant series gets a minimal deviation relative to its mean
+			double threshold = sigmaThreshold * Math.max(standardDeviation, MIN_RELATIVE_DEVIATION * Math.abs(mean));
+			boolean anomalous = samples >= warmupSamples && Math.abs(diff) > threshold;
+			if (!anomalous) {
+				scope.anomalySinceTimes[slot] = NO_ANOMALY;
+			} else if (scope.anomalySinceTimes[slot] == NO_ANOMALY) {
+				scope.anomalySinceTimes[slot] = captureTime;
+			}
+			scope.lastMeans[slot] = mean;
+			scope.lastStandardDeviations[slot] = standardDeviation;
+
+			// Exponentially weighted mean and variance
+			double increment = alpha * diff;
+			scope.means[slot] = mean + increment;
+			scope.variances[slot] = (1 - alpha) * (variance + diff * increment);
+		}
+		scope.lastValues[slot] = value;
+		scope.captureTimes[slot] = captureTime;
+		scope.samples[slot] = (samples < Integer.MAX_VALUE) ? samples + 1 : samples;
+	}
+
+	/**
+	 *
+	 * @param scopeKey
+	 * @param scope
+	 * @param slot
+	 * @return
+	 */
+	private static Anomaly toAnomaly(String scopeKey, ScopeBaselines scope, int slot) {
+
+		long key = scope.keys[slot];
+		double mean = scope.lastMeans[slot];
+		double standardDeviation = scope.lastStandardDeviations[slot];
+		double value = scope.lastValues[slot];
+		double deviation = (standardDeviation > 0) ? (value - mean) / standardDeviation : Double.POSITIVE_INFINITY * Math.signum(value - mean);
+
+		return new Anomaly(scopeKey,
+				StatisticsDictionary.SERVICES.getName(StatisticsDictionary.getServiceId(key)),
+				StatisticsDictionary.RESOURCE_STATISTICS.getName(StatisticsDictionary.getResourceStatisticId(key)),
+				StatisticsDictionary.METRICS.getName(StatisticsDictionary.getMetricId(key)),
+				value, mean, standardDeviation, deviation, scope.anomalySinceTimes[slot], scope.captureTimes[slot]);
+	}
+}
@@ -0,0 +1,233 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.collector;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Collection job run by the CollectionScheduler : which statistics to collect
+ * (server, OSB type, resource type and statistic type), how often, and the
+ * timing statistics of its previous runs.
+ */
+public class CollectionJob {
+
+	// Definition
+	private final String name;
+	private final String serverName;
+	private final String osbResourceType;
+	private final String resourceType;
+	private final String statisticType;
+	private final long periodMillis;
+	private final long jitterMillis;
+
+	// Scheduling (only used by the scheduler thread)
+	private long nextTickNanos = 0;
+	private long nextRunNanos = 0;
+	private final AtomicBoolean running = new AtomicBoolean(false);
+
+	// Statistics
+	private volatile long runCount = 0;
+	private volatile long failureCount = 0;
+	private volatile long missedTicks = 0;
+	private volatile long lastStartTime = 0;
+	private volatile long lastDurationMillis = 0;
+	private volatile long maxDurationMillis = 0;
+	private volatile long lastLagMillis = 0;
+	private volatile long maxLagMillis = 0;
+
+	/**
+	 *
+	 * @param name
+	 * @param serverName The server (if null, the statistics are collected for the cluster)
+	 * @param osbResourceType
+	 * @param resourceType
+	 * @param statisticType The statistic type (if null, all the types are collected)
+	 * @param periodMillis
+	 * @param jitterMillis The maximum random delay added to each run (0 to run exactly on the tick)
+	 */
+	public CollectionJob(String name, String serverName, String osbResourceType, String resourceType, String statisticType, long periodMillis, long jitterMillis) {
+
+		if (name == null || name.trim().length() == 0) {
+			throw new IllegalArgumentException("The name of the collection job is mandatory");
+		}
+		if (periodMillis <= 0) {
+			throw new IllegalArgumentException("The period of the collection job [" + name + "] must be positive");
+		}
+
+		this.name = name.trim();
+		this.serverName = serverName;
+		this.osbResourceType = osbResourceType;
+		this.resourceType = resourceType;
+		this.statisticType = statisticType;
+		this.periodMillis = periodMillis;
+		this.jitterMillis = Math.max(0, Math.min(jitterMillis, periodMillis / 2));
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getServerName() {
+		return serverName;
+	}
+
+	public String getOsbResourceType() {
+		return osbResourceType;
+	}
+
+	public String getResourceType() {
+		return resourceType;
+	}
+
+	public String getStatisticType() {
+		return statisticType;
+	}
+
+	public long getPeriodMillis() {
+		return periodMillis;
+	}
+
+	public long getJitterMillis() {
+		return jitterMillis;
+	}
+
+	/**
+	 * @return The time of the last run (0 if the job never ran)
+	 */
+	public long getLastStartTime() {
+		return lastStartTime;
+	}
+
+	/**
+	 * @return The duration of the last run
+	 */
+	public long getLastDurationMillis() {
+		return lastDurationMillis;
+	}
+
+	/**
+	 * @return The delay between the planned time and the real start time of the last run
+	 */
+	public long getLastLagMillis() {
+		return lastLagMillis;
+	}
+
+	/**
+	 * @return The number of ticks skipped because the previous run was still in progress
+	 */
+	public long getMissedTicks() {
+		return missedTicks;
+	}
+
+	/**
+	 * @return true if a run is in progress
+	 */
+	public boolean isRunning() {
+		return running.get();
+	}
+
+	/**
+	 * Timing statistics of the job
+	 *
+	 * @return The KEY is the NAME of the statistic
+	 */
+	public Map<String, Long> getStatistics() {
+
+		Map<String, Long> statistics = new LinkedHashMap<>();
+		statistics.put("periodMillis", periodMillis);
+		statistics.put("jitterMillis", jitterMillis);
+		statistics.put("runs", runCount);
+		statistics.put("failures", failureCount);
+		statistics.put("missedTicks", missedTicks);
+		statistics.put("lastStartTime", lastStartTime);
+		statistics.put("lastDurationMillis", lastDurationMillis);
+		statistics.put("maxDurationMillis", maxDurationMillis);
+		statistics.put("lastLagMillis", lastLagMillis);
+		statistics.put("maxLagMillis", maxLagMillis);
+		statistics.put("running", running.get() ? 1L : 0L);
+		return statistics;
+	}
+
+	/**
+	 * @return Definition of the job (for the logs)
+	 */
+	public String toString() {
+		return "[" + name + "] (server [" + serverName + "] - osbType [" + osbResourceType + "] - resourceType [" + resourceType + "] - statisticType [" + statisticType + "] - every [" + periodMillis + "] ms)";
+	}
+
+	// -----------------------------------------------------------------
+	// Used by the scheduler
+	// ---------------------
+
+	long getNextTickNanos() {
+		return nextTickNanos;
+	}
+
+	long getNextRunNanos() {
+		return nextRunNanos;
+	}
+
+	/**
+	 * Plans the next run
+	 *
+	 * @param tickNanos The (fixed rate) tick
+	 * @param jitterNanos The random delay of this tick
+	 */
+	void plan(long tickNanos, long jitterNanos) {
+		nextTickNanos = tickNanos;
+		nextRunNanos = tickNanos + jitterNanos;
+	}
+
+	/**
+	 * @param ticks The number of ticks skipped
+	 */
+	void addMissedTicks(long ticks) {
+		missedTicks += ticks;
+	}
+
+	/**
+	 * @return true if the job can run (false if the previous run is still in progress)
+	 */
+	boolean tryStart() {
+		return running.compareAndSet(false, true);
+	}
+
+	/**
+	 * @param startTime
+	 * @param lagMillis
+	 */
+	void started(long startTime, long lagMillis) {
+		lastStartTime = startTime;
+		lastLagMillis = lagMillis;
+		maxLagMillis = Math.max(maxLagMillis, lagMillis);
+	}
+
+	/**
+	 * @param durationMillis
+	 * @param failed
+	 */
+	void finished(long durationMillis, boolean failed) {
+		runCount++;
+		if (failed) {
+			failureCount++;
+		}
+		lastDurationMillis = durationMillis;
+		maxDurationMillis = Math.max(maxDurationMillis, durationMillis);
+		running.set(false);
+	}
+	// -----------------------------------------------------------------
+}
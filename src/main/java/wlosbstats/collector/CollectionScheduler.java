@@ -0,0 +1,308 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.collector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import wlosbstats.util.AppLog;
+import wlosbstats.util.ContextAwareWork;
+
+import commonj.work.WorkManager;
+
+/**
+ * Runs the collection jobs in the background at a fixed rate (plus an optional
+ * jitter). The ticks are computed from the first tick of the job so the rate
+ * doesn't drift with the duration of the runs. When a run is still in progress
+ * at the next tick, the tick is skipped (and counted as missed) instead of
+ * queuing another run. The ticks are driven by a long-running (daemon) work
+ * of the work manager, so no thread is created outside the container.
+ */
+public class CollectionScheduler {
+
+	/**
+	 * Collects the statistics of a job (called from a work manager thread)
+	 */
+	public interface Collector {
+		public void collect(CollectionJob job) throws Exception;
+	}
+
+	// Members
+	private final Collector collector;
+	private final WorkManager workManager;
+	private final Map<String, CollectionJob> jobs = new ConcurrentHashMap<>();
+	private final Random random = new Random();
+	private final Object lock = new Object();
+	private volatile boolean stopped = true;
+	private volatile SchedulerWork schedulerWork = null;
+
+	// Constants
+	private final static long MAX_SLEEP_MILLIS = 1000;
+	private final static long NANOS_PER_MILLI = 1000000L;
+
+	/**
+	 *
+	 * @param collector
+	 * @param workManager The work manager running the scheduler and the jobs (if null, the scheduler can't be started)
+	 */
+	public CollectionScheduler(Collector collector, WorkManager workManager) {
+		this.collector = collector;
+		this.workManager = workManager;
+	}
+
+	/**
+	 * Starts the scheduler (as a daemon work of the work manager)
+	 */
+	public synchronized void start() {
+
+		if (!stopped) {
+			return;
+		}
+		if (workManager == null) {
+			AppLog.getLogger().error("No work manager available - The collection jobs are not started");
+			return;
+		}
+		stopped = false;
+
+		schedulerWork = new SchedulerWork();
+		try {
+			workManager.schedule(schedulerWork);
+		} catch (Exception ex) {
+			stopped = true;
+			schedulerWork = null;
+			AppLog.getLogger().error("Unable to start the collection scheduler - Message is [" + ex.getMessage() + "]");
+			return;
+		}
+		AppLog.getLogger().notice("Collection scheduler started with [" + jobs.size() + "] job(s)");
+	}
+
+	/**
+	 * Stops the scheduler (the runs in progress are not interrupted)
+	 */
+	public synchronized void stop() {
+
+		if (stopped) {
+			return;
+		}
+		stopped = true;
+
+		synchronized (lock) {
+			lock.notifyAll();
+		}
+		schedulerWork = null;
+		AppLog.getLogger().notice("Collection scheduler stopped");
+	}
+
+	/**
+	 * Adds a job (replacing the job having the same name). Its first run is planned one period from now.
+	 *
+	 * @param job
+	 */
+	public void addJob(CollectionJob job) {
+
+		long firstTick = System.nanoTime() + job.getPeriodMillis() * NANOS_PER_MILLI;
+		job.plan(firstTick, getJitterNanos(job));
+
+		CollectionJob previousJob = jobs.put(job.getName(), job);
+		if (previousJob != null) {
+			AppLog.getLogger().notice("Collection job " + previousJob + " replaced");
+		}
+		AppLog.getLogger().notice("Collection job " + job + " added");
+
+		synchronized (lock) {
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 *
+	 * @param name
+	 * @return true if the job was found
+	 */
+	public boolean removeJob(String name) {
+
+		CollectionJob job = (name != null) ? jobs.remove(name) : null;
+		if (job != null) {
+			AppLog.getLogger().notice("Collection job " + job + " removed");
+		}
+		return job != null;
+	}
+
+	/**
+	 *
+	 * @param name
+	 * @return The job or null if not found
+	 */
+	public CollectionJob getJob(String name) {
+		return (name != null) ? jobs.get(name) : null;
+	}
+
+	/**
+	 * @return The jobs currently scheduled
+	 */
+	public List<CollectionJob> getJobs() {
+		return new ArrayList<>(jobs.values());
+	}
+
+	/**
+	 * Main loop of the scheduler
+	 *
+	 * @param owner The work running the loop (the loop ends if the scheduler is stopped or restarted by another work)
+	 */
+	private void schedule(SchedulerWork owner) {
+
+		while (!stopped && schedulerWork == owner) {
+
+			long now = System.nanoTime();
+			long nextWakeUp = now + MAX_SLEEP_MILLIS * NANOS_PER_MILLI;
+
+			for (CollectionJob job : jobs.values()) {
+
+				if (now - job.getNextRunNanos() >= 0) {
+					dispatch(job, now);
+				}
+				if (job.getNextRunNanos() - nextWakeUp < 0) {
+					nextWakeUp = job.getNextRunNanos();
+				}
+			}
+
+			long sleepMillis = (nextWakeUp - System.nanoTime()) / NANOS_PER_MILLI;
+			if (sleepMillis > 0) {
+				synchronized (lock) {
+					try {
+						if (!stopped) {
+							lock.wait(sleepMillis);
+						}
+					} catch (InterruptedException ie) {
+						Thread.currentThread().interrupt();
+						AppLog.getLogger().warning("Collection scheduler interrupted");
+						return;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Plans the next tick of the job and runs it (unless the previous run is still in progress)
+	 *
+	 * @param job
+	 * @param now
+	 */
+	private void dispatch(final CollectionJob job, long now) {
+
+		final long plannedRun = job.getNextRunNanos();
+		long periodNanos = job.getPeriodMillis() * NANOS_PER_MILLI;
+
+		// -----------------------------------------------------
+		// Next tick on the fixed rate (the ticks already in the past are missed)
+		long nextTick = job.getNextTickNanos() + periodNanos;
+		if (now - nextTick >= 0) {
+			long lateTicks = ((now - nextTick) / periodNanos) + 1;
+			job.addMissedTicks(lateTicks);
+			nextTick += lateTicks * periodNanos;
+		}
+		job.plan(nextTick, getJitterNanos(job));
+		// -----------------------------------------------------
+
+		// -----------------------------------------------------
+		// Skip the tick if the previous run overruns
+		if (!job.tryStart()) {
+			job.addMissedTicks(1);
+			AppLog.getLogger().warning("Collection job [" + job.getName() + "] is still running - Tick skipped");
+			return;
+		}
+		// -----------------------------------------------------
+
+		ContextAwareWork work = new ContextAwareWork() {
+			public void doRun() {
+				runJob(job, plannedRun);
+			}
+		};
+
+		try {
+			workManager.schedule(work);
+		} catch (Exception ex) {
+			AppLog.getLogger().error("Unable to schedule the collection job [" + job.getName() + "] - Message is [" + ex.getMessage() + "]");
+			job.finished(0, true);
+		}
+	}
+
+	/**
+	 * Runs the job and records its timing statistics
+	 *
+	 * @param job
+	 * @param plannedRun
+	 */
+	private void runJob(CollectionJob job, long plannedRun) {
+
+		long start = System.nanoTime();
+		job.started(System.currentTimeMillis(), Math.max(0, (start - plannedRun) / NANOS_PER_MILLI));
+
+		boolean failed = false;
+		try {
+			collector.collect(job);
+		} catch (Exception ex) {
+			failed = true;
+			AppLog.getLogger().error("Collection job [" + job.getName() + "] failed - Message is [" + ex.getMessage() + "]");
+		} finally {
+			job.finished((System.nanoTime() - start) / NANOS_PER_MILLI, failed);
+		}
+	}
+
+	/**
+	 * Long-running work of the work manager driving the ticks until the scheduler is stopped
+	 */
+	private class SchedulerWork extends ContextAwareWork {
+
+		/**
+		 * The work runs until the scheduler is stopped (not on a thread of the pool)
+		 */
+		public boolean isDaemon() {
+			return true;
+		}
+
+		/**
+		 * Called by the container when it needs the work to stop (for example at shutdown)
+		 */
+		public void release() {
+			if (schedulerWork == this) {
+				stop();
+			}
+		}
+
+		public void doRun() {
+			schedule(this);
+		}
+	}
+
+	/**
+	 *
+	 * @param job
+	 * @return A random delay between 0 and the jitter of the job
+	 */
+	private long getJitterNanos(CollectionJob job) {
+
+		if (job.getJitterMillis() <= 0) {
+			return 0;
+		}
+		synchronized (random) {
+			return (long) (random.nextDouble() * job.getJitterMillis() * NANOS_PER_MILLI);
+		}
+	}
+}
@@ -0,0 +1,274 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.history;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import wlosbstats.util.AppLog;
+
+/**
+ * Segment file of the memory-mapped history. The file is mapped once and
+ * contains :
+ * - a header (magic, format version, start time, last time, number of records)
+ * - a table with the index of the last record of each series
+ * - fixed-width records (series id, timestamp, value, index of the previous record of the same series)
+ * The records of a series are chained backwards so a range query only reads
+ * the records of the series, directly from the mapping (no copy on the heap).
+ */
+class HistorySegment {
+
+	// Members
+	private final File file;
+	private final MappedByteBuffer buffer;
+	private final int maxSeries;
+	private final int maxRecords;
+	private final long startTime;
+	private final boolean writable;
+	private int recordCount;
+	private long lastTime;
+	private boolean unmapped = false;
+
+	// Constants
+	final static String FILE_PREFIX = "segment-";
+	final static String FILE_SUFFIX = ".dat";
+	private final static int MAGIC = 0x574C4F53;
+	private final static int FORMAT_VERSION = 1;
+	private final static int MAGIC_OFFSET = 0;
+	private final static int FORMAT_VERSION_OFFSET = 4;
+	private final static int START_TIME_OFFSET = 8;
+	private final static int LAST_TIME_OFFSET = 16;
+	private final static int RECORD_COUNT_OFFSET = 24;
+	private final static int MAX_SERIES_OFFSET = 28;
+	private final static int HEADER_SIZE = 32;
+	private final static int RECORD_SIZE = 24;
+	private final static int NO_RECORD = -1;
+
+	/**
+	 * Creates a new segment
+	 *
+	 * @param directory
+	 * @param startTime
+	 * @param maxSeries
+	 * @param maxRecords
+	 * @return
+	 * @throws IOException
+	 */
+	static HistorySegment create(File directory, long startTime, int maxSeries, int maxRecords) throws IOException {
+
+		File file = new File(directory, FILE_PREFIX + startTime + FILE_SUFFIX);
+		long size = HEADER_SIZE + (4L * maxSeries) + ((long) RECORD_SIZE * maxRecords);
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("A history segment of [" + size + "] bytes is too big (2 GB max) - Reduce the number of records per segment");
+		}
+		MappedByteBuffer buffer = map(file, FileChannel.MapMode.READ_WRITE, size);
+
+		buffer.putInt(MAGIC_OFFSET, MAGIC);
+		buffer.putInt(FORMAT_VERSION_OFFSET, FORMAT_VERSION);
+		buffer.putLong(START_TIME_OFFSET, startTime);
+		buffer.putLong(LAST_TIME_OFFSET, startTime);
+		buffer.putInt(RECORD_COUNT_OFFSET, 0);
+		buffer.putInt(MAX_SERIES_OFFSET, maxSeries);
+		for (int seriesId = 0; seriesId < maxSeries; seriesId++) {
+			buffer.putInt(HEADER_SIZE + (4 * seriesId), NO_RECORD);
+		}
+		return new HistorySegment(file, buffer, true);
+	}
+
+	/**
+	 * Opens an existing segment (read-only)
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	static HistorySegment open(File file) throws IOException {
+
+		MappedByteBuffer buffer = map(file, FileChannel.MapMode.READ_ONLY, file.length());
+		if (buffer.capacity() < HEADER_SIZE || buffer.getInt(MAGIC_OFFSET) != MAGIC || buffer.getInt(FORMAT_VERSION_OFFSET) != FORMAT_VERSION) {
+			throw new IOException("File [" + file + "] is not a history segment");
+		}
+		return new HistorySegment(file, buffer, false);
+	}
+
+	/**
+	 * Maps the file (the channel can be closed once the file is mapped)
+	 *
+	 * @param file
+	 * @param mode
+	 * @param size
+	 * @return
+	 * @throws IOException
+	 */
+	private static MappedByteBuffer map(File file, FileChannel.MapMode mode, long size) throws IOException {
+
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, mode == FileChannel.MapMode.READ_ONLY ? "r" : "rw")) {
+			return randomAccessFile.getChannel().map(mode, 0, size);
+		}
+	}
+
+	/**
+	 *
+	 * @param file
+	 * @param buffer
+	 * @param writable
+	 */
+	private HistorySegment(File file, MappedByteBuffer buffer, boolean writable) {
+		this.file = file;
+		this.buffer = buffer;
+		this.writable = writable;
+		this.startTime = buffer.getLong(START_TIME_OFFSET);
+		this.lastTime = buffer.getLong(LAST_TIME_OFFSET);
+		this.recordCount = buffer.getInt(RECORD_COUNT_OFFSET);
+		this.maxSeries = buffer.getInt(MAX_SERIES_OFFSET);
+		this.maxRecords = (int) ((buffer.capacity() - HEADER_SIZE - (4L * maxSeries)) / RECORD_SIZE);
+	}
+
+	File getFile() {
+		return file;
+	}
+
+	long getStartTime() {
+		return startTime;
+	}
+
+	long getLastTime() {
+		return lastTime;
+	}
+
+	/**
+	 * @param records
+	 * @return true if the given number of records can still be added
+	 */
+	boolean hasRoom(int records) {
+		return writable && (recordCount + records) <= maxRecords;
+	}
+
+	/**
+	 * Adds a record (only visible to the readers after commit)
+	 *
+	 * @param seriesId
+	 * @param timestamp
+	 * @param value
+	 * @return false if the record can't be added (segment full or series id too high)
+	 */
+	boolean append(int seriesId, long timestamp, double value) {
+
+		if (!writable || recordCount >= maxRecords || seriesId < 0 || seriesId >= maxSeries) {
+			return false;
+		}
+
+		int tailOffset = HEADER_SIZE + (4 * seriesId);
+		int recordOffset = getRecordOffset(recordCount);
+
+		buffer.putInt(recordOffset, seriesId);
+		buffer.putLong(recordOffset + 4, timestamp);
+		buffer.putDouble(recordOffset + 12, value);
+		buffer.putInt(recordOffset + 20, buffer.getInt(tailOffset));
+		buffer.putInt(tailOffset, recordCount);
+
+		recordCount++;
+		lastTime = Math.max(lastTime, timestamp);
+		return true;
+	}
+
+	/**
+	 * Publishes the records added since the previous commit in the header
+	 */
+	void commit() {
+		buffer.putLong(LAST_TIME_OFFSET, lastTime);
+		buffer.putInt(RECORD_COUNT_OFFSET, recordCount);
+	}
+
+	/**
+	 * Writes the mapping to the disk
+	 */
+	void force() {
+		if (writable) {
+			buffer.force();
+		}
+	}
+
+	/**
+	 * Reads the samples of a series (most recent first) directly from the mapping
+	 *
+	 * @param seriesId
+	 * @param fromMillis
+	 * @param toMillis
+	 * @param samples The samples found are added to it
+	 */
+	void read(int seriesId, long fromMillis, long toMillis, SampleBuffer samples) {
+
+		if (seriesId < 0 || seriesId >= maxSeries) {
+			return;
+		}
+
+		int committed = buffer.getInt(RECORD_COUNT_OFFSET);
+		int index = buffer.getInt(HEADER_SIZE + (4 * seriesId));
+
+		while (index != NO_RECORD && index >= 0) {
+
+			int recordOffset = getRecordOffset(index);
+			long timestamp = buffer.getLong(recordOffset + 4);
+
+			if (timestamp < fromMillis) {
+				break;
+			}
+			if (index < committed && timestamp <= toMillis) {
+				samples.add(timestamp, buffer.getDouble(recordOffset + 12));
+			}
+			index = buffer.getInt(recordOffset + 20);
+		}
+	}
+
+	/**
+	 * Unmaps and deletes the segment file. The segment must not be read anymore
+	 * (the caller holds the write lock of the history). The mapping is released
+	 * through the cleaner of the buffer when the JVM allows it, otherwise the
+	 * file can't be deleted (Windows) or its space is only freed by the GC (Unix).
+	 *
+	 * @return true if the file is deleted
+	 */
+	boolean delete() {
+
+		if (!unmapped) {
+			unmapped = true;
+			try {
+				Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+				cleanerMethod.setAccessible(true);
+				Object cleaner = cleanerMethod.invoke(buffer);
+				if (cleaner != null) {
+					cleaner.getClass().getMethod("clean").invoke(cleaner);
+				}
+			} catch (Exception ex) {
+				AppLog.getLogger().debug("Unable to unmap the history segment [" + file + "] - Message is [" + ex.getMessage() + "]");
+			}
+		}
+		return file.delete() || !file.exists();
+	}
+
+	/**
+	 *
+	 * @param index
+	 * @return
+	 */
+	private int getRecordOffset(int index) {
+		return HEADER_SIZE + (4 * maxSeries) + (RECORD_SIZE * index);
+	}
+}
@@ -0,0 +1,109 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.history;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import wlosbstats.snapshot.StatisticsSnapshot;
+
+/**
+ * In-memory history of the published snapshots : one RingBufferHistory per
+ * query. The memory used is bounded by maxSeries * capacity * 8 bytes (plus one
+ * ring of timestamps per query) and allocated when a series first appears.
+ */
+public class HistoryStore {
+
+	// Members
+	private final int capacity;
+	private final int maxSeries;
+	private final AtomicInteger seriesCount = new AtomicInteger(0);
+	private final Map<String, RingBufferHistory> histories = new ConcurrentHashMap<>();
+
+	/**
+	 *
+	 * @param capacity The number of samples kept per series
+	 * @param maxSeries The maximum number of series (service / resource statistic / statistic) kept
+	 */
+	public HistoryStore(int capacity, int maxSeries) {
+		this.capacity = Math.max(1, capacity);
+		this.maxSeries = maxSeries;
+	}
+
+	/**
+	 * Adds the snapshot to the history of its query
+	 *
+	 * @param snapshot
+	 */
+	public void record(StatisticsSnapshot snapshot) {
+
+		String scopeKey = snapshot.scopeKey();
+		RingBufferHistory history = histories.get(scopeKey);
+		if (history == null) {
+			synchronized (histories) {
+				history = histories.get(scopeKey);
+				if (history == null) {
+					history = new RingBufferHistory(capacity, seriesCount, maxSeries);
+					histories.put(scopeKey, history);
+				}
+			}
+		}
+		history.record(snapshot.getCaptureTime(), snapshot.columns());
+	}
+
+	/**
+	 * History of a statistic for a given query
+	 *
+	 * @param scopeKey See StatisticsSnapshot.toScopeKey
+	 * @param serviceName
+	 * @param resourceStatisticName
+	 * @param statisticName
+	 * @param fromMillis
+	 * @return The samples or null if the statistic is not part of the history
+	 */
+	public StatisticHistory getHistory(String scopeKey, String serviceName, String resourceStatisticName, String statisticName, long fromMillis) {
+
+		RingBufferHistory history = (scopeKey != null) ? histories.get(scopeKey) : null;
+		return (history != null) ? history.getHistory(serviceName, resourceStatisticName, statisticName, fromMillis) : null;
+	}
+
+	/**
+	 * History of a statistic, taken from the most recently updated query which contains it
+	 *
+	 * @param serviceName
+	 * @param resourceStatisticName
+	 * @param statisticName
+	 * @param fromMillis
+	 * @return The samples or null if the statistic is not part of the history
+	 */
+	public StatisticHistory getHistory(String serviceName, String resourceStatisticName, String statisticName, long fromMillis) {
+
+		RingBufferHistory latest = null;
+		for (RingBufferHistory history : histories.values()) {
+			if (history.contains(serviceName, resourceStatisticName, statisticName) && (latest == null || history.getLastCaptureTime() > latest.getLastCaptureTime())) {
+				latest = history;
+			}
+		}
+		return (latest != null) ? latest.getHistory(serviceName, resourceStatisticName, statisticName, fromMillis) : null;
+	}
+
+	/**
+	 * @return The number of series kept
+	 */
+	public int getSeriesCount() {
+		return seriesCount.get();
+	}
+}
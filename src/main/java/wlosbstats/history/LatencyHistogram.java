@@ -0,0 +1,161 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.history;
+
+/**
+ * Mergeable histogram of latencies with logarithmic bins : the bin i holds the
+ * values in (gamma^(i-1), gamma^i], so any quantile is returned with a
+ * relative error below RELATIVE_ACCURACY whatever the distribution. Only the
+ * range of bins actually used is allocated and the number of bins is capped
+ * (the lowest bins are collapsed first), so the memory of a histogram is
+ * small and bounded. The counts are weights (a whole collection interval is
+ * added at once with its number of messages).
+ */
+public class LatencyHistogram {
+
+	// Members
+	private double[] counts = null;
+	private int offset = 0;
+	private double zeroCount = 0;
+	private double totalCount = 0;
+	private double min = Double.POSITIVE_INFINITY;
+	private double max = Double.NEGATIVE_INFINITY;
+
+	// Constants
+	public final static double RELATIVE_ACCURACY = 0.02;
+	private final static double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+	private final static double LOG_GAMMA = Math.log(GAMMA);
+	private final static double MIN_VALUE = 0.01;
+	private final static int INITIAL_BINS = 16;
+	private final static int MAX_BINS = 1024;
+
+	/**
+	 *
+	 * @param value The latency (ms)
+	 * @param weight The number of messages having this latency
+	 */
+	public void add(double value, double weight) {
+
+		if (!(weight > 0) || Double.isNaN(value)) {
+			return;
+		}
+
+		if (value < MIN_VALUE) {
+			zeroCount += weight;
+		} else {
+			addToBin((int) Math.ceil(Math.log(value) / LOG_GAMMA), weight);
+		}
+		totalCount += weight;
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+	}
+
+	/**
+	 * Adds the content of another histogram to this one
+	 *
+	 * @param other
+	 */
+	public void merge(LatencyHistogram other) {
+
+		if (other.totalCount == 0) {
+			return;
+		}
+
+		if (other.counts != null) {
+			for (int i = 0; i < other.counts.length; i++) {
+				if (other.counts[i] > 0) {
+					addToBin(other.offset + i, other.counts[i]);
+				}
+			}
+		}
+		zeroCount += other.zeroCount;
+		totalCount += other.totalCount;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+
+	/**
+	 * @return The total weight of the values
+	 */
+	public double getCount() {
+		return totalCount;
+	}
+
+	/**
+	 *
+	 * @param quantile Between 0 and 1
+	 * @return The estimated value (NaN if the histogram is empty)
+	 */
+	public double getQuantile(double quantile) {
+
+		if (totalCount == 0) {
+			return Double.NaN;
+		}
+
+		double rank = Math.max(0, Math.min(1, quantile)) * totalCount;
+		double cumulated = zeroCount;
+		if (cumulated >= rank || counts == null) {
+			return min;
+		}
+
+		for (int i = 0; i < counts.length; i++) {
+			cumulated += counts[i];
+			if (cumulated >= rank) {
+				// Middle of the bin (in relative terms) bounded by the real min and max
+				double value = 2 * Math.pow(GAMMA, offset + i) / (GAMMA + 1);
+				return Math.max(min, Math.min(max, value));
+			}
+		}
+		return max;
+	}
+
+	/**
+	 *
+	 * @param index
+	 * @param weight
+	 */
+	private void addToBin(int index, double weight) {
+
+		if (counts == null) {
+			counts = new double[INITIAL_BINS];
+			offset = index - (INITIAL_BINS / 2);
+		}
+		if (index < offset || index >= offset + counts.length) {
+			grow(index);
+		}
+		counts[Math.max(index, offset) - offset] += weight;
+	}
+
+	/**
+	 * Extends the range of bins to the index (the lowest bins are collapsed if more than MAX_BINS are needed)
+	 *
+	 * @param index
+	 */
+	private void grow(int index) {
+
+		int low = Math.min(offset, index);
+		int high = Math.max(offset + counts.length - 1, index);
+		if (high - low + 1 > MAX_BINS) {
+			low = high - MAX_BINS + 1;
+		}
+
+		double[] newCounts = new double[high - low + 1];
+		for (int i = 0; i < counts.length; i++) {
+			newCounts[Math.max(offset + i, low) - low] += counts[i];
+		}
+		counts = newCounts;
+		offset = low;
+	}
+}
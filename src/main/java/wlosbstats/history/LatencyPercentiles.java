@@ -0,0 +1,89 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.history;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Percentiles of the latency of a service over a period, estimated from the
+ * latency of each collection interval weighted by its number of messages
+ */
+public class LatencyPercentiles {
+
+	// Members
+	private final String serviceName;
+	private final String resourceStatisticName;
+	private final String statisticName;
+	private final long fromMillis;
+	private final long toMillis;
+	private final double count;
+	private final double[] percentiles;
+	private final double[] values;
+
+	/**
+	 *
+	 * @param serviceName
+	 * @param resourceStatisticName
+	 * @param statisticName The interval statistic (for example response-time)
+	 * @param fromMillis
+	 * @param toMillis
+	 * @param count The number of messages taken into account
+	 * @param percentiles The requested percentiles (between 0 and 100)
+	 * @param values The latency of each percentile (NaN if no message)
+	 */
+	@ConstructorProperties({"serviceName", "resourceStatisticName", "statisticName", "fromMillis", "toMillis", "count", "percentiles", "values"})
+	public LatencyPercentiles(String serviceName, String resourceStatisticName, String statisticName, long fromMillis, long toMillis, double count, double[] percentiles, double[] values) {
+		this.serviceName = serviceName;
+		this.resourceStatisticName = resourceStatisticName;
+		this.statisticName = statisticName;
+		this.fromMillis = fromMillis;
+		this.toMillis = toMillis;
+		this.count = count;
+		this.percentiles = percentiles;
+		this.values = values;
+	}
+
+	public String getServiceName() {
+		return serviceName;
+	}
+
+	public String getResourceStatisticName() {
+		return resourceStatisticName;
+	}
+
+	public String getStatisticName() {
+		return statisticName;
+	}
+
+	public long getFromMillis() {
+		return fromMillis;
+	}
+
+	public long getToMillis() {
+		return toMillis;
+	}
+
+	public double getCount() {
+		return count;
+	}
+
+	public double[] getPercentiles() {
+		return percentiles;
+	}
+
+	public double[] getValues() {
+		return values;
+	}
+}
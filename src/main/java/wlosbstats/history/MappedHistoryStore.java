@@ -0,0 +1,299 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.history;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import wlosbstats.snapshot.ColumnarStatistics;
+import wlosbstats.snapshot.StatisticsDictionary;
+import wlosbstats.snapshot.StatisticsSnapshot;
+import wlosbstats.util.AppLog;
+import wlosbstats.util.LongIntHashMap;
+
+/**
+ * Long retention history kept off-heap : the samples are written as fixed-width
+ * records in memory-mapped segment files (one segment per period of time) and
+ * read back directly from the mappings. The heap only holds the dictionary of
+ * the series, whatever the retention.
+ */
+public class MappedHistoryStore {
+
+	// Members
+	private final File directory;
+	private final long segmentMillis;
+	private final long retentionMillis;
+	private final int maxSeries;
+	private final int maxRecordsPerSegment;
+	private final SeriesDictionary dictionary;
+	private final Map<String, LongIntHashMap> seriesIds = new ConcurrentHashMap<>();
+	private final List<HistorySegment> segments = new ArrayList<>();
+	private final List<HistorySegment> pendingDeletions = new ArrayList<>();
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private HistorySegment currentSegment = null;
+	private boolean closed = false;
+	private long droppedRecords = 0;
+	private boolean droppedLogged = false;
+
+	// Constants
+	private final static String DICTIONARY_FILE = "series.dict";
+	// Cached series id of the values beyond the maximum number of series (never appended)
+	private final static int DROPPED_SERIES = Integer.MAX_VALUE;
+
+	/**
+	 * Opens the history (the existing segments are kept read-only and a new segment is started)
+	 *
+	 * @param directory
+	 * @param segmentMillis The period covered by a segment
+	 * @param retentionMillis The segments older than this are deleted
+	 * @param maxSeries The maximum number of series
+	 * @param maxRecordsPerSegment The size of a segment (a new segment is started when it's full)
+	 * @throws IOException
+	 */
+	public MappedHistoryStore(File directory, long segmentMillis, long retentionMillis, int maxSeries, int maxRecordsPerSegment) throws IOException {
+
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Unable to create the history directory [" + directory + "]");
+		}
+
+		this.directory = directory;
+		this.segmentMillis = segmentMillis;
+		this.retentionMillis = retentionMillis;
+		this.maxSeries = maxSeries;
+		this.maxRecordsPerSegment = maxRecordsPerSegment;
+		this.dictionary = new SeriesDictionary(new File(directory, DICTIONARY_FILE));
+
+		// -----------------------------------------------------
+		// Existing segments
+		File[] files = directory.listFiles(new FileFilter() {
+			public boolean accept(File file) {
+				return file.getName().startsWith(HistorySegment.FILE_PREFIX) && file.getName().endsWith(HistorySegment.FILE_SUFFIX);
+			}
+		});
+		if (files != null) {
+			for (File file : files) {
+				try {
+					segments.add(HistorySegment.open(file));
+				} catch (IOException ex) {
+					AppLog.getLogger().warning("History segment [" + file + "] ignored - Message is [" + ex.getMessage() + "]");
+				}
+			}
+		}
+		Collections.sort(segments, new Comparator<HistorySegment>() {
+			public int compare(HistorySegment segment1, HistorySegment segment2) {
+				return Long.compare(segment1.getStartTime(), segment2.getStartTime());
+			}
+		});
+		// -----------------------------------------------------
+
+		AppLog.getLogger().notice("Memory-mapped history opened in [" + directory + "] with [" + segments.size() + "] existing segment(s)");
+	}
+
+	/**
+	 * Writes all the values of the snapshot
+	 *
+	 * @param snapshot
+	 */
+	public void record(StatisticsSnapshot snapshot) {
+
+		String scopeKey = snapshot.scopeKey();
+		long captureTime = snapshot.getCaptureTime();
+		ColumnarStatistics statistics = snapshot.columns();
+
+		lock.writeLock().lock();
+		try {
+			if (closed) {
+				return;
+			}
+
+			rollIfNeeded(captureTime, statistics.size());
+
+			// The ids of the dictionary are persistent : they are cached per KEY of the value
+			LongIntHashMap scopeSeriesIds = seriesIds.get(scopeKey);
+			if (scopeSeriesIds == null) {
+				scopeSeriesIds = new LongIntHashMap(statistics.size());
+				seriesIds.put(scopeKey, scopeSeriesIds);
+			}
+
+			int dropped = 0;
+			for (int row = 0; row < statistics.size(); row++) {
+
+				long key = statistics.getKey(row);
+				int seriesId = scopeSeriesIds.get(key);
+				if (seriesId == LongIntHashMap.ABSENT) {
+					String serviceName = StatisticsDictionary.SERVICES.getName(StatisticsDictionary.getServiceId(key));
+					String resourceStatisticName = StatisticsDictionary.RESOURCE_STATISTICS.getName(StatisticsDictionary.getResourceStatisticId(key));
+					String statisticName = StatisticsDictionary.METRICS.getName(StatisticsDictionary.getMetricId(key));
+					// The ids are never reclaimed : no id is given beyond the capacity of the segments
+					if (dictionary.size() < maxSeries) {
+						seriesId = dictionary.getOrCreate(scopeKey, serviceName, resourceStatisticName, statisticName);
+					} else {
+						seriesId = dictionary.get(scopeKey, serviceName, resourceStatisticName, statisticName);
+						if (seriesId < 0) {
+							seriesId = DROPPED_SERIES;
+						}
+					}
+					scopeSeriesIds.put(key, seriesId);
+				}
+				if (seriesId == DROPPED_SERIES || !currentSegment.append(seriesId, captureTime, statistics.getValue(row))) {
+					dropped++;
+				}
+			}
+
+			currentSegment.commit();
+			dictionary.flush();
+
+			if (dropped > 0) {
+				droppedRecords += dropped;
+				if (!droppedLogged) {
+					droppedLogged = true;
+					AppLog.getLogger().warning("[" + dropped + "] value(s) of the snapshot [" + snapshot.getVersion() + "] not written in the memory-mapped history - The maximum number of series [" + maxSeries + "] is reached ([" + droppedRecords + "] value(s) dropped so far, logged once per segment)");
+				}
+			}
+		} catch (IOException | RuntimeException ex) {
+			// The history never fails the publication of the snapshot
+			AppLog.getLogger().error("Unable to write the snapshot [" + snapshot.getVersion() + "] in the memory-mapped history - Message is [" + ex.getMessage() + "]", ex);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Reads the samples of a statistic
+	 *
+	 * @param scopeKey See StatisticsSnapshot.toScopeKey
+	 * @param serviceName
+	 * @param resourceStatisticName
+	 * @param statisticName
+	 * @param fromMillis
+	 * @param toMillis
+	 * @return The samples, oldest first
+	 */
+	public StatisticHistory getHistory(String scopeKey, String serviceName, String resourceStatisticName, String statisticName, long fromMillis, long toMillis) {
+
+		SampleBuffer samples = new SampleBuffer();
+
+		lock.readLock().lock();
+		try {
+			int seriesId = dictionary.get(scopeKey, serviceName, resourceStatisticName, statisticName);
+			if (seriesId >= 0) {
+
+				// Most recent segment first (the samples are collected most recent first)
+				for (int i = segments.size() - 1; i >= 0; i--) {
+
+					HistorySegment segment = segments.get(i);
+					if (segment.getStartTime() > toMillis) {
+						continue;
+					}
+					if (segment.getLastTime() < fromMillis) {
+						break;
+					}
+					segment.read(seriesId, fromMillis, toMillis, samples);
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		return samples.toHistoryReversed(serviceName, resourceStatisticName, statisticName);
+	}
+
+	/**
+	 * @return The number of values not written because the maximum number of series is reached
+	 */
+	public long getDroppedRecords() {
+		lock.readLock().lock();
+		try {
+			return droppedRecords;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Writes the current segment and the dictionary to the disk
+	 */
+	public void close() {
+
+		lock.writeLock().lock();
+		try {
+			closed = true;
+			if (currentSegment != null) {
+				currentSegment.commit();
+				currentSegment.force();
+			}
+			dictionary.close();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Starts a new segment when the period of the current one is over (or when it's full)
+	 * and deletes the segments older than the retention
+	 *
+	 * @param captureTime
+	 * @param records
+	 * @throws IOException
+	 */
+	private void rollIfNeeded(long captureTime, int records) throws IOException {
+
+		if (currentSegment != null && captureTime < currentSegment.getStartTime() + segmentMillis && currentSegment.hasRoom(records)) {
+			return;
+		}
+
+		if (currentSegment != null) {
+			currentSegment.commit();
+			currentSegment.force();
+		}
+		currentSegment = HistorySegment.create(directory, captureTime, maxSeries, maxRecordsPerSegment);
+		segments.add(currentSegment);
+		droppedLogged = false;
+		AppLog.getLogger().debug("New history segment [" + currentSegment.getFile() + "]");
+
+		// -----------------------------------------------------
+		// Retention (the segments are unmapped before the deletion,
+		// the deletions that fail are retried at the next roll)
+		Iterator<HistorySegment> iterator = segments.iterator();
+		while (iterator.hasNext()) {
+
+			HistorySegment segment = iterator.next();
+			if (segment != currentSegment && segment.getLastTime() < captureTime - retentionMillis) {
+				iterator.remove();
+				pendingDeletions.add(segment);
+			}
+		}
+		iterator = pendingDeletions.iterator();
+		while (iterator.hasNext()) {
+
+			HistorySegment segment = iterator.next();
+			if (segment.delete()) {
+				iterator.remove();
+			} else {
+				AppLog.getLogger().warning("Unable to delete the history segment [" + segment.getFile() + "] - Retried at the next segment");
+			}
+		}
+		// -----------------------------------------------------
+	}
+}
@@ -0,0 +1,307 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.history;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import wlosbstats.snapshot.ColumnarStatistics;
+import wlosbstats.snapshot.StatisticsDictionary;
+import wlosbstats.snapshot.StatisticsSnapshot;
+import wlosbstats.util.AppLog;
+import wlosbstats.util.LongIntHashMap;
+import wlosbstats.util.MonitorProperties;
+
+/**
+ * Latency percentiles of the services. OSB only provides the min, max, average
+ * and sum of the interval statistics, so the latency of each collection
+ * interval (see DerivedStatistics) is added to a LatencyHistogram weighted by
+ * the number of messages of the interval. The histograms are kept per query
+ * and per time bucket (a ring of bucketCount buckets) and merged at query time.
+ */
+public class PercentileStore {
+
+	/**
+	 * Histograms of one time bucket (KEY = service / resource statistic / interval average metric)
+	 */
+	private static class TimeBucket {
+		private final long startTime;
+		private final LongIntHashMap index = new LongIntHashMap(INITIAL_HISTOGRAMS);
+		private final List<LatencyHistogram> histograms = new ArrayList<>();
+		private boolean full = false;
+
+		private TimeBucket(long startTime) {
+			this.startTime = startTime;
+		}
+	}
+
+	/**
+	 * Time buckets of one query
+	 */
+	private static class ScopePercentiles {
+		private final TimeBucket[] buckets;
+		private volatile long lastCaptureTime = 0;
+
+		private ScopePercentiles(int bucketCount) {
+			this.buckets = new TimeBucket[bucketCount];
+		}
+	}
+
+	// Members
+	private final long bucketMillis;
+	private final int bucketCount;
+	private final int maxHistograms;
+	private final Map<String, ScopePercentiles> scopes = new ConcurrentHashMap<>();
+
+	// Interval statistics for which the percentiles are computed
+	private final static String[] INTERVAL_STATISTICS = {
+		MonitorProperties.OSB_RESPONSE_TIME_INTERVAL_PROPERTY,
+		MonitorProperties.OSB_ELAPSED_TIME_INTERVAL_PROPERTY,
+		MonitorProperties.OSB_THROTTLING_TIME_INTERVAL_PROPERTY
+	};
+
+	// Metric ids
+	private final static int[] INTERVAL_AVERAGE_IDS = new int[INTERVAL_STATISTICS.length];
+	private final static int[] INTERVAL_COUNT_IDS = new int[INTERVAL_STATISTICS.length];
+	static {
+		for (int i = 0; i < INTERVAL_STATISTICS.length; i++) {
+			INTERVAL_AVERAGE_IDS[i] = StatisticsDictionary.METRICS.getId(INTERVAL_STATISTICS[i] + MonitorProperties.OSB_STATISTIC_TYPE_INTERVAL_PROPERTY_INTERVAL_AVERAGE);
+			INTERVAL_COUNT_IDS[i] = StatisticsDictionary.METRICS.getId(INTERVAL_STATISTICS[i] + MonitorProperties.OSB_STATISTIC_TYPE_INTERVAL_PROPERTY_INTERVAL_COUNT);
+		}
+	}
+
+	// Constants
+	private final static int INITIAL_HISTOGRAMS = 256;
+	private final static double ONE_HUNDRED_PERCENT = 100d;
+
+	/**
+	 *
+	 * @param bucketMillis The duration of a time bucket
+	 * @param bucketCount The number of time buckets kept per query
+	 * @param maxHistograms The maximum number of histograms of a time bucket (the new services are ignored once reached)
+	 */
+	public PercentileStore(long bucketMillis, int bucketCount, int maxHistograms) {
+		this.bucketMillis = Math.max(1, bucketMillis);
+		this.bucketCount = Math.max(1, bucketCount);
+		this.maxHistograms = maxHistograms;
+	}
+
+	/**
+	 * Adds the latency of the interval of each service of the snapshot
+	 *
+	 * @param snapshot
+	 */
+	public void record(StatisticsSnapshot snapshot) {
+
+		String scopeKey = snapshot.scopeKey();
+		ScopePercentiles scope = scopes.get(scopeKey);
+		if (scope == null) {
+			synchronized (scopes) {
+				scope = scopes.get(scopeKey);
+				if (scope == null) {
+					scope = new ScopePercentiles(bucketCount);
+					scopes.put(scopeKey, scope);
+				}
+			}
+		}
+
+		long captureTime = snapshot.getCaptureTime();
+		ColumnarStatistics columns = snapshot.columns();
+
+		synchronized (scope) {
+
+			TimeBucket bucket = getBucket(scope, captureTime);
+			for (int row = 0; row < columns.size(); row++) {
+
+				long key = columns.getKey(row);
+				int statistic = getIntervalStatistic(StatisticsDictionary.getMetricId(key));
+				if (statistic < 0) {
+					continue;
+				}
+
+				double count = columns.getValue(StatisticsDictionary.withMetric(key, INTERVAL_COUNT_IDS[statistic]), 0);
+				if (count > 0) {
+					LatencyHistogram histogram = getHistogram(bucket, key);
+					if (histogram != null) {
+						histogram.add(columns.getValue(row), count);
+					}
+				}
+			}
+			scope.lastCaptureTime = captureTime;
+		}
+	}
+
+	/**
+	 * Percentiles of a statistic for a given query
+	 *
+	 * @param scopeKey See StatisticsSnapshot.toScopeKey
+	 * @param serviceName
+	 * @param resourceStatisticName
+	 * @param statisticName The interval statistic (for example response-time)
+	 * @param percentiles Between 0 and 100
+	 * @param fromMillis
+	 * @param toMillis (0 for now)
+	 * @return
+	 */
+	public LatencyPercentiles getPercentiles(String scopeKey, String serviceName, String resourceStatisticName, String statisticName, double[] percentiles, long fromMillis, long toMillis) {
+
+		ScopePercentiles scope = (scopeKey != null) ? scopes.get(scopeKey) : null;
+		long key = StatisticsDictionary.findKey(serviceName, resourceStatisticName, statisticName + MonitorProperties.OSB_STATISTIC_TYPE_INTERVAL_PROPERTY_INTERVAL_AVERAGE);
+		return toPercentiles(merge(scope, key, fromMillis, toMillis), serviceName, resourceStatisticName, statisticName, percentiles, fromMillis, toMillis);
+	}
+
+	/**
+	 * Percentiles of a statistic, taken from the most recently updated query which contains it
+	 *
+	 * @param serviceName
+	 * @param resourceStatisticName
+	 * @param statisticName The interval statistic (for example response-time)
+	 * @param percentiles Between 0 and 100
+	 * @param fromMillis
+	 * @param toMillis (0 for now)
+	 * @return
+	 */
+	public LatencyPercentiles getPercentiles(String serviceName, String resourceStatisticName, String statisticName, double[] percentiles, long fromMillis, long toMillis) {
+
+		long key = StatisticsDictionary.findKey(serviceName, resourceStatisticName, statisticName + MonitorProperties.OSB_STATISTIC_TYPE_INTERVAL_PROPERTY_INTERVAL_AVERAGE);
+		LatencyHistogram latest = null;
+		long latestCaptureTime = 0;
+		for (ScopePercentiles scope : scopes.values()) {
+			if (scope.lastCaptureTime > latestCaptureTime) {
+				LatencyHistogram histogram = merge(scope, key, fromMillis, toMillis);
+				if (histogram != null) {
+					latest = histogram;
+					latestCaptureTime = scope.lastCaptureTime;
+				}
+			}
+		}
+		return toPercentiles(latest, serviceName, resourceStatisticName, statisticName, percentiles, fromMillis, toMillis);
+	}
+
+	/**
+	 *
+	 * @param scope
+	 * @param key
+	 * @param fromMillis
+	 * @param toMillis
+	 * @return The merge of the histograms of the time buckets overlapping the period (null if none)
+	 */
+	private LatencyHistogram merge(ScopePercentiles scope, long key, long fromMillis, long toMillis) {
+
+		if (scope == null || key < 0) {
+			return null;
+		}
+
+		long to = (toMillis > 0) ? toMillis : Long.MAX_VALUE;
+		LatencyHistogram merged = null;
+		synchronized (scope) {
+			for (TimeBucket bucket : scope.buckets) {
+				if (bucket == null || bucket.startTime + bucketMillis <= fromMillis || bucket.startTime > to) {
+					continue;
+				}
+				int histogram = bucket.index.get(key);
+				if (histogram != LongIntHashMap.ABSENT) {
+					if (merged == null) {
+						merged = new LatencyHistogram();
+					}
+					merged.merge(bucket.histograms.get(histogram));
+				}
+			}
+		}
+		return merged;
+	}
+
+	/**
+	 *
+	 * @param histogram
+	 * @param serviceName
+	 * @param resourceStatisticName
+	 * @param statisticName
+	 * @param percentiles
+	 * @param fromMillis
+	 * @param toMillis
+	 * @return
+	 */
+	private static LatencyPercentiles toPercentiles(LatencyHistogram histogram, String serviceName, String resourceStatisticName, String statisticName, double[] percentiles, long fromMillis, long toMillis) {
+
+		double[] requested = (percentiles != null) ? percentiles : new double[0];
+		double[] values = new double[requested.length];
+		for (int i = 0; i < requested.length; i++) {
+			values[i] = (histogram != null) ? histogram.getQuantile(requested[i] / ONE_HUNDRED_PERCENT) : Double.NaN;
+		}
+		return new LatencyPercentiles(serviceName, resourceStatisticName, statisticName, fromMillis, toMillis, (histogram != null) ? histogram.getCount() : 0, requested, values);
+	}
+
+	/**
+	 *
+	 * @param scope
+	 * @param captureTime
+	 * @return The time bucket of the capture (replaces the oldest bucket of the ring)
+	 */
+	private TimeBucket getBucket(ScopePercentiles scope, long captureTime) {
+
+		long startTime = captureTime - (captureTime % bucketMillis);
+		int slot = (int) ((captureTime / bucketMillis) % bucketCount);
+		TimeBucket bucket = scope.buckets[slot];
+		if (bucket == null || bucket.startTime != startTime) {
+			bucket = new TimeBucket(startTime);
+			scope.buckets[slot] = bucket;
+		}
+		return bucket;
+	}
+
+	/**
+	 *
+	 * @param bucket
+	 * @param key
+	 * @return The histogram of the KEY (created if needed, null if the maximum is reached)
+	 */
+	private LatencyHistogram getHistogram(TimeBucket bucket, long key) {
+
+		int index = bucket.index.get(key);
+		if (index != LongIntHashMap.ABSENT) {
+			return bucket.histograms.get(index);
+		}
+
+		if (bucket.histograms.size() >= maxHistograms) {
+			if (!bucket.full) {
+				AppLog.getLogger().warning("Maximum number of latency histograms [" + maxHistograms + "] reached for a time bucket - New services are ignored");
+				bucket.full = true;
+			}
+			return null;
+		}
+
+		LatencyHistogram histogram = new LatencyHistogram();
+		bucket.index.put(key, bucket.histograms.size());
+		bucket.histograms.add(histogram);
+		return histogram;
+	}
+
+	/**
+	 *
+	 * @param metricId
+	 * @return The index of the interval statistic of the interval average metric (-1 if not an interval average)
+	 */
+	private static int getIntervalStatistic(int metricId) {
+		for (int i = 0; i < INTERVAL_AVERAGE_IDS.length; i++) {
+			if (INTERVAL_AVERAGE_IDS[i] == metricId) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
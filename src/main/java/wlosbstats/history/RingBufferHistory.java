@@ -0,0 +1,203 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.history;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import wlosbstats.snapshot.ColumnarStatistics;
+import wlosbstats.snapshot.StatisticsDictionary;
+import wlosbstats.util.AppLog;
+import wlosbstats.util.LongIntHashMap;
+
+/**
+ * Last N samples of all the statistics of one query. All the statistics of a
+ * snapshot share the same capture time, so there is one ring of timestamps for
+ * the query and one ring of values (a double[] allocated once) per statistic.
+ * A statistic missing from a snapshot gets NaN for this sample. The rings are
+ * found by the KEY of the value (see StatisticsDictionary) so no object is
+ * allocated per sample.
+ */
+public class RingBufferHistory {
+
+	// Members
+	private final int capacity;
+	private final AtomicInteger seriesCount;
+	private final int maxSeries;
+	private final long[] timestamps;
+	private final LongIntHashMap seriesIndex = new LongIntHashMap(1024);
+	private double[][] series = new double[64][];
+	private int localSeriesCount = 0;
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private long sampleCount = 0;
+
+	/**
+	 *
+	 * @param capacity The number of samples kept
+	 * @param seriesCount The number of series of all the histories (shared to enforce maxSeries)
+	 * @param maxSeries The maximum number of series of all the histories
+	 */
+	public RingBufferHistory(int capacity, AtomicInteger seriesCount, int maxSeries) {
+		this.capacity = capacity;
+		this.seriesCount = seriesCount;
+		this.maxSeries = maxSeries;
+		this.timestamps = new long[capacity];
+	}
+
+	/**
+	 * Adds a sample of all the statistics
+	 *
+	 * @param captureTime
+	 * @param statistics
+	 */
+	public void record(long captureTime, ColumnarStatistics statistics) {
+
+		lock.writeLock().lock();
+		try {
+			int slot = (int) (sampleCount % capacity);
+			timestamps[slot] = captureTime;
+
+			// -----------------------------------------------------
+			// The slot is overwritten for all the known series (NaN if not in the snapshot)
+			for (int i = 0; i < localSeriesCount; i++) {
+				series[i][slot] = Double.NaN;
+			}
+			// -----------------------------------------------------
+
+			// -----------------------------------------------------
+			// Values of the snapshot
+			for (int row = 0; row < statistics.size(); row++) {
+
+				double[] values = getSeries(statistics.getKey(row), true);
+				if (values != null) {
+					values[slot] = statistics.getValue(row);
+				}
+			}
+			// -----------------------------------------------------
+
+			sampleCount++;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 *
+	 * @param serviceName
+	 * @param resourceStatisticName
+	 * @param statisticName
+	 * @return true if the statistic is part of the history
+	 */
+	public boolean contains(String serviceName, String resourceStatisticName, String statisticName) {
+
+		lock.readLock().lock();
+		try {
+			return getSeries(StatisticsDictionary.findKey(serviceName, resourceStatisticName, statisticName), false) != null;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return The capture time of the last sample (0 if empty)
+	 */
+	public long getLastCaptureTime() {
+
+		lock.readLock().lock();
+		try {
+			return (sampleCount > 0) ? timestamps[(int) ((sampleCount - 1) % capacity)] : 0;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 *
+	 * @param serviceName
+	 * @param resourceStatisticName
+	 * @param statisticName
+	 * @param fromMillis Only the samples captured at or after this time are returned
+	 * @return The samples (oldest first) or null if the statistic is not part of the history
+	 */
+	public StatisticHistory getHistory(String serviceName, String resourceStatisticName, String statisticName, long fromMillis) {
+
+		lock.readLock().lock();
+		try {
+			double[] values = getSeries(StatisticsDictionary.findKey(serviceName, resourceStatisticName, statisticName), false);
+			if (values == null) {
+				return null;
+			}
+
+			int size = (int) Math.min(sampleCount, capacity);
+			long first = sampleCount - size;
+
+			long[] resultTimestamps = new long[size];
+			double[] resultValues = new double[size];
+			int count = 0;
+
+			for (long sample = first; sample < sampleCount; sample++) {
+				int slot = (int) (sample % capacity);
+				if (timestamps[slot] >= fromMillis) {
+					resultTimestamps[count] = timestamps[slot];
+					resultValues[count] = values[slot];
+					count++;
+				}
+			}
+			return new StatisticHistory(serviceName, resourceStatisticName, statisticName, Arrays.copyOf(resultTimestamps, count), Arrays.copyOf(resultValues, count));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 *
+	 * @param key The KEY of the value (see StatisticsDictionary) or -1
+	 * @param create true to create the series if it doesn't exist (needs the write lock)
+	 * @return The ring of values or null
+	 */
+	private double[] getSeries(long key, boolean create) {
+
+		if (key < 0) {
+			return null;
+		}
+
+		int index = seriesIndex.get(key);
+		if (index != LongIntHashMap.ABSENT) {
+			return series[index];
+		}
+		if (!create) {
+			return null;
+		}
+
+		if (seriesCount.incrementAndGet() > maxSeries) {
+			seriesCount.decrementAndGet();
+			AppLog.getLogger().debug("Maximum number of history series [" + maxSeries + "] reached - Series [" + key + "] not kept");
+			return null;
+		}
+
+		double[] values = new double[capacity];
+		Arrays.fill(values, Double.NaN);
+
+		if (localSeriesCount == series.length) {
+			series = Arrays.copyOf(series, localSeriesCount * 2);
+		}
+		series[localSeriesCount] = values;
+		seriesIndex.put(key, localSeriesCount);
+		localSeriesCount++;
+		return values;
+	}
+}
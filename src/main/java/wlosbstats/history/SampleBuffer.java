@@ -0,0 +1,66 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.history;
+
+import java.util.Arrays;
+
+/**
+ * Growable primitive arrays of samples (used to collect the result of a range query)
+ */
+class SampleBuffer {
+
+	// Members
+	private long[] timestamps = new long[INITIAL_CAPACITY];
+	private double[] values = new double[INITIAL_CAPACITY];
+	private int size = 0;
+
+	// Constants
+	private final static int INITIAL_CAPACITY = 64;
+
+	/**
+	 *
+	 * @param timestamp
+	 * @param value
+	 */
+	void add(long timestamp, double value) {
+
+		if (size == timestamps.length) {
+			timestamps = Arrays.copyOf(timestamps, size * 2);
+			values = Arrays.copyOf(values, size * 2);
+		}
+		timestamps[size] = timestamp;
+		values[size] = value;
+		size++;
+	}
+
+	/**
+	 * The samples are collected most recent first : they are returned oldest first
+	 *
+	 * @param serviceName
+	 * @param resourceStatisticName
+	 * @param statisticName
+	 * @return
+	 */
+	StatisticHistory toHistoryReversed(String serviceName, String resourceStatisticName, String statisticName) {
+
+		long[] resultTimestamps = new long[size];
+		double[] resultValues = new double[size];
+		for (int i = 0; i < size; i++) {
+			resultTimestamps[i] = timestamps[size - 1 - i];
+			resultValues[i] = values[size - 1 - i];
+		}
+		return new StatisticHistory(serviceName, resourceStatisticName, statisticName, resultTimestamps, resultValues);
+	}
+}
@@ -0,0 +1,179 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.history;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+import wlosbstats.util.AppLog;
+
+/**
+ * Persistent dictionary of the series of the memory-mapped history : each
+ * (query, service, resource statistic, statistic) gets a dense id once and
+ * forever. New series are appended to the dictionary file.
+ */
+class SeriesDictionary {
+
+	// Members
+	private final File file;
+	private final Map<String, Map<String, Map<String, Map<String, Integer>>>> ids = new HashMap<>();
+	private BufferedWriter writer = null;
+	private int size = 0;
+
+	// Constants
+	private final static String FIELD_SEPARATOR = "\t";
+	private final static String ENCODING = "UTF-8";
+
+	/**
+	 * Loads the existing dictionary (if any)
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	SeriesDictionary(File file) throws IOException {
+
+		this.file = file;
+
+		if (file.exists()) {
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), ENCODING))) {
+
+				String line;
+				while ((line = reader.readLine()) != null) {
+
+					String[] fields = line.split(FIELD_SEPARATOR, -1);
+					if (fields.length != 5) {
+						AppLog.getLogger().warning("Invalid line [" + line + "] in history dictionary [" + file + "]");
+						continue;
+					}
+					int id = Integer.parseInt(fields[0]);
+					put(fields[1], fields[2], fields[3], fields[4], id);
+					size = Math.max(size, id + 1);
+				}
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param scopeKey
+	 * @param serviceName
+	 * @param resourceStatisticName
+	 * @param statisticName
+	 * @return The id of the series (-1 if unknown)
+	 */
+	int get(String scopeKey, String serviceName, String resourceStatisticName, String statisticName) {
+
+		Map<String, Map<String, Map<String, Integer>>> services = ids.get(scopeKey);
+		Map<String, Map<String, Integer>> resourceStatistics = (services != null) ? services.get(serviceName) : null;
+		Map<String, Integer> statistics = (resourceStatistics != null) ? resourceStatistics.get(resourceStatisticName) : null;
+		Integer id = (statistics != null) ? statistics.get(statisticName) : null;
+		return (id != null) ? id.intValue() : -1;
+	}
+
+	/**
+	 *
+	 * @param scopeKey
+	 * @param serviceName
+	 * @param resourceStatisticName
+	 * @param statisticName
+	 * @return The id of the series (created if unknown)
+	 * @throws IOException
+	 */
+	int getOrCreate(String scopeKey, String serviceName, String resourceStatisticName, String statisticName) throws IOException {
+
+		int id = get(scopeKey, serviceName, resourceStatisticName, statisticName);
+		if (id >= 0) {
+			return id;
+		}
+
+		id = size++;
+		put(scopeKey, serviceName, resourceStatisticName, statisticName, id);
+
+		if (writer == null) {
+			writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), ENCODING));
+		}
+		writer.write(id + FIELD_SEPARATOR + scopeKey + FIELD_SEPARATOR + serviceName + FIELD_SEPARATOR + resourceStatisticName + FIELD_SEPARATOR + statisticName);
+		writer.newLine();
+		return id;
+	}
+
+	/**
+	 * @return The number of ids given (the next id)
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Writes the new series to the file
+	 *
+	 * @throws IOException
+	 */
+	void flush() throws IOException {
+		if (writer != null) {
+			writer.flush();
+		}
+	}
+
+	/**
+	 * Closes the file
+	 */
+	void close() {
+		if (writer != null) {
+			try {
+				writer.close();
+			} catch (IOException ex) {
+				AppLog.getLogger().warning("Unable to close history dictionary [" + file + "] - Message is [" + ex.getMessage() + "]");
+			}
+			writer = null;
+		}
+	}
+
+	/**
+	 *
+	 * @param scopeKey
+	 * @param serviceName
+	 * @param resourceStatisticName
+	 * @param statisticName
+	 * @param id
+	 */
+	private void put(String scopeKey, String serviceName, String resourceStatisticName, String statisticName, int id) {
+
+		Map<String, Map<String, Map<String, Integer>>> services = ids.get(scopeKey);
+		if (services == null) {
+			services = new HashMap<>();
+			ids.put(scopeKey, services);
+		}
+		Map<String, Map<String, Integer>> resourceStatistics = services.get(serviceName);
+		if (resourceStatistics == null) {
+			resourceStatistics = new HashMap<>();
+			services.put(serviceName, resourceStatistics);
+		}
+		Map<String, Integer> statistics = resourceStatistics.get(resourceStatisticName);
+		if (statistics == null) {
+			statistics = new HashMap<>();
+			resourceStatistics.put(resourceStatisticName, statistics);
+		}
+		statistics.put(statisticName, id);
+	}
+}
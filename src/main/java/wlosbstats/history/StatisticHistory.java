@@ -0,0 +1,68 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.history;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Samples of one statistic (service / resource statistic / statistic) ordered
+ * from the oldest to the most recent
+ */
+public class StatisticHistory {
+
+	// Members
+	private final String serviceName;
+	private final String resourceStatisticName;
+	private final String statisticName;
+	private final long[] timestamps;
+	private final double[] values;
+
+	/**
+	 *
+	 * @param serviceName
+	 * @param resourceStatisticName
+	 * @param statisticName
+	 * @param timestamps The capture time of each sample
+	 * @param values The value of each sample (NaN if the statistic was not part of the snapshot)
+	 */
+	@ConstructorProperties({"serviceName", "resourceStatisticName", "statisticName", "timestamps", "values"})
+	public StatisticHistory(String serviceName, String resourceStatisticName, String statisticName, long[] timestamps, double[] values) {
+		this.serviceName = serviceName;
+		this.resourceStatisticName = resourceStatisticName;
+		this.statisticName = statisticName;
+		this.timestamps = timestamps;
+		this.values = values;
+	}
+
+	public String getServiceName() {
+		return serviceName;
+	}
+
+	public String getResourceStatisticName() {
+		return resourceStatisticName;
+	}
+
+	public String getStatisticName() {
+		return statisticName;
+	}
+
+	public long[] getTimestamps() {
+		return timestamps;
+	}
+
+	public double[] getValues() {
+		return values;
+	}
+}
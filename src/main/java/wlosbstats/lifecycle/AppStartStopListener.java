@@ -69,6 +69,7 @@ public class AppStartStopListener extends GenericServlet {
 		try {
 			wlOsbStatsMBeanRegistrar = new WLOsbStatsMBeanRegistrar();
 			wlOsbStatsMBeanRegistrar.register();
+			getServletContext().setAttribute(WLOsbStatsMBeanRegistrar.MBEAN_CONTEXT_ATTRIBUTE, wlOsbStatsMBeanRegistrar.getMBean());
 		} catch (Exception e) {
 			throw new RuntimeException("Unable to initialise application. Cause: " + e, e);
 		}
@@ -84,6 +85,8 @@ public class AppStartStopListener extends GenericServlet {
 		
 		AppLog.getLogger().notice("Stopping OSB extention for DomainHealth application");
 		
+		getServletContext().removeAttribute(WLOsbStatsMBeanRegistrar.MBEAN_CONTEXT_ATTRIBUTE);
+		
 		try {
 			if(wlOsbStatsMBeanRegistrar != null) wlOsbStatsMBeanRegistrar.deregister();
 		} catch (Exception e) {
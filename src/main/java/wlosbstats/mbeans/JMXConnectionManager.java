@@ -0,0 +1,244 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.mbeans;
+
+import java.util.Random;
+
+import javax.management.MBeanServerConnection;
+import javax.management.Notification;
+import javax.management.NotificationListener;
+import javax.management.remote.JMXConnectionNotification;
+import javax.management.remote.JMXConnector;
+
+import wlosbstats.util.AppLog;
+
+/**
+ * Owns the single long-lived JMX connector to the domain runtime of the admin
+ * server. The connector is reused by all the collections, checked cheaply
+ * (connector notifications and a periodic probe) and re-opened with an
+ * exponential backoff (plus jitter) after a failure. The old connector is
+ * always closed before a new one is opened.
+ */
+public class JMXConnectionManager {
+
+	/**
+	 * Opens a new connector (the caller is responsible to close it)
+	 */
+	public interface ConnectorFactory {
+		public JMXConnector connect() throws Exception;
+	}
+
+	// Members
+	private final ConnectorFactory connectorFactory;
+	private final long healthCheckIntervalMillis;
+	private final Random random = new Random();
+
+	private JMXConnector jmxConnector = null;
+	private MBeanServerConnection conn = null;
+	private volatile boolean broken = false;
+	private long lastCheckTime = 0;
+	private long nextAttemptTime = 0;
+	private int consecutiveFailures = 0;
+	private volatile boolean closed = false;
+
+	// Statistics
+	private volatile long connectedTime = 0;
+	private volatile long generation = 0;
+	private volatile long reconnectCount = 0;
+	private volatile long failureCount = 0;
+	private volatile long connectingTimeMillis = 0;
+
+	// Constants
+	private final static long INITIAL_BACKOFF_MILLIS = 1000;
+	private final static long MAX_BACKOFF_MILLIS = 5 * 60 * 1000;
+
+	/**
+	 * Listener marking the connection as broken as soon as the connector reports it
+	 */
+	private final NotificationListener connectionListener = new NotificationListener() {
+		public void handleNotification(Notification notification, Object handback) {
+			String type = notification.getType();
+			if (JMXConnectionNotification.FAILED.equals(type) || JMXConnectionNotification.CLOSED.equals(type)) {
+				AppLog.getLogger().warning("JMX connection to the domain runtime reported [" + type + "]");
+				broken = true;
+			}
+		}
+	};
+
+	/**
+	 *
+	 * @param connectorFactory
+	 * @param healthCheckIntervalMillis How long a connection is trusted before being probed again
+	 */
+	public JMXConnectionManager(ConnectorFactory connectorFactory, long healthCheckIntervalMillis) {
+		this.connectorFactory = connectorFactory;
+		this.healthCheckIntervalMillis = healthCheckIntervalMillis;
+	}
+
+	/**
+	 * Gets the current connection, (re)connecting if needed.
+	 *
+	 * @return The connection or null if it's not available (for example during the backoff period)
+	 */
+	public synchronized MBeanServerConnection getConnection() {
+
+		if (closed) {
+			return null;
+		}
+
+		long now = System.currentTimeMillis();
+
+		// -----------------------------------------------------
+		// Check the current connection
+		if (conn != null && !broken && (now - lastCheckTime) > healthCheckIntervalMillis) {
+			try {
+				conn.getMBeanCount();
+				lastCheckTime = now;
+			} catch (Exception ex) {
+				AppLog.getLogger().warning("JMX connection to the domain runtime is not healthy - Message is [" + ex.getMessage() + "]");
+				broken = true;
+			}
+		}
+
+		if (conn != null && !broken) {
+			return conn;
+		}
+		// -----------------------------------------------------
+
+		// -----------------------------------------------------
+		// (Re)connect if the backoff period is over
+		closeConnector();
+
+		if (now < nextAttemptTime) {
+			AppLog.getLogger().debug("JMX connection to the domain runtime not available - Next attempt in [" + (nextAttemptTime - now) + "] ms");
+			return null;
+		}
+
+		long start = System.currentTimeMillis();
+		try {
+			jmxConnector = connectorFactory.connect();
+			jmxConnector.addConnectionNotificationListener(connectionListener, null, null);
+			conn = jmxConnector.getMBeanServerConnection();
+
+			if (generation > 0) {
+				reconnectCount++;
+			}
+			generation++;
+			broken = false;
+			consecutiveFailures = 0;
+			nextAttemptTime = 0;
+			connectedTime = System.currentTimeMillis();
+			lastCheckTime = connectedTime;
+			AppLog.getLogger().debug("JMX connection to the domain runtime opened");
+		} catch (Exception ex) {
+			failureCount++;
+			consecutiveFailures++;
+			long backoffMillis = getBackoffMillis(consecutiveFailures);
+			nextAttemptTime = System.currentTimeMillis() + backoffMillis;
+			AppLog.getLogger().error("Error during init of jmxConnector object - The message is [" + ex.getMessage() + "] - Next attempt in [" + backoffMillis + "] ms");
+			closeConnector();
+		} finally {
+			connectingTimeMillis += System.currentTimeMillis() - start;
+		}
+		// -----------------------------------------------------
+
+		return conn;
+	}
+
+	/**
+	 * Forces the connection to be probed before its next use (for example after a failed remote call).
+	 */
+	public synchronized void requestHealthCheck() {
+		lastCheckTime = 0;
+	}
+
+	/**
+	 * Closes the connector - No new connection is opened afterwards.
+	 */
+	public synchronized void close() {
+		closed = true;
+		closeConnector();
+	}
+
+	/**
+	 * @return The number of the current connection (incremented at each new connection)
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * @return Age of the current connection (0 if not connected)
+	 */
+	public long getConnectionAgeMillis() {
+		return (conn != null && connectedTime > 0) ? System.currentTimeMillis() - connectedTime : 0;
+	}
+
+	/**
+	 * @return The number of reconnections since the startup
+	 */
+	public long getReconnectCount() {
+		return reconnectCount;
+	}
+
+	/**
+	 * @return The number of failed connection attempts since the startup
+	 */
+	public long getFailureCount() {
+		return failureCount;
+	}
+
+	/**
+	 * @return The total time spent to open connections since the startup
+	 */
+	public long getConnectingTimeMillis() {
+		return connectingTimeMillis;
+	}
+
+	/**
+	 * Exponential backoff with jitter (between 50% and 100% of the exponential delay)
+	 *
+	 * @param failures The number of consecutive failures
+	 * @return
+	 */
+	private long getBackoffMillis(int failures) {
+		long backoffMillis = INITIAL_BACKOFF_MILLIS << Math.min(failures - 1, 20);
+		backoffMillis = Math.min(backoffMillis, MAX_BACKOFF_MILLIS);
+		return (backoffMillis / 2) + (long) (random.nextDouble() * (backoffMillis / 2));
+	}
+
+	/**
+	 * Closes the current connector (if any)
+	 */
+	private void closeConnector() {
+
+		if (jmxConnector != null) {
+			try {
+				jmxConnector.removeConnectionNotificationListener(connectionListener);
+			} catch (Exception ex) {
+				// Not important
+			}
+
+			try {
+				jmxConnector.close();
+				AppLog.getLogger().debug("JMX connection to the domain runtime closed");
+			} catch (Exception ex) {
+				AppLog.getLogger().debug("Error while closing the JMX connection to the domain runtime - The message is [" + ex.getMessage() + "]");
+			}
+		}
+		jmxConnector = null;
+		conn = null;
+	}
+}
@@ -0,0 +1,264 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.mbeans;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import wlosbstats.util.ContextAwareWork;
+
+import com.bea.wli.config.Ref;
+import com.bea.wli.monitoring.ServiceResourceStatistic;
+
+import commonj.work.WorkItem;
+import commonj.work.WorkManager;
+
+/**
+ * Retrieves the statistics of the OSB services by batches of Ref instead of
+ * asking the aggregator for all the services at once. Up to maxInFlight
+ * batches are fetched at the same time on the work manager and each batch is
+ * handed to the BatchHandler as soon as it arrives, so the memory used
+ * depends on the batch size and not on the number of services of the domain.
+ * When a batch fails (or times out) the fetch is aborted : the batches still
+ * in flight are released (not started or dropped) and the caller must discard
+ * the batches already processed. The batches of all the fetchers (one per
+ * server when all the servers are collected) share the permits, so there are
+ * never more batches scheduled than threads in the work manager and the time
+ * spent in its queue doesn't count against the batch timeout.
+ */
+public class RefBatchFetcher {
+
+	/**
+	 * Receives the statistics of each batch (in the thread which called fetch)
+	 */
+	public interface BatchHandler {
+		public void processBatch(HashMap<Ref, ServiceResourceStatistic> statsMap);
+	}
+
+	// Members
+	private final ServiceDomainClient serviceDomainClient;
+	private final WorkManager workManager;
+	private final int batchSize;
+	private final int maxInFlight;
+	private final long batchTimeoutMillis;
+	private final Semaphore batchPermits;
+
+	// Constants
+	private final static long WORK_COMPLETION_POLL_MILLIS = 200;
+
+	/**
+	 *
+	 * @param serviceDomainClient
+	 * @param workManager The work manager used to pipeline the batches (if null the batches are fetched one after the other)
+	 * @param batchSize The maximum number of Ref per aggregator call
+	 * @param maxInFlight The maximum number of batches fetched at the same time
+	 * @param batchTimeoutMillis The maximum time to wait for a batch
+	 * @param batchPermits The permits shared by all the fetchers (one per batch scheduled on the work manager)
+	 */
+	public RefBatchFetcher(ServiceDomainClient serviceDomainClient, WorkManager workManager, int batchSize, int maxInFlight, long batchTimeoutMillis, Semaphore batchPermits) {
+		this.serviceDomainClient = serviceDomainClient;
+		this.workManager = workManager;
+		this.batchSize = Math.max(1, batchSize);
+		this.maxInFlight = Math.max(1, maxInFlight);
+		this.batchTimeoutMillis = batchTimeoutMillis;
+		this.batchPermits = batchPermits;
+	}
+
+	/**
+	 * Retrieves the statistics of the services, batch after batch.
+	 *
+	 * @param serverName The server (if null, the statistics are retrieved for the cluster)
+	 * @param osbResourceType
+	 * @param serviceRefs
+	 * @param typeFlag
+	 * @param handler
+	 * @throws Exception The exception of the first batch which failed (the remaining batches are released)
+	 */
+	public void fetch(String serverName, String osbResourceType, Ref[] serviceRefs, int typeFlag, BatchHandler handler) throws Exception {
+
+		if (serviceRefs == null || serviceRefs.length == 0) {
+			return;
+		}
+
+		// Small domain (or no work manager) : nothing to pipeline
+		if (workManager == null || serviceRefs.length <= batchSize) {
+			for (int from = 0; from < serviceRefs.length; from += batchSize) {
+				Ref[] batch = Arrays.copyOfRange(serviceRefs, from, Math.min(from + batchSize, serviceRefs.length));
+				handler.processBatch(serviceDomainClient.getStatistics(osbResourceType, batch, typeFlag, serverName));
+			}
+			return;
+		}
+
+		List<BatchWork> inFlight = new ArrayList<>();
+		try {
+			fetchPipelined(serverName, osbResourceType, serviceRefs, typeFlag, handler, inFlight);
+		} catch (Exception ex) {
+			for (BatchWork work : inFlight) {
+				work.release();
+			}
+			throw ex;
+		}
+	}
+
+	/**
+	 * Keeps up to maxInFlight batches on the work manager until all the batches are processed
+	 *
+	 * @param serverName
+	 * @param osbResourceType
+	 * @param serviceRefs
+	 * @param typeFlag
+	 * @param handler
+	 * @param inFlight The batches scheduled and not yet processed
+	 * @throws Exception
+	 */
+	private void fetchPipelined(String serverName, String osbResourceType, Ref[] serviceRefs, int typeFlag, BatchHandler handler, List<BatchWork> inFlight) throws Exception {
+
+		int nextFrom = 0;
+
+		while (nextFrom < serviceRefs.length || inFlight.size() > 0) {
+
+			// -----------------------------------------------------
+			// Keep the pipeline full (as long as a permit is available : if nothing is in flight, wait for one)
+			while (inFlight.size() < maxInFlight && nextFrom < serviceRefs.length) {
+
+				if (inFlight.size() == 0) {
+					if (!batchPermits.tryAcquire(batchTimeoutMillis, TimeUnit.MILLISECONDS)) {
+						throw new TimeoutException("Timeout of [" + batchTimeoutMillis + "] ms reached while waiting for a thread to fetch a batch of type [" + osbResourceType + "]");
+					}
+				} else if (!batchPermits.tryAcquire()) {
+					break;
+				}
+
+				Ref[] batch = Arrays.copyOfRange(serviceRefs, nextFrom, Math.min(nextFrom + batchSize, serviceRefs.length));
+				nextFrom += batch.length;
+
+				BatchWork work = new BatchWork(serverName, osbResourceType, batch, typeFlag);
+				try {
+					work.workItem = workManager.schedule(work);
+				} catch (Exception ex) {
+					batchPermits.release();
+					throw ex;
+				}
+				inFlight.add(work);
+			}
+			// -----------------------------------------------------
+
+			// -----------------------------------------------------
+			// Wait for (at least) one batch and merge the completed ones
+			List<WorkItem> workItems = new ArrayList<>();
+			for (BatchWork work : inFlight) {
+				workItems.add(work.workItem);
+			}
+			workManager.waitForAny(workItems, WORK_COMPLETION_POLL_MILLIS);
+
+			Iterator<BatchWork> iterator = inFlight.iterator();
+			while (iterator.hasNext()) {
+
+				BatchWork work = iterator.next();
+				if (work.completed) {
+					iterator.remove();
+					if (work.failure != null) {
+						throw work.failure;
+					}
+					handler.processBatch(work.statsMap);
+					work.statsMap = null;
+				} else if (work.getElapsedMillis() > batchTimeoutMillis) {
+					throw new TimeoutException("Timeout of [" + batchTimeoutMillis + "] ms reached for a batch of [" + work.serviceRefs.length + "] elements of type [" + osbResourceType + "]");
+				}
+			}
+			// -----------------------------------------------------
+		}
+	}
+
+	/**
+	 * Work retrieving the statistics of one batch
+	 */
+	private class BatchWork extends ContextAwareWork {
+
+		private final String serverName;
+		private final String osbResourceType;
+		private final Ref[] serviceRefs;
+		private final int typeFlag;
+		private final long scheduledTime = System.currentTimeMillis();
+		private volatile long startTime = 0;
+		private volatile HashMap<Ref, ServiceResourceStatistic> statsMap = null;
+		private volatile Exception failure = null;
+		private volatile boolean completed = false;
+		private volatile boolean released = false;
+		private WorkItem workItem;
+
+		/**
+		 *
+		 * @param serverName
+		 * @param osbResourceType
+		 * @param serviceRefs
+		 * @param typeFlag
+		 */
+		public BatchWork(String serverName, String osbResourceType, Ref[] serviceRefs, int typeFlag) {
+			this.serverName = serverName;
+			this.osbResourceType = osbResourceType;
+			this.serviceRefs = serviceRefs;
+			this.typeFlag = typeFlag;
+		}
+
+		/**
+		 * Calls the aggregator
+		 */
+		public void doRun() {
+			startTime = System.currentTimeMillis();
+
+			if (released) {
+				// The fetch has been aborted before this batch started
+				completed = true;
+				batchPermits.release();
+				return;
+			}
+
+			try {
+				HashMap<Ref, ServiceResourceStatistic> statistics = serviceDomainClient.getStatistics(osbResourceType, serviceRefs, typeFlag, serverName);
+				if (!released) {
+					statsMap = statistics;
+				}
+			} catch (Exception ex) {
+				failure = ex;
+			} finally {
+				completed = true;
+				batchPermits.release();
+			}
+		}
+
+		/**
+		 * The fetch is aborted : the batch is not started (or its statistics are dropped)
+		 */
+		public void release() {
+			released = true;
+			statsMap = null;
+		}
+
+		/**
+		 * @return The time spent by the batch (or in the queue if the work is not yet started)
+		 */
+		public long getElapsedMillis() {
+			long start = startTime;
+			return System.currentTimeMillis() - (start > 0 ? start : scheduledTime);
+		}
+	}
+}
@@ -0,0 +1,150 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.mbeans;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import wlosbstats.util.AppLog;
+
+import com.bea.wli.config.Ref;
+
+/**
+ * Cache of the monitored Refs of each OSB type. The service inventory only
+ * changes when an OSB session is activated, so the Refs are kept for a TTL
+ * instead of being retrieved from the aggregator at each collection. A Ref
+ * reported as invalid (service deleted) is evicted immediately and the whole
+ * registry can be refreshed on demand. The Refs of each OSB type are loaded
+ * under a lock of the type, so an expired type doesn't block the others.
+ */
+public class RefRegistry {
+
+	/**
+	 * Monitored Refs of one OSB type and the time they have been loaded
+	 */
+	private static class Entry {
+		private final Ref[] refs;
+		private final long loadedTime;
+
+		private Entry(Ref[] refs, long loadedTime) {
+			this.refs = refs;
+			this.loadedTime = loadedTime;
+		}
+	}
+
+	// Members
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Object> loadLocks = new ConcurrentHashMap<>();
+	private final long ttlMillis;
+
+	/**
+	 *
+	 * @param ttlMillis How long the Refs are kept before being retrieved again
+	 */
+	public RefRegistry(long ttlMillis) {
+		this.ttlMillis = ttlMillis;
+	}
+
+	/**
+	 * Gets the monitored Refs of the OSB type, from the cache if they are still valid.
+	 *
+	 * @param serviceDomainClient
+	 * @param osbResourceType
+	 * @return The monitored Refs
+	 * @throws Exception
+	 */
+	public Ref[] getMonitoredRefs(ServiceDomainClient serviceDomainClient, String osbResourceType) throws Exception {
+
+		Entry entry = entries.get(osbResourceType);
+		if (entry != null && !isExpired(entry)) {
+			return entry.refs;
+		}
+
+		synchronized (getLoadLock(osbResourceType)) {
+			entry = entries.get(osbResourceType);
+			if (entry != null && !isExpired(entry)) {
+				return entry.refs;
+			}
+
+			Ref[] refs = serviceDomainClient.getMonitoredRefs(osbResourceType);
+			if (refs != null) {
+				entries.put(osbResourceType, new Entry(refs, System.currentTimeMillis()));
+				AppLog.getLogger().debug("Loaded [" + refs.length + "] monitored Refs of type [" + osbResourceType + "]");
+			}
+			return refs;
+		}
+	}
+
+	/**
+	 *
+	 * @param osbResourceType
+	 * @return The lock of the loading of the Refs of the OSB type
+	 */
+	private Object getLoadLock(String osbResourceType) {
+
+		Object lock = loadLocks.get(osbResourceType);
+		if (lock == null) {
+			Object newLock = new Object();
+			lock = loadLocks.putIfAbsent(osbResourceType, newLock);
+			if (lock == null) {
+				lock = newLock;
+			}
+		}
+		return lock;
+	}
+
+	/**
+	 * Removes a Ref which is no more valid (for example a deleted service).
+	 *
+	 * @param ref
+	 */
+	public synchronized void evict(Ref ref) {
+
+		for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+
+			Entry entry = mapEntry.getValue();
+			List<Ref> refs = new ArrayList<>(entry.refs.length);
+			for (Ref current : entry.refs) {
+				if (!current.equals(ref)) {
+					refs.add(current);
+				}
+			}
+
+			// Not replaced if the Refs of the type have been loaded again meanwhile
+			if (refs.size() != entry.refs.length && entries.replace(mapEntry.getKey(), entry, new Entry(refs.toArray(new Ref[refs.size()]), entry.loadedTime))) {
+				AppLog.getLogger().notice("Ref [" + ref.getFullName() + "] evicted from the monitored Refs of type [" + mapEntry.getKey() + "]");
+			}
+		}
+	}
+
+	/**
+	 * Forces the Refs of all the OSB types to be retrieved again at the next collection.
+	 */
+	public void invalidate() {
+		entries.clear();
+	}
+
+	/**
+	 *
+	 * @param entry
+	 * @return true if the TTL of the entry is reached
+	 */
+	private boolean isExpired(Entry entry) {
+		return (System.currentTimeMillis() - entry.loadedTime) > ttlMillis;
+	}
+}
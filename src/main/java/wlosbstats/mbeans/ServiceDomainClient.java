@@ -0,0 +1,265 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.mbeans;
+
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+
+import weblogic.management.jmx.MBeanServerInvocationHandler;
+import wlosbstats.util.MonitorProperties;
+
+import com.bea.wli.config.Ref;
+import com.bea.wli.monitoring.MonitoringException;
+import com.bea.wli.monitoring.ServiceDomainMBean;
+import com.bea.wli.monitoring.ServiceResourceStatistic;
+
+/**
+ * Typed access to the ServiceDomainMBean of the domain runtime. The calls go 
+ * straight to the WebLogic MBean proxy (no additional reflection layer) and 
+ * the failures are reported to the caller instead of being turned into null 
+ * results. The number of calls, the latency and the number of failures of 
+ * each method are recorded.
+ */
+public class ServiceDomainClient {
+
+	/**
+	 * Call statistics of one ServiceDomainMBean method
+	 */
+	private static class CallMetrics {
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong failures = new AtomicLong();
+		private final AtomicLong totalNanos = new AtomicLong();
+		private final AtomicLong maxNanos = new AtomicLong();
+		
+		/**
+		 * 
+		 * @param startNanos
+		 * @param failed
+		 */
+		private void record(long startNanos, boolean failed) {
+			long elapsedNanos = System.nanoTime() - startNanos;
+			count.incrementAndGet();
+			totalNanos.addAndGet(elapsedNanos);
+			if (failed) {
+				failures.incrementAndGet();
+			}
+			
+			long max = maxNanos.get();
+			while (elapsedNanos > max && !maxNanos.compareAndSet(max, elapsedNanos)) {
+				max = maxNanos.get();
+			}
+		}
+	}
+	
+	// Members
+	private volatile ServiceDomainMBean serviceDomainMBean = null;
+	private final CallMetrics monitoredProxyServiceRefsMetrics = new CallMetrics();
+	private final CallMetrics monitoredBusinessServiceRefsMetrics = new CallMetrics();
+	private final CallMetrics proxyServiceStatisticsMetrics = new CallMetrics();
+	private final CallMetrics businessServiceStatisticsMetrics = new CallMetrics();
+	
+	// Constants
+	private final static String GET_MONITORED_PROXY_SERVICE_REFS = "getMonitoredProxyServiceRefs";
+	private final static String GET_MONITORED_BUSINESS_SERVICE_REFS = "getMonitoredBusinessServiceRefs";
+	private final static String GET_PROXY_SERVICE_STATISTICS = "getProxyServiceStatistics";
+	private final static String GET_BUSINESS_SERVICE_STATISTICS = "getBusinessServiceStatistics";
+	
+	public final static String METRIC_COUNT = "count";
+	public final static String METRIC_FAILURES = "failures";
+	public final static String METRIC_TOTAL_MICROS = "totalMicros";
+	public final static String METRIC_AVERAGE_MICROS = "averageMicros";
+	public final static String METRIC_MAX_MICROS = "maxMicros";
+	
+	/**
+	 * Binds the client to the ServiceDomainMBean of a (new) connection.
+	 * 
+	 * @param conn The connection to the domain runtime
+	 * @throws Exception
+	 */
+	public void bind(MBeanServerConnection conn) throws Exception {
+		ObjectName on = new ObjectName(ServiceDomainMBean.OBJECT_NAME);
+		serviceDomainMBean = (ServiceDomainMBean) MBeanServerInvocationHandler.newProxyInstance(conn, on);
+	}
+	
+	/**
+	 * Unbinds the client (for example when the connection is closed)
+	 */
+	public void unbind() {
+		serviceDomainMBean = null;
+	}
+	
+	/**
+	 * @return true if the client is bound to a ServiceDomainMBean
+	 */
+	public boolean isBound() {
+		return serviceDomainMBean != null;
+	}
+	
+	/**
+	 * Gets the monitored Refs of an OSB type.
+	 * 
+	 * @param osbResourceType
+	 * @return
+	 * @throws MonitoringException Reported by OSB
+	 * @throws ServiceDomainException Any other failure
+	 */
+	public Ref[] getMonitoredRefs(String osbResourceType) throws MonitoringException, ServiceDomainException {
+		
+		ServiceDomainMBean mbean = getServiceDomainMBean();
+		boolean failed = true;
+		long start = System.nanoTime();
+		
+		switch (osbResourceType) {
+
+			case MonitorProperties.OSB_PS_TYPE:
+				try {
+					Ref[] refs = mbean.getMonitoredProxyServiceRefs();
+					failed = false;
+					return refs;
+				} catch (UndeclaredThrowableException ute) {
+					throw new ServiceDomainException(GET_MONITORED_PROXY_SERVICE_REFS, ute.getUndeclaredThrowable());
+				} catch (RuntimeException re) {
+					throw new ServiceDomainException(GET_MONITORED_PROXY_SERVICE_REFS, re);
+				} finally {
+					monitoredProxyServiceRefsMetrics.record(start, failed);
+				}
+
+			case MonitorProperties.OSB_BS_TYPE:
+				try {
+					Ref[] refs = mbean.getMonitoredBusinessServiceRefs();
+					failed = false;
+					return refs;
+				} catch (UndeclaredThrowableException ute) {
+					throw new ServiceDomainException(GET_MONITORED_BUSINESS_SERVICE_REFS, ute.getUndeclaredThrowable());
+				} catch (RuntimeException re) {
+					throw new ServiceDomainException(GET_MONITORED_BUSINESS_SERVICE_REFS, re);
+				} finally {
+					monitoredBusinessServiceRefsMetrics.record(start, failed);
+				}
+
+			default:
+				throw new IllegalArgumentException("Wrong osbResourceType [" + osbResourceType + "] - Must be [" + MonitorProperties.OSB_PS_TYPE + "] or [" + MonitorProperties.OSB_BS_TYPE + "]");
+		}
+	}
+	
+	/**
+	 * Gets the statistics of a set of services.
+	 * 
+	 * @param osbResourceType
+	 * @param serviceRefs
+	 * @param typeFlag
+	 * @param serverName The server (if null, the statistics are retrieved for the cluster)
+	 * @return
+	 * @throws IllegalArgumentException Invalid Ref or typeFlag
+	 * @throws MonitoringException Reported by OSB (DomainMonitoringDisabledException ...)
+	 * @throws ServiceDomainException Any other failure
+	 */
+	public HashMap<Ref, ServiceResourceStatistic> getStatistics(String osbResourceType, Ref[] serviceRefs, int typeFlag, String serverName) throws MonitoringException, ServiceDomainException {
+		
+		ServiceDomainMBean mbean = getServiceDomainMBean();
+		boolean failed = true;
+		long start = System.nanoTime();
+		
+		switch (osbResourceType) {
+
+			case MonitorProperties.OSB_PS_TYPE:
+				try {
+					HashMap<Ref, ServiceResourceStatistic> statsMap = mbean.getProxyServiceStatistics(serviceRefs, typeFlag, serverName);
+					failed = false;
+					return statsMap;
+				} catch (IllegalArgumentException iae) {
+					throw iae;
+				} catch (UndeclaredThrowableException ute) {
+					throw new ServiceDomainException(GET_PROXY_SERVICE_STATISTICS, ute.getUndeclaredThrowable());
+				} catch (RuntimeException re) {
+					throw new ServiceDomainException(GET_PROXY_SERVICE_STATISTICS, re);
+				} finally {
+					proxyServiceStatisticsMetrics.record(start, failed);
+				}
+
+			case MonitorProperties.OSB_BS_TYPE:
+				try {
+					HashMap<Ref, ServiceResourceStatistic> statsMap = mbean.getBusinessServiceStatistics(serviceRefs, typeFlag, serverName);
+					failed = false;
+					return statsMap;
+				} catch (IllegalArgumentException iae) {
+					throw iae;
+				} catch (UndeclaredThrowableException ute) {
+					throw new ServiceDomainException(GET_BUSINESS_SERVICE_STATISTICS, ute.getUndeclaredThrowable());
+				} catch (RuntimeException re) {
+					throw new ServiceDomainException(GET_BUSINESS_SERVICE_STATISTICS, re);
+				} finally {
+					businessServiceStatisticsMetrics.record(start, failed);
+				}
+
+			default:
+				throw new IllegalArgumentException("Wrong osbResourceType [" + osbResourceType + "] - Must be [" + MonitorProperties.OSB_PS_TYPE + "] or [" + MonitorProperties.OSB_BS_TYPE + "]");
+		}
+	}
+	
+	/**
+	 * Call statistics of each ServiceDomainMBean method
+	 * 
+	 * @return The KEY is the NAME of the method and the CONTENT is the statistics (count, failures, totalMicros, averageMicros, maxMicros)
+	 */
+	public Map<String, Map<String, Long>> getCallMetrics() {
+		
+		Map<String, Map<String, Long>> metrics = new LinkedHashMap<>();
+		metrics.put(GET_MONITORED_PROXY_SERVICE_REFS, toMap(monitoredProxyServiceRefsMetrics));
+		metrics.put(GET_MONITORED_BUSINESS_SERVICE_REFS, toMap(monitoredBusinessServiceRefsMetrics));
+		metrics.put(GET_PROXY_SERVICE_STATISTICS, toMap(proxyServiceStatisticsMetrics));
+		metrics.put(GET_BUSINESS_SERVICE_STATISTICS, toMap(businessServiceStatisticsMetrics));
+		return metrics;
+	}
+	
+	/**
+	 * 
+	 * @param callMetrics
+	 * @return
+	 */
+	private Map<String, Long> toMap(CallMetrics callMetrics) {
+		
+		long count = callMetrics.count.get();
+		long totalMicros = callMetrics.totalNanos.get() / 1000;
+		
+		Map<String, Long> values = new LinkedHashMap<>();
+		values.put(METRIC_COUNT, count);
+		values.put(METRIC_FAILURES, callMetrics.failures.get());
+		values.put(METRIC_TOTAL_MICROS, totalMicros);
+		values.put(METRIC_AVERAGE_MICROS, count > 0 ? totalMicros / count : 0);
+		values.put(METRIC_MAX_MICROS, callMetrics.maxNanos.get() / 1000);
+		return values;
+	}
+	
+	/**
+	 * 
+	 * @return
+	 * @throws ServiceDomainException If the client is not bound
+	 */
+	private ServiceDomainMBean getServiceDomainMBean() throws ServiceDomainException {
+		
+		ServiceDomainMBean mbean = serviceDomainMBean;
+		if (mbean == null) {
+			throw new ServiceDomainException("bind", new IllegalStateException("No connection to the domain runtime"));
+		}
+		return mbean;
+	}
+}
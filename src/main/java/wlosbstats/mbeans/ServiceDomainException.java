@@ -0,0 +1,35 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.mbeans;
+
+/**
+ * Failure of a call to the ServiceDomainMBean which is not reported by OSB
+ * itself (connection lost, timeout, unexpected remote error ...). The OSB
+ * exceptions (MonitoringException and sub-classes) are not wrapped.
+ */
+public class ServiceDomainException extends Exception {
+
+	// Constants
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * 
+	 * @param methodName The ServiceDomainMBean method which failed
+	 * @param cause
+	 */
+	public ServiceDomainException(String methodName, Throwable cause) {
+		super("Call to ServiceDomainMBean." + methodName + "() failed - Cause: " + cause, cause);
+	}
+}
@@ -14,18 +14,34 @@
 //POSSIBILITY OF SUCH DAMAGE.
 package wlosbstats.mbeans;
 
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.Proxy;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import javax.management.ListenerNotFoundException;
+import javax.management.MBeanNotificationInfo;
 import javax.management.MBeanRegistration;
 import javax.management.MBeanServer;
 import javax.management.MBeanServerConnection;
 import javax.management.MalformedObjectNameException;
+import javax.management.Notification;
+import javax.management.NotificationBroadcasterSupport;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationFilter;
+import javax.management.NotificationListener;
 import javax.management.ObjectName;
 import javax.management.remote.JMXConnector;
 import javax.management.remote.JMXConnectorFactory;
@@ -33,7 +49,37 @@ import javax.management.remote.JMXServiceURL;
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
 
+import wlosbstats.alert.AlertEngine;
+import wlosbstats.alert.AlertRule;
+import wlosbstats.baseline.Anomaly;
+import wlosbstats.baseline.BaselineStore;
+import wlosbstats.collector.CollectionJob;
+import wlosbstats.collector.CollectionScheduler;
+import wlosbstats.history.HistoryStore;
+import wlosbstats.history.LatencyPercentiles;
+import wlosbstats.history.MappedHistoryStore;
+import wlosbstats.history.PercentileStore;
+import wlosbstats.history.StatisticHistory;
+import wlosbstats.notification.SnapshotNotifications;
+import wlosbstats.snapshot.ColumnarStatistics;
+import wlosbstats.snapshot.ColumnarStatisticsBuilder;
+import wlosbstats.snapshot.MetricCatalog;
+import wlosbstats.snapshot.NamePattern;
+import wlosbstats.snapshot.SerializedSnapshotCache;
+import wlosbstats.snapshot.ServiceRanking;
+import wlosbstats.snapshot.SnapshotCodec;
+import wlosbstats.snapshot.SnapshotDiff;
+import wlosbstats.snapshot.SnapshotStore;
+import wlosbstats.snapshot.StatisticsDictionary;
+import wlosbstats.snapshot.StatisticValues;
+import wlosbstats.snapshot.StatisticsDelta;
+import wlosbstats.snapshot.StatisticsSnapshot;
+import wlosbstats.snapshot.TopNRanking;
+import wlosbstats.snapshot.VersionedNames;
+import wlosbstats.snapshot.VersionedValue;
 import wlosbstats.util.AppLog;
+import wlosbstats.util.AppProperties;
+import wlosbstats.util.ContextAwareWork;
 import wlosbstats.util.MonitorProperties;
 
 import com.bea.wli.config.Ref;
@@ -43,19 +89,50 @@ import com.bea.wli.monitoring.MonitoringException;
 import com.bea.wli.monitoring.MonitoringNotEnabledException;
 import com.bea.wli.monitoring.ResourceStatistic;
 import com.bea.wli.monitoring.ResourceType;
-import com.bea.wli.monitoring.ServiceDomainMBean;
 import com.bea.wli.monitoring.ServiceResourceStatistic;
 import com.bea.wli.monitoring.StatisticType;
 import com.bea.wli.monitoring.StatisticValue;
 
+import commonj.work.WorkItem;
+import commonj.work.WorkManager;
+
 /**
  * Implementation of the MBean exposing OSB metrics
  *  
  * @see javax.management.MXBean
  */
-public class WLOsbStats implements WLOsbStatsMXBean, MBeanRegistration {
+public class WLOsbStats implements WLOsbStatsMXBean, MBeanRegistration, NotificationEmitter {
+	
+	// Collected statistics (each collection publishes a new immutable snapshot)
+	private final SnapshotStore snapshotStore = new SnapshotStore(AppProperties.getIntProperty(AppProperties.RETAINED_SNAPSHOTS_PROP, AppProperties.DEFAULT_RETAINED_SNAPSHOTS));
+	private final TopNRanking topNRanking = new TopNRanking();
+	private final SerializedSnapshotCache serializedSnapshots = new SerializedSnapshotCache();
 	
-	private Map<String, Map<String, Map<String, Double>>>  statistics = new LinkedHashMap<>();
+	// Batches of Ref scheduled at the same time by all the collections (at most the threads of the RefBatch work manager)
+	private final Semaphore refBatchPermits = new Semaphore(Math.max(1, AppProperties.getIntProperty(AppProperties.REF_BATCH_MAX_THREADS_PROP, AppProperties.DEFAULT_REF_BATCH_MAX_THREADS)));
+	private final HistoryStore historyStore = new HistoryStore(
+			AppProperties.getIntProperty(AppProperties.HISTORY_SAMPLES_PROP, AppProperties.DEFAULT_HISTORY_SAMPLES), 
+			AppProperties.getIntProperty(AppProperties.HISTORY_MAX_SERIES_PROP, AppProperties.DEFAULT_HISTORY_MAX_SERIES));
+	private volatile MappedHistoryStore mappedHistoryStore = null;
+	private final PercentileStore percentileStore = new PercentileStore(
+			AppProperties.getIntProperty(AppProperties.PERCENTILE_BUCKET_MINUTES_PROP, AppProperties.DEFAULT_PERCENTILE_BUCKET_MINUTES) * ONE_MINUTE_MILLIS, 
+			AppProperties.getIntProperty(AppProperties.PERCENTILE_BUCKETS_PROP, AppProperties.DEFAULT_PERCENTILE_BUCKETS), 
+			AppProperties.getIntProperty(AppProperties.PERCENTILE_MAX_HISTOGRAMS_PROP, AppProperties.DEFAULT_PERCENTILE_MAX_HISTOGRAMS));
+	private final BaselineStore baselineStore = new BaselineStore(
+			AppProperties.getIntProperty(AppProperties.BASELINE_HALF_LIFE_SAMPLES_PROP, AppProperties.DEFAULT_BASELINE_HALF_LIFE_SAMPLES), 
+			AppProperties.getDoubleProperty(AppProperties.BASELINE_SIGMA_THRESHOLD_PROP, AppProperties.DEFAULT_BASELINE_SIGMA_THRESHOLD), 
+			AppProperties.getIntProperty(AppProperties.BASELINE_WARMUP_SAMPLES_PROP, AppProperties.DEFAULT_BASELINE_WARMUP_SAMPLES));
+	
+	// Notifications (alerts)
+	private final NotificationBroadcasterSupport notificationBroadcaster = new NotificationBroadcasterSupport();
+	private final AtomicLong notificationSequence = new AtomicLong(0);
+	private volatile ObjectName objectName = null;
+	private volatile SnapshotNotifications.Mode snapshotNotificationMode = SnapshotNotifications.Mode.NONE;
+	private final AlertEngine alertEngine = new AlertEngine(new AlertEngine.NotificationPublisher() {
+		public void publish(String type, String message, Map<String, Object> userData, long timeStamp) {
+			sendNotification(type, message, userData, timeStamp);
+		}
+	});
 	
 	// Constants
 	private final static String WL_OSB_APP_VERSION = "0.0.1";
@@ -65,12 +142,11 @@ public class WLOsbStats implements WLOsbStatsMXBean, MBeanRegistration {
 	private static volatile MBeanServerConnection cachedLocalConn = null;
 	
 	// Members
-	private ServiceDomainMBean serviceDomainMBean = null;
+	private final ServiceDomainClient serviceDomainClient = new ServiceDomainClient();
 	
-	//private static final ObjectName domainRuntimeServiceMBean;
+	private static final ObjectName domainRuntimeServiceMBean;
 	private static final ObjectName serverRuntimeServiceMBean;
 	
-	/*
 	static {
 		try {
 			domainRuntimeServiceMBean = new ObjectName("com.bea:Name=DomainRuntimeService,Type=weblogic.management.mbeanservers.domainruntime.DomainRuntimeServiceMBean");
@@ -78,7 +154,6 @@ public class WLOsbStats implements WLOsbStatsMXBean, MBeanRegistration {
 			throw new AssertionError(e.toString());
 		}
 	}
-	*/
 	
 	static {
 		try {
@@ -103,32 +178,37 @@ public class WLOsbStats implements WLOsbStatsMXBean, MBeanRegistration {
 	public final static String ADMIN_SERVER_NAME = "AdminServerName";
 	public final static String IS_ADMIN_SERVER_PORT_SECURED = "AdminServerListenPortSecure";
 	public final static String WORK_MANAGER_RUNTIMES = "WorkManagerRuntimes";
+	public final static String SERVER_RUNTIMES = "ServerRuntimes";
+	public final static String STATE = "State";
 	public final static String NAME = "Name";
+	public final static String SERVER_STATE_RUNNING = "RUNNING";
+	
+	private final static String CAPTURE_THREADS_WORK_MGR_JNDI = "java:comp/env/wlosbstats_IndividualServerStatCapturerWorkMngr";
+	private final static String REF_BATCH_WORK_MGR_JNDI = "java:comp/env/wlosbstats_RefBatchFetcherWorkMngr";
+	private final static String COLLECTION_SCHEDULER_WORK_MGR_JNDI = "java:comp/env/wlosbstats_CollectionSchedulerWorkMngr";
+	private final static long WORK_COMPLETION_POLL_MILLIS = 500;
+	private final static int ONE_SECOND_MILLIS = 1000;
+	private final static long ONE_MINUTE_MILLIS = 60 * 1000L;
+	private final static long ONE_HOUR_MILLIS = 60 * ONE_MINUTE_MILLIS;
+	private final static long ONE_DAY_MILLIS = 24 * ONE_HOUR_MILLIS;
 
 	/**
+	 * Opens a new connector to the given MBean server of the admin server
+	 * (the connector is owned by the connection manager)
 	 * 
+	 * @param serviceName
+	 * @return
+	 * @throws Exception
 	 */
-	private boolean init(String serviceName) {
+	private JMXConnector openJMXConnector(String serviceName) throws Exception {
 		
-		try {
-			MBeanServerConnection localConn = getCachedLocalConn();
-			ObjectName serverRuntime = (ObjectName) localConn.getAttribute(serverRuntimeServiceMBean, SERVER_RUNTIME);
-			boolean isSecure = ((Boolean) localConn.getAttribute(serverRuntime, IS_ADMIN_SERVER_PORT_SECURED)).booleanValue();
-			String protocol = isSecure ? WEBLOGIC_SECURE_REMOTE_PROTOCOL: WEBLOGIC_INSECURE_REMOTE_PROTOCOL;
-			String host = (String) localConn.getAttribute(serverRuntime, ADMIN_SERVER_HOSTNAME);
-			int port = ((Integer) localConn.getAttribute(serverRuntime, ADMIN_SERVER_PORT)).intValue();
-			jmxConnector = JMXConnectorFactory.connect(new JMXServiceURL(protocol, host, port, JNDI_ROOT + serviceName), getJMXContextProps());
-			conn = jmxConnector.getMBeanServerConnection();
-			
-			return true;
-		} catch (Exception ex) {
-			AppLog.getLogger().error("Error during init of jmxConnector object - The message is [" + ex.getMessage() + "]");
-			
-			jmxConnector = null;
-			conn = null;
-			serviceDomainMBean = null;
-			return false;
-		}
+		MBeanServerConnection localConn = getCachedLocalConn();
+		ObjectName serverRuntime = (ObjectName) localConn.getAttribute(serverRuntimeServiceMBean, SERVER_RUNTIME);
+		boolean isSecure = ((Boolean) localConn.getAttribute(serverRuntime, IS_ADMIN_SERVER_PORT_SECURED)).booleanValue();
+		String protocol = isSecure ? WEBLOGIC_SECURE_REMOTE_PROTOCOL: WEBLOGIC_INSECURE_REMOTE_PROTOCOL;
+		String host = (String) localConn.getAttribute(serverRuntime, ADMIN_SERVER_HOSTNAME);
+		int port = ((Integer) localConn.getAttribute(serverRuntime, ADMIN_SERVER_PORT)).intValue();
+		return JMXConnectorFactory.connect(new JMXServiceURL(protocol, host, port, JNDI_ROOT + serviceName), getJMXContextProps());
 	}
 	
 	/**
@@ -149,12 +229,19 @@ public class WLOsbStats implements WLOsbStatsMXBean, MBeanRegistration {
 	 * @return The current JMX MBean server connection
 	 */
 	protected MBeanServerConnection getConn() {
-		return conn;
+		return connectionManager.getConnection();
 	}
 	
 	// Members
-	private JMXConnector jmxConnector;
-	private MBeanServerConnection conn;
+	private final JMXConnectionManager connectionManager = new JMXConnectionManager(new JMXConnectionManager.ConnectorFactory() {
+		public JMXConnector connect() throws Exception {
+			return openJMXConnector(DOMAIN_RUNTIME_SERVICE_NAME);
+		}
+	}, AppProperties.getIntProperty(AppProperties.CONNECTION_HEALTH_CHECK_SECS_PROP, AppProperties.DEFAULT_CONNECTION_HEALTH_CHECK_SECS) * (long) ONE_SECOND_MILLIS);
+	private long serviceDomainClientGeneration = 0;
+	private final Map<String, WorkManager> workManagers = new ConcurrentHashMap<>();
+	private final RefRegistry refRegistry = new RefRegistry(AppProperties.getIntProperty(AppProperties.REF_CACHE_TTL_SECS_PROP, AppProperties.DEFAULT_REF_CACHE_TTL_SECS) * (long) ONE_SECOND_MILLIS);
+	private CollectionScheduler collectionScheduler = null;
 	
 	/**
 	 * 
@@ -214,31 +301,39 @@ public class WLOsbStats implements WLOsbStatsMXBean, MBeanRegistration {
 	*/
 	
 	/**
+	 * Makes sure serviceDomainClient is bound to the current (healthy) connection :
+	 * the client is bound again each time the connection manager opens a new connection.
 	 * 
+	 * @return true if serviceDomainClient can be used
 	 */
-	private boolean initServiceDomainMBean() {
+	private synchronized boolean initServiceDomainMBean() {
 		
 		// -----------------------------------------------------------------------
 		try {
 			
-			if(init(DOMAIN_RUNTIME_SERVICE_NAME)) {
+			MBeanServerConnection connection = getConn();
+			if(connection != null) {
+				
+				if(!serviceDomainClient.isBound() || serviceDomainClientGeneration != connectionManager.getGeneration()) {
+					serviceDomainClient.bind(connection);
+					serviceDomainClientGeneration = connectionManager.getGeneration();
+				}
 				
-				serviceDomainMBean = getServiceDomainMBean(getConn());
-				if(serviceDomainMBean != null) {
-					AppLog.getLogger().debug("serviceDomainMBean is properly configured");
+				if(serviceDomainClient.isBound()) {
+					AppLog.getLogger().debug("serviceDomainClient is properly configured");
 					return true;
 				}
 				else {
-					AppLog.getLogger().error("Unable to set serviceDomainMBean");
+					AppLog.getLogger().error("Unable to set serviceDomainClient");
 					return false;
 				}
 			}
 			else {
-				AppLog.getLogger().error("Unable to set serviceDomainMBean - The execution of init() method failed");
+				AppLog.getLogger().error("Unable to set serviceDomainClient - No connection to the domain runtime");
 				return false;
 			}
 		} catch (Exception ex) {
-			AppLog.getLogger().error("Unable to set serviceDomainMBean - The error message is [" + ex.getMessage());
+			AppLog.getLogger().error("Unable to set serviceDomainClient - The error message is [" + ex.getMessage());
 			return false;
 		}
 		// -----------------------------------------------------------------------
@@ -266,6 +361,7 @@ public class WLOsbStats implements WLOsbStatsMXBean, MBeanRegistration {
 	 * @return name
 	 */
 	public ObjectName preRegister(MBeanServer server, ObjectName name) throws Exception {
+		objectName = name;
 		return name;
 	}
 
@@ -276,14 +372,66 @@ public class WLOsbStats implements WLOsbStatsMXBean, MBeanRegistration {
 	 */
 	public void postRegister(Boolean registrationDone) {
 		AppLog.getLogger().notice("WlOsbStats MBean initialised");
+		
+		if(registrationDone != null && registrationDone.booleanValue()) {
+			openMappedHistory();
+			loadAlertRules();
+			
+			try {
+				setSnapshotNotificationMode(AppProperties.getProperty(AppProperties.SNAPSHOT_NOTIFICATIONS_PROP, AppProperties.DEFAULT_SNAPSHOT_NOTIFICATIONS));
+			} catch (IllegalArgumentException ex) {
+				AppLog.getLogger().error(ex.getMessage());
+			}
+			startCollectionScheduler();
+		}
 	}
 
 	/**
-	 * Pre-deregister event handler - does nothing
+	 * Pre-deregister event handler - closes the connection to the domain runtime
+	 * (called when the application is stopped by AppStartStopListener)
 	 * 
 	 * @throws Exception Indicates problem is post registration
 	 */
 	public void preDeregister() throws Exception {
+		close();
+	}
+	
+	/**
+	 * Releases the resources (JMX connector) held by the MBean
+	 */
+	public void close() {
+		stopCollectionScheduler();
+		closeMappedHistory();
+		connectionManager.close();
+		serviceDomainClient.unbind();
+	}
+	
+	/**
+	 * @return Age of the connection to the domain runtime
+	 */
+	public long getConnectionAgeMillis() {
+		return connectionManager.getConnectionAgeMillis();
+	}
+	
+	/**
+	 * @return The number of reconnections to the domain runtime
+	 */
+	public long getConnectionReconnectCount() {
+		return connectionManager.getReconnectCount();
+	}
+	
+	/**
+	 * @return The number of failed connection attempts to the domain runtime
+	 */
+	public long getConnectionFailureCount() {
+		return connectionManager.getFailureCount();
+	}
+	
+	/**
+	 * @return The total time spent to connect to the domain runtime
+	 */
+	public long getConnectingTimeMillis() {
+		return connectionManager.getConnectingTimeMillis();
 	}
 
 	/**
@@ -311,7 +459,7 @@ public class WLOsbStats implements WLOsbStatsMXBean, MBeanRegistration {
 	 */
 	public void collectServiceStatistics(String serverName, String osbResourceType, String resourceType, String statisticType) {
 	//public void collectServiceStatistics(String osbResourceType, String resourceType, String statisticType) {
-		this.statistics = getServiceStatistics(serverName, osbResourceType, resourceType, statisticType);		
+		publishServiceStatistics(serverName, osbResourceType, resourceType, statisticType);
 		//this.statistics = getServiceStatistics(osbResourceType, resourceType, statisticType);
 	}
 	
@@ -324,268 +472,1268 @@ public class WLOsbStats implements WLOsbStatsMXBean, MBeanRegistration {
 	public void collectServiceStatistics(String serverName, String osbResourceType, String resourceType) {
 	//public void collectServiceStatistics(String osbResourceType, String resourceType) {
 				
-		this.statistics = getServiceStatistics(serverName, osbResourceType, resourceType);
+		publishServiceStatistics(serverName, osbResourceType, resourceType, null);
 		//this.statistics = getServiceStatistics(osbResourceType, resourceType);
 	}
 	
 	/**
+	 * Collects the statistics and publishes them as a new snapshot. A failed collection
+	 * publishes nothing (the last good snapshot of the query is kept and nothing is recorded)
 	 * 
 	 * @param serverName
 	 * @param osbResourceType
 	 * @param resourceType
-	 * @return
+	 * @param statisticType
+	 * @return The published snapshot (null if the collection failed)
 	 */
-	public Map<String, Map<String, Map<String, Double>>> getServiceStatistics(String serverName, String osbResourceType, String resourceType) {
-	//public Map<String, Map<String, Map<String, Double>>> getServiceStatistics(String osbResourceType, String resourceType) {
+	private StatisticsSnapshot publishServiceStatistics(String serverName, String osbResourceType, String resourceType, String statisticType) {
 		
-		return getServiceStatistics(serverName, osbResourceType, resourceType, null);
-		//return getServiceStatistics(osbResourceType, resourceType, null);	
+		long captureTime = System.currentTimeMillis();
+		ColumnarStatistics statistics = collectStatistics(serverName, osbResourceType, resourceType, statisticType);
+		if(statistics == null) {
+			AppLog.getLogger().warning("Collection of [" + StatisticsSnapshot.toScopeKey(serverName, osbResourceType, resourceType, statisticType) + "] failed - The last snapshot is kept");
+			return null;
+		}
+		
+		StatisticsSnapshot previous = snapshotStore.getLatest(StatisticsSnapshot.toScopeKey(serverName, osbResourceType, resourceType, statisticType));
+		StatisticsSnapshot snapshot = snapshotStore.publish(serverName, osbResourceType, resourceType, statisticType, statistics, captureTime);
+		historyStore.record(snapshot);
+		percentileStore.record(snapshot);
+		baselineStore.record(snapshot);
+		alertEngine.evaluate(snapshot);
+		
+		MappedHistoryStore mappedHistory = mappedHistoryStore;
+		if(mappedHistory != null) {
+			mappedHistory.record(snapshot);
+		}
+		
+		SnapshotNotifications.Mode notificationMode = snapshotNotificationMode;
+		if(notificationMode != SnapshotNotifications.Mode.NONE) {
+			sendNotification(SnapshotNotifications.SNAPSHOT_PUBLISHED_TYPE, "Snapshot [" + snapshot.getVersion() + "] of [" + snapshot.scopeKey() + "] published", 
+					SnapshotNotifications.toUserData(previous, snapshot, notificationMode), captureTime);
+		}
+		return snapshot;
 	}
 	
 	/**
-	 * 
-	 * @param serverName
-	 * @param osbResourceType
-	 * @param resourceTypeString
-	 * @param statisticTypeString
-	 * @return
+	 * Opens the memory-mapped history (if enabled by wlosbstats.mappedHistoryEnabled)
 	 */
-	public Map<String, Map<String, Map<String, Double>>> getServiceStatistics(String serverName, String osbResourceType, String resourceTypeString, String statisticTypeString) {
-	//public Map<String, Map<String, Map<String, Double>>> getServiceStatistics(String osbResourceType, String resourceTypeString, String statisticTypeString) {
+	private void openMappedHistory() {
 		
-		Map<String, Map<String, Map<String, Double>>> statistics = new LinkedHashMap<>();
-		StatisticType statisticType = null;
+		if(!AppProperties.getBooleanProperty(AppProperties.MAPPED_HISTORY_ENABLED_PROP, AppProperties.DEFAULT_MAPPED_HISTORY_ENABLED)) {
+			return;
+		}
 		
-		// -----------------------------------------------------
-		// Check if valid input parameter
-		if(!isValidOsbResourceType(osbResourceType)) {
-			return statistics;
+		try {
+			mappedHistoryStore = new MappedHistoryStore(
+					new File(AppProperties.getProperty(AppProperties.MAPPED_HISTORY_DIR_PROP, AppProperties.DEFAULT_MAPPED_HISTORY_DIR)), 
+					AppProperties.getIntProperty(AppProperties.MAPPED_HISTORY_SEGMENT_HOURS_PROP, AppProperties.DEFAULT_MAPPED_HISTORY_SEGMENT_HOURS) * ONE_HOUR_MILLIS, 
+					AppProperties.getIntProperty(AppProperties.MAPPED_HISTORY_RETENTION_DAYS_PROP, AppProperties.DEFAULT_MAPPED_HISTORY_RETENTION_DAYS) * ONE_DAY_MILLIS, 
+					AppProperties.getIntProperty(AppProperties.HISTORY_MAX_SERIES_PROP, AppProperties.DEFAULT_HISTORY_MAX_SERIES), 
+					AppProperties.getIntProperty(AppProperties.MAPPED_HISTORY_SEGMENT_RECORDS_PROP, AppProperties.DEFAULT_MAPPED_HISTORY_SEGMENT_RECORDS));
+		} catch (Exception ex) {
+			AppLog.getLogger().error("Unable to open the memory-mapped history - Only the in-memory history is kept - Message is [" + ex.getMessage() + "]");
 		}
-
-		ResourceType resourceType = getResourceType(resourceTypeString);
-		if(resourceType == null) {
-			return statistics;
+	}
+	
+	/**
+	 * Closes the memory-mapped history (if opened)
+	 */
+	private void closeMappedHistory() {
+		
+		MappedHistoryStore mappedHistory = mappedHistoryStore;
+		mappedHistoryStore = null;
+		if(mappedHistory != null) {
+			mappedHistory.close();
 		}
+	}
+	
+	/**
+	 * Long retention history of a statistic for a given query (read from the memory-mapped history)
+	 * 
+	 * @param serverName
+	 * @param osbResourceType
+	 * @param resourceType
+	 * @param statisticType
+	 * @param serviceName
+	 * @param resourceStatisticName
+	 * @param statisticName
+	 * @param fromMillis
+	 * @param toMillis
+	 * @return The samples, oldest first (empty if the memory-mapped history is not enabled)
+	 */
+	public StatisticHistory getLongTermHistory(String serverName, String osbResourceType, String resourceType, String statisticType, String serviceName, String resourceStatisticName, String statisticName, long fromMillis, long toMillis) {
 		
-		if(statisticTypeString != null) {
-			statisticType = getStatisticType(statisticTypeString);
-			if(statisticType == null) {
-				AppLog.getLogger().warning("Not possible to get StatisticType enum from string value [" + statisticTypeString + "]");
-				return statistics;
-			}
+		MappedHistoryStore mappedHistory = mappedHistoryStore;
+		if(mappedHistory == null) {
+			return toHistory(null, serviceName, resourceStatisticName, statisticName);
 		}
-		// -----------------------------------------------------
 		
-		// -----------------------------------------------------
-    	// It shouldn't happen but ...
-    	if(serviceDomainMBean == null) {
-    		
-    		AppLog.getLogger().warning("serviceDomainMBean is null - Trying to reset it");
-    		if(!initServiceDomainMBean()) {
-    			AppLog.getLogger().error("Unable to reset serviceDomainMBean ...");
-    			return statistics;
-    		}
-    	}
-    	// -----------------------------------------------------
-    		
-		// -----------------------------------------------------
-		// Get the statistics    		
-		HashMap<Ref, ServiceResourceStatistic> statsMap = getDetailsForResourceType(serverName, osbResourceType, resourceType);
-    	//HashMap<Ref, ServiceResourceStatistic> statsMap = getDetailsForResourceType(osbResourceType, resourceType);
-    	// -----------------------------------------------------
-    	
-    	// -----------------------------------------------------
-    	// Process the statistics
-    	if(statsMap != null && statsMap.size() > 0) {
-    		
-    		if(statisticType != null) statistics = processStatistics(statsMap, statisticType);
-    		else statistics = processStatistics(statsMap);
-    		
-    		return statistics;
-    	}
-    	// -----------------------------------------------------
-    	
-		return statistics;
+		String scopeKey = StatisticsSnapshot.toScopeKey(emptyToNull(serverName), osbResourceType, resourceType, emptyToNull(statisticType));
+		return mappedHistory.getHistory(scopeKey, serviceName, resourceStatisticName, statisticName, fromMillis, toMillis);
 	}
 	
 	/**
-	 * Gets an instance of ServiceDomainMBean from the weblogic server.
+	 * History of a statistic (from the most recently collected query containing it)
 	 * 
-	 * @param conn
-	 * @return
+	 * @param serviceName
+	 * @param resourceStatisticName
+	 * @param statisticName
+	 * @param fromMillis Only the samples captured at or after this time are returned
+	 * @return The samples, oldest first (empty if the statistic is not part of the history)
 	 */
-	private ServiceDomainMBean getServiceDomainMBean(MBeanServerConnection conn) {	
-    	InvocationHandler handler = new ServiceDomainMBeanInvocationHandler(conn);
-		Object proxy = Proxy.newProxyInstance(ServiceDomainMBean.class.getClassLoader(), new Class[] { ServiceDomainMBean.class }, handler);
-		return (ServiceDomainMBean) proxy;
+	public StatisticHistory getHistory(String serviceName, String resourceStatisticName, String statisticName, long fromMillis) {
+		return toHistory(historyStore.getHistory(serviceName, resourceStatisticName, statisticName, fromMillis), serviceName, resourceStatisticName, statisticName);
 	}
 	
 	/**
+	 * History of a statistic for a given query
 	 * 
 	 * @param serverName
 	 * @param osbResourceType
 	 * @param resourceType
-	 * @return
+	 * @param statisticType
+	 * @param serviceName
+	 * @param resourceStatisticName
+	 * @param statisticName
+	 * @param fromMillis Only the samples captured at or after this time are returned
+	 * @return The samples, oldest first (empty if the statistic is not part of the history)
 	 */
-	private HashMap<Ref, ServiceResourceStatistic> getDetailsForResourceType(String serverName, String osbResourceType, ResourceType resourceType) {
-	//private HashMap<Ref, ServiceResourceStatistic> getDetailsForResourceType(String osbResourceType, ResourceType resourceType) {
-
-		try {
-
-			Ref[] references = getRefForOsbType(osbResourceType);
-
-			if (references != null && references.length > 0) {
-				//AppLog.getLogger().debug("Found [" + references.length + "] elements of type [" + osbResourceType + "]");
-
-				// Bitwise map for desired resource types.
-				int typeFlag = 0;
-				typeFlag = typeFlag | resourceType.value();
-
-				// Get cluster-level statistics.
-				try {
-					// Get statistics.
-					HashMap<Ref, ServiceResourceStatistic> statsMap = getStatisticForOsbType(serverName, osbResourceType, references, typeFlag);					
-					//HashMap<Ref, ServiceResourceStatistic> statsMap = getStatisticForOsbType(osbResourceType, references, typeFlag);
+	public StatisticHistory getHistory(String serverName, String osbResourceType, String resourceType, String statisticType, String serviceName, String resourceStatisticName, String statisticName, long fromMillis) {
+		
+		String scopeKey = StatisticsSnapshot.toScopeKey(emptyToNull(serverName), osbResourceType, resourceType, emptyToNull(statisticType));
+		return toHistory(historyStore.getHistory(scopeKey, serviceName, resourceStatisticName, statisticName, fromMillis), serviceName, resourceStatisticName, statisticName);
+	}
+	
+	/**
+	 * Loads the alerting rules defined at startup (wlosbstats.alertRules)
+	 */
+	private void loadAlertRules() {
+		
+		String ruleDefinitions = AppProperties.getProperty(AppProperties.ALERT_RULES_PROP, AppProperties.DEFAULT_ALERT_RULES);
+		if(ruleDefinitions != null) {
+			for(String ruleDefinition : ruleDefinitions.split(AppProperties.ALERT_RULE_SEPARATOR)) {
 				
-					return statsMap;
-				} catch (IllegalArgumentException iae) {
-
-					AppLog.getLogger().error("------------------------------------------------");
-					AppLog.getLogger().error("Encountered IllegalArgumentException... Details:");
-					AppLog.getLogger().error(iae.getMessage());
-					AppLog.getLogger().error("Check if reference OR bitmap are valid... !!!");
-					AppLog.getLogger().error("------------------------------------------------");
-					throw iae;
-				} catch (DomainMonitoringDisabledException dmde) {
-
-					// Statistics not available as monitoring is turned off at domain level.
-					AppLog.getLogger().error("------------------------------------------------");
-					AppLog.getLogger().error("Statistics not available as monitoring is turned off at domain level.");
-					AppLog.getLogger().error("------------------------------------------------");
-					throw dmde;
-				} catch (MonitoringException me) {
-
-					// Internal problem... May be aggregation server is crashed...
-					AppLog.getLogger().error("------------------------------------------------");
-					AppLog.getLogger().error("Statistics is not available... Check if aggregation server is crashed...");
-					AppLog.getLogger().error("------------------------------------------------");
-					throw me;
+				if(ruleDefinition.trim().length() == 0) {
+					continue;
+				}
+				try {
+					alertEngine.addRule(AlertRule.parse(ruleDefinition));
+				} catch (Exception ex) {
+					AppLog.getLogger().error("Invalid alerting rule [" + ruleDefinition + "] - Message is [" + ex.getMessage() + "]");
 				}
-
-			} else {
-				AppLog.getLogger().error("Didn't find any element with monitoring enabled - Not possible to collect anything for elements of type [" + osbResourceType + "]");
 			}
-
-		} catch (Exception ex) {
-			AppLog.getLogger().error("Problem to get the details of OSB resource [" + osbResourceType + "] and ResourceType [" + resourceType + "]", ex);
 		}
-		return null; 
 	}
 	
 	/**
+	 * Adds (or replaces) an alerting rule evaluated after each collection
 	 * 
-	 * @param resourceType
-	 * @return
+	 * @param ruleName
+	 * @param metricName For example error-ratio, response-time_max or status_current
+	 * @param operator '>', '<' or 'changed'
+	 * @param threshold The alert is raised when the value crosses it
+	 * @param clearThreshold The alert is cleared when the value crosses it back (hysteresis)
+	 * @param servicePattern Wildcard pattern of the services ('*' and '?'), null or empty for all the services
 	 */
-	private ResourceType getResourceType(String resourceType) {
-
-		try {
-			// Try from the "string" enum value
-			return ResourceType.valueOf(resourceType.toUpperCase());
-		} catch (Exception ex) {
-
-			// Try from internal DH constants (probably coming from WS)
-			switch (resourceType) {
-
-				case MonitorProperties.OSB_RESOURCE_TYPE_FLOW_COMPONENT:
-					return ResourceType.FLOW_COMPONENT;
-	
-				case MonitorProperties.OSB_RESOURCE_TYPE_SERVICE:
-					return ResourceType.SERVICE;
-	
-				case MonitorProperties.OSB_RESOURCE_TYPE_WEBSERVICE_OPERATION:
-					return ResourceType.WEBSERVICE_OPERATION;
-	
-				case MonitorProperties.OSB_RESOURCE_TYPE_URI:
-					return ResourceType.URI;
-	
-				default:
-					AppLog.getLogger().error("Wrong resourceType [" + resourceType + "]");
-					return null;
-			}
-		}
+	public void addAlertRule(String ruleName, String metricName, String operator, double threshold, double clearThreshold, String servicePattern) {
+		alertEngine.addRule(new AlertRule(ruleName, metricName, AlertRule.Operator.fromSymbol(operator), threshold, clearThreshold, servicePattern));
 	}
-
+	
 	/**
 	 * 
-	 * @param osbResourceType
-	 * @return
-	 * @throws Exception
+	 * @param ruleName
+	 * @return true if the rule existed
 	 */
-	private Ref[] getRefForOsbType(String osbResourceType) {
-
-		try {
-			switch (osbResourceType) {
+	public boolean removeAlertRule(String ruleName) {
+		return alertEngine.removeRule(ruleName);
+	}
 	
-				case MonitorProperties.OSB_PS_TYPE:
-					return serviceDomainMBean.getMonitoredProxyServiceRefs();
-					
-				case MonitorProperties.OSB_BS_TYPE:
-					return serviceDomainMBean.getMonitoredBusinessServiceRefs();
-							
-				default:
-					AppLog.getLogger().error("Wrong osbResourceType [" + osbResourceType + "] - Must be [" + MonitorProperties.OSB_PS_TYPE + "] or [" + MonitorProperties.OSB_BS_TYPE + "]");
-					return null;
-			}
-		} catch(Exception ex) {
-			AppLog.getLogger().error("Unable to get the reference for [" + osbResourceType + "] - Message is [" + ex.getMessage() + "]");
-			return null;
+	/**
+	 * @return The definition of the alerting rules ("name,metric,operator,threshold,clearThreshold,servicePattern")
+	 */
+	public List<String> getAlertRules() {
+		
+		List<String> definitions = new ArrayList<>();
+		for(AlertRule rule : alertEngine.getRules()) {
+			definitions.add(rule.toString());
 		}
+		return definitions;
 	}
-
+	
+	/**
+	 * @return The content of the notification published after each snapshot (NONE, SUMMARY or DELTA)
+	 */
+	public String getSnapshotNotificationMode() {
+		return snapshotNotificationMode.name();
+	}
+	
 	/**
 	 * 
-	 * @param serverName
-	 * @param osbResourceType
-	 * @param serviceRefs
-	 * @param typeFlag
-	 * @return
-	 * @throws Exception
+	 * @param mode NONE (no notification), SUMMARY (version and changed services) or DELTA (also the changed values)
 	 */
-	private HashMap<Ref, ServiceResourceStatistic> getStatisticForOsbType(String serverName, String osbResourceType, Ref[] serviceRefs, int typeFlag) throws Exception {
-	//private HashMap<Ref, ServiceResourceStatistic> getStatisticForOsbType(String osbResourceType, Ref[] serviceRefs, int typeFlag) throws Exception {
-
-		// If the serverName is set, the statistic will be retrieve for it.
-		// If the serverName is null, then the statistic will be retrieved for the cluster
+	public void setSnapshotNotificationMode(String mode) {
 		
-		if (serviceRefs != null && serviceRefs.length > 0) {
-					
-			switch (osbResourceType) {
-
-				case MonitorProperties.OSB_PS_TYPE:
-					
-					return serviceDomainMBean.getProxyServiceStatistics(serviceRefs, typeFlag, serverName);
-					//return serviceDomainMBean.getProxyServiceStatistics(serviceRefs, typeFlag, null);
-					
-				case MonitorProperties.OSB_BS_TYPE:
-					return serviceDomainMBean.getBusinessServiceStatistics(serviceRefs, typeFlag, serverName);
-					//return serviceDomainMBean.getBusinessServiceStatistics(serviceRefs, typeFlag, null);
-
-				default:
-					return null;
-			}
+		try {
+			snapshotNotificationMode = SnapshotNotifications.Mode.valueOf(mode.trim().toUpperCase());
+		} catch (Exception ex) {
+			throw new IllegalArgumentException("Snapshot notification mode [" + mode + "] not supported - Use [NONE], [SUMMARY] or [DELTA]");
 		}
-		return null;
 	}
-
+	
 	/**
 	 * 
-	 * @param osbResourceType
-	 * @return
+	 * @param type
+	 * @param message
+	 * @param userData
+	 * @param timeStamp
 	 */
-	private boolean isValidOsbResourceType(String osbResourceType) {
-
-		switch (osbResourceType) {
+	private void sendNotification(String type, String message, Object userData, long timeStamp) {
+		
+		Notification notification = new Notification(type, (objectName != null) ? objectName : this, notificationSequence.incrementAndGet(), timeStamp, message);
+		notification.setUserData(userData);
+		notificationBroadcaster.sendNotification(notification);
+	}
+	
+	public void addNotificationListener(NotificationListener listener, NotificationFilter filter, Object handback) {
+		notificationBroadcaster.addNotificationListener(listener, filter, handback);
+	}
+	
+	public void removeNotificationListener(NotificationListener listener) throws ListenerNotFoundException {
+		notificationBroadcaster.removeNotificationListener(listener);
+	}
+	
+	public void removeNotificationListener(NotificationListener listener, NotificationFilter filter, Object handback) throws ListenerNotFoundException {
+		notificationBroadcaster.removeNotificationListener(listener, filter, handback);
+	}
+	
+	/**
+	 * @return The notifications published by the MBean
+	 */
+	public MBeanNotificationInfo[] getNotificationInfo() {
+		return new MBeanNotificationInfo[] {
+			new MBeanNotificationInfo(new String[] {AlertEngine.ALERT_RAISED_TYPE, AlertEngine.ALERT_CLEARED_TYPE, AlertEngine.ALERT_CHANGED_TYPE}, Notification.class.getName(), "Alerting rule raised, cleared or value changed"),
+			new MBeanNotificationInfo(new String[] {SnapshotNotifications.SNAPSHOT_PUBLISHED_TYPE}, Notification.class.getName(), "Snapshot published (see wlosbstats.notification.SnapshotNotificationFilter to filter them)")
+		};
+	}
+	
+	/**
+	 * @return The throughput (message-count_rate), error ratio and latency (response-time_interval-average) of the services deviating from their baseline
+	 */
+	public List<Anomaly> getAnomalies() {
+		return baselineStore.getAnomalies();
+	}
+	
+	/**
+	 * Latency percentiles of a statistic (from the most recently collected query containing it)
+	 * 
+	 * @param serviceName
+	 * @param resourceStatisticName
+	 * @param statisticName The interval statistic (response-time, elapsed-time or throttling-time)
+	 * @param percentiles For example {95, 99}
+	 * @param fromMillis
+	 * @param toMillis (0 for now)
+	 * @return The percentiles (NaN if no message has been measured during the period)
+	 */
+	public LatencyPercentiles getLatencyPercentiles(String serviceName, String resourceStatisticName, String statisticName, double[] percentiles, long fromMillis, long toMillis) {
+		return percentileStore.getPercentiles(serviceName, resourceStatisticName, statisticName, percentiles, fromMillis, toMillis);
+	}
+	
+	/**
+	 * Latency percentiles of a statistic for a given query
+	 * 
+	 * @param serverName
+	 * @param osbResourceType
+	 * @param resourceType
+	 * @param statisticType
+	 * @param serviceName
+	 * @param resourceStatisticName
+	 * @param statisticName The interval statistic (response-time, elapsed-time or throttling-time)
+	 * @param percentiles For example {95, 99}
+	 * @param fromMillis
+	 * @param toMillis (0 for now)
+	 * @return The percentiles (NaN if no message has been measured during the period)
+	 */
+	public LatencyPercentiles getLatencyPercentiles(String serverName, String osbResourceType, String resourceType, String statisticType, String serviceName, String resourceStatisticName, String statisticName, double[] percentiles, long fromMillis, long toMillis) {
+		
+		String scopeKey = StatisticsSnapshot.toScopeKey(emptyToNull(serverName), osbResourceType, resourceType, emptyToNull(statisticType));
+		return percentileStore.getPercentiles(scopeKey, serviceName, resourceStatisticName, statisticName, percentiles, fromMillis, toMillis);
+	}
+	
+	/**
+	 * 
+	 * @param history
+	 * @param serviceName
+	 * @param resourceStatisticName
+	 * @param statisticName
+	 * @return The history or an empty history if null
+	 */
+	private static StatisticHistory toHistory(StatisticHistory history, String serviceName, String resourceStatisticName, String statisticName) {
+		return (history != null) ? history : new StatisticHistory(serviceName, resourceStatisticName, statisticName, new long[0], new double[0]);
+	}
+	
+	/**
+	 * @return The version of the last published snapshot (0 if nothing has been collected yet)
+	 */
+	public long getSnapshotVersion() {
+		return snapshotStore.getLatest().getVersion();
+	}
+	
+	/**
+	 * @return The last published snapshot (whatever the query which produced it)
+	 */
+	public StatisticsSnapshot getLatestSnapshot() {
+		return snapshotStore.getLatest();
+	}
+	
+	/**
+	 * @return The epoch of the snapshot versions (they restart at 1 after a restart or a redeployment)
+	 */
+	public long getSnapshotEpoch() {
+		return snapshotStore.getEpoch();
+	}
+	
+	/**
+	 * @return The last published snapshot of each query (not part of the MBean interface : used by the REST resources)
+	 */
+	public List<StatisticsSnapshot> getAllLatestSnapshots() {
+		return snapshotStore.getAllLatest();
+	}
+	
+	/**
+	 * 
+	 * @param serverName The server (if null or empty, the cluster)
+	 * @param osbResourceType
+	 * @param resourceType
+	 * @param statisticType The statistic type (if null or empty, all the types)
+	 * @return The last published snapshot of the query (version 0 if the query has never been collected)
+	 */
+	public StatisticsSnapshot getSnapshot(String serverName, String osbResourceType, String resourceType, String statisticType) {
+		return snapshotStore.getLatest(StatisticsSnapshot.toScopeKey(emptyToNull(serverName), osbResourceType, resourceType, emptyToNull(statisticType)));
+	}
+	
+	/**
+	 * @return The last published snapshot in the compact binary form (see SnapshotCodec to decode it)
+	 */
+	public byte[] getSnapshotBytes() {
+		return getSnapshotBytes(snapshotStore.getLatest());
+	}
+	
+	/**
+	 * 
+	 * @param serverName The server (if null or empty, the cluster)
+	 * @param osbResourceType
+	 * @param resourceType
+	 * @param statisticType The statistic type (if null or empty, all the types)
+	 * @return The last published snapshot of the query in the compact binary form (see SnapshotCodec to decode it)
+	 */
+	public byte[] getSnapshotBytes(String serverName, String osbResourceType, String resourceType, String statisticType) {
+		return getSnapshotBytes(getSnapshot(serverName, osbResourceType, resourceType, statisticType));
+	}
+	
+	/**
+	 * The snapshot is encoded once per version - Each call only copies the cached bytes
+	 * (a copy, so a caller in the same JVM can't modify them)
+	 * 
+	 * @param snapshot
+	 * @return
+	 */
+	private byte[] getSnapshotBytes(final StatisticsSnapshot snapshot) {
+		
+		try {
+			byte[] bytes = serializedSnapshots.get(SerializedSnapshotCache.FORMAT_BINARY, snapshot.scopeKey(), snapshot.getVersion(), new SerializedSnapshotCache.Serializer() {
+				public byte[] serialize() {
+					return SnapshotCodec.encode(snapshot);
+				}
+			});
+			return bytes.clone();
+		} catch (IOException ex) {
+			// Not thrown by the codec
+			throw new IllegalStateException("Unable to encode the snapshot version [" + snapshot.getVersion() + "]", ex);
+		}
+	}
+	
+	/**
+	 * @return The serialized forms of the snapshots (not part of the MBean interface : shared with the REST resources)
+	 */
+	public SerializedSnapshotCache getSerializedSnapshots() {
+		return serializedSnapshots;
+	}
+	
+	/**
+	 * 
+	 * @param version The version of the snapshot known by the client (0 if none)
+	 * @return The changes of the last published snapshot of the same query as this version (version 0 : all the 
+	 * statistics of the last published snapshot, whatever its query)
+	 * @throws IllegalArgumentException If the version is no more retained and several queries are collected (its 
+	 * query is unknown : use the overload taking the query)
+	 */
+	public StatisticsDelta getChangesSince(long version) {
+		
+		if (version <= 0) {
+			return SnapshotDiff.full(snapshotStore.getLatest());
+		}
+		
+		StatisticsSnapshot base = snapshotStore.getVersion(version);
+		if (base != null) {
+			return getChangesSince(snapshotStore.getLatest(base.scopeKey()), version);
+		}
+		
+		// The query of a version no more retained is only known if a single query is collected
+		List<StatisticsSnapshot> snapshots = snapshotStore.getAllLatest();
+		if (snapshots.size() == 1) {
+			return SnapshotDiff.full(snapshots.get(0));
+		}
+		throw new IllegalArgumentException("The version [" + version + "] is not retained anymore and its query is unknown - Use getChangesSince(serverName, osbResourceType, resourceType, statisticType, version)");
+	}
+	
+	/**
+	 * 
+	 * @param serverName The server (if null or empty, the cluster)
+	 * @param osbResourceType
+	 * @param resourceType
+	 * @param statisticType The statistic type (if null or empty, all the types)
+	 * @param version The version of the snapshot of the query known by the client (0 if none)
+	 * @return The changes of the last published snapshot of the query since this version (all the statistics if it can't be computed)
+	 */
+	public StatisticsDelta getChangesSince(String serverName, String osbResourceType, String resourceType, String statisticType, long version) {
+		return getChangesSince(getSnapshot(serverName, osbResourceType, resourceType, statisticType), version);
+	}
+	
+	/**
+	 * 
+	 * @param current
+	 * @param version
+	 * @return
+	 */
+	private StatisticsDelta getChangesSince(StatisticsSnapshot current, long version) {
+		
+		// The base must be a retained snapshot of the same query (the versions are shared by all the queries)
+		StatisticsSnapshot base = (version == current.getVersion()) ? current : snapshotStore.getVersion(current.scopeKey(), version);
+		if (base == null || version > current.getVersion()) {
+			return SnapshotDiff.full(current);
+		}
+		return SnapshotDiff.diff(base, current);
+	}
+	
+	/**
+	 * Ranks the services of the last published snapshot of an OSB type (for example the 20 slowest proxy services).
+	 * The ranking is computed once per version of the snapshot.
+	 * 
+	 * @param osbResourceType
+	 * @param metricName For example response-time_average, error-count_count or message-count_count
+	 * @param n The number of services to return
+	 * @param order DESC (highest values first) or ASC
+	 * @return
+	 */
+	public ServiceRanking getTopN(String osbResourceType, String metricName, int n, String order) {
+		
+		boolean descending;
+		if (order == null || order.length() == 0 || order.equalsIgnoreCase(MonitorProperties.RANKING_ORDER_DESC)) {
+			descending = true;
+		} else if (order.equalsIgnoreCase(MonitorProperties.RANKING_ORDER_ASC)) {
+			descending = false;
+		} else {
+			throw new IllegalArgumentException("Order [" + order + "] not supported - Use [" + MonitorProperties.RANKING_ORDER_DESC + "] or [" + MonitorProperties.RANKING_ORDER_ASC + "]");
+		}
+		
+		// Most recent snapshot of the OSB type having the metric (whatever the server or the statistic type)
+		int metricId = StatisticsDictionary.METRICS.findId(metricName);
+		StatisticsSnapshot snapshot = SnapshotStore.EMPTY_SNAPSHOT;
+		for (StatisticsSnapshot current : snapshotStore.getAllLatest()) {
+			if (current.getOsbResourceType().equals(osbResourceType) && current.getVersion() > snapshot.getVersion() && current.columns().hasMetric(metricId)) {
+				snapshot = current;
+			}
+		}
+		return topNRanking.getTopN(snapshot, metricName, n, descending);
+	}
+	
+	/**
+	 * 
+	 * @param value
+	 * @return
+	 */
+	private static String emptyToNull(String value) {
+		return (value == null || value.length() == 0) ? null : value;
+	}
+	
+	/**
+	 * 
+	 * @param serverName
+	 * @param osbResourceType
+	 * @param resourceType
+	 * @return
+	 */
+	public Map<String, Map<String, Map<String, Double>>> getServiceStatistics(String serverName, String osbResourceType, String resourceType) {
+	//public Map<String, Map<String, Map<String, Double>>> getServiceStatistics(String osbResourceType, String resourceType) {
+		
+		return getServiceStatistics(serverName, osbResourceType, resourceType, null);
+		//return getServiceStatistics(osbResourceType, resourceType, null);	
+	}
+	
+	/**
+	 * 
+	 * @param serverName
+	 * @param osbResourceType
+	 * @param resourceTypeString
+	 * @param statisticTypeString
+	 * @return
+	 */
+	public Map<String, Map<String, Map<String, Double>>> getServiceStatistics(String serverName, String osbResourceType, String resourceTypeString, String statisticTypeString) {
+	//public Map<String, Map<String, Map<String, Double>>> getServiceStatistics(String osbResourceType, String resourceTypeString, String statisticTypeString) {
+		
+		ColumnarStatistics statistics = collectStatistics(serverName, osbResourceType, resourceTypeString, statisticTypeString);
+		return (statistics != null) ? statistics.toMap() : new LinkedHashMap<String, Map<String, Map<String, Double>>>();
+	}
+	
+	/**
+	 * Same as getServiceStatistics but the statistics are returned as columns (no map per service/resource statistic)
+	 * 
+	 * @param serverName
+	 * @param osbResourceType
+	 * @param resourceTypeString
+	 * @param statisticTypeString
+	 * @return The statistics or null if they can't be collected (wrong parameters, no connection or failed retrieval)
+	 */
+	private ColumnarStatistics collectStatistics(String serverName, String osbResourceType, String resourceTypeString, String statisticTypeString) {
+		
+		StatisticType statisticType = null;
+		
+		// -----------------------------------------------------
+		// Check if valid input parameter
+		if(!isValidOsbResourceType(osbResourceType)) {
+			return null;
+		}
+
+		ResourceType resourceType = getResourceType(resourceTypeString);
+		if(resourceType == null) {
+			return null;
+		}
+		
+		if(statisticTypeString != null) {
+			statisticType = getStatisticType(statisticTypeString);
+			if(statisticType == null) {
+				AppLog.getLogger().warning("Not possible to get StatisticType enum from string value [" + statisticTypeString + "]");
+				return null;
+			}
+		}
+		// -----------------------------------------------------
+		
+		// -----------------------------------------------------
+    	// Check the connection (re-created if broken)
+    	if(!initServiceDomainMBean()) {
+    		AppLog.getLogger().error("Unable to reset serviceDomainClient ...");
+    		return null;
+    	}
+    	// -----------------------------------------------------
+    		
+		// -----------------------------------------------------
+		// Get and process the statistics (batch after batch)
+		final StatisticType filteredStatisticType = statisticType;
+		final ColumnarStatisticsBuilder builder = new ColumnarStatisticsBuilder();
+		boolean retrieved = getDetailsForResourceType(serverName, osbResourceType, new RefBatchFetcher.BatchHandler() {
+			public void processBatch(HashMap<Ref, ServiceResourceStatistic> statsMap) {
+				processStatistics(statsMap, filteredStatisticType, builder);
+			}
+		}, resourceType);
+		if(!retrieved) {
+			return null;
+		}
+    	//HashMap<Ref, ServiceResourceStatistic> statsMap = getDetailsForResourceType(osbResourceType, resourceType);
+    	// -----------------------------------------------------
+    	
+		return builder.build();
+	}
+	
+	/**
+	 * Starts the background collections (the jobs defined by the wlosbstats.collectionJobs property)
+	 */
+	private synchronized void startCollectionScheduler() {
+		
+		if(collectionScheduler != null) {
+			return;
+		}
+		
+		collectionScheduler = new CollectionScheduler(new CollectionScheduler.Collector() {
+			public void collect(CollectionJob job) throws Exception {
+				collectJob(job);
+			}
+		}, getWorkManager(COLLECTION_SCHEDULER_WORK_MGR_JNDI));
+		
+		// -----------------------------------------------------
+		// Jobs defined at startup
+		String jobDefinitions = AppProperties.getProperty(AppProperties.COLLECTION_JOBS_PROP, AppProperties.DEFAULT_COLLECTION_JOBS);
+		if(jobDefinitions != null) {
+			for(String jobDefinition : jobDefinitions.split(AppProperties.COLLECTION_JOB_SEPARATOR)) {
+				
+				if(jobDefinition.trim().length() == 0) {
+					continue;
+				}
+				try {
+					collectionScheduler.addJob(parseCollectionJob(jobDefinition));
+				} catch (Exception ex) {
+					AppLog.getLogger().error("Invalid collection job [" + jobDefinition + "] - Message is [" + ex.getMessage() + "]");
+				}
+			}
+		}
+		// -----------------------------------------------------
+		
+		collectionScheduler.start();
+	}
+	
+	/**
+	 * Stops the background collections
+	 */
+	private synchronized void stopCollectionScheduler() {
+		
+		if(collectionScheduler != null) {
+			collectionScheduler.stop();
+			collectionScheduler = null;
+		}
+	}
+	
+	/**
+	 * 
+	 * @param jobDefinition "name,serverName,osbType,resourceType,statisticType,periodSecs[,jitterSecs]"
+	 * @return
+	 */
+	private CollectionJob parseCollectionJob(String jobDefinition) {
+		
+		String[] fields = jobDefinition.split(AppProperties.COLLECTION_JOB_FIELD_SEPARATOR, -1);
+		if(fields.length < 6 || fields.length > 7) {
+			throw new IllegalArgumentException("Expected name,serverName,osbType,resourceType,statisticType,periodSecs[,jitterSecs]");
+		}
+		
+		int jitterSecs = (fields.length == 7) ? Integer.parseInt(fields[6].trim()) : 0;
+		return newCollectionJob(fields[0].trim(), fields[1].trim(), fields[2].trim(), fields[3].trim(), fields[4].trim(), Integer.parseInt(fields[5].trim()), jitterSecs);
+	}
+	
+	/**
+	 * 
+	 * @param jobName
+	 * @param serverName (null or empty for the cluster)
+	 * @param osbResourceType
+	 * @param resourceType
+	 * @param statisticType (null or empty for all the types)
+	 * @param periodSecs
+	 * @param jitterSecs
+	 * @return
+	 */
+	private CollectionJob newCollectionJob(String jobName, String serverName, String osbResourceType, String resourceType, String statisticType, int periodSecs, int jitterSecs) {
+		
+		if(osbResourceType == null || !isValidOsbResourceType(osbResourceType)) {
+			throw new IllegalArgumentException("Wrong osbResourceType [" + osbResourceType + "]");
+		}
+		if(resourceType == null || getResourceType(resourceType) == null) {
+			throw new IllegalArgumentException("Wrong resourceType [" + resourceType + "]");
+		}
+		if(statisticType != null && statisticType.length() > 0 && getStatisticType(statisticType) == null) {
+			throw new IllegalArgumentException("Wrong statisticType [" + statisticType + "]");
+		}
+		
+		return new CollectionJob(jobName, 
+				emptyToNull(serverName), 
+				osbResourceType, 
+				resourceType, 
+				emptyToNull(statisticType), 
+				periodSecs * (long) ONE_SECOND_MILLIS, 
+				jitterSecs * (long) ONE_SECOND_MILLIS);
+	}
+	
+	/**
+	 * Runs a collection job (called by the scheduler)
+	 * 
+	 * @param job
+	 * @throws Exception
+	 */
+	private void collectJob(CollectionJob job) throws Exception {
+		
+		if(!initServiceDomainMBean()) {
+			throw new IllegalStateException("No connection to the domain runtime");
+		}
+		if(publishServiceStatistics(job.getServerName(), job.getOsbResourceType(), job.getResourceType(), job.getStatisticType()) == null) {
+			throw new IllegalStateException("The statistics have not been collected");
+		}
+	}
+	
+	/**
+	 * Adds (or replaces) a collection run in the background by the agent at a fixed rate.
+	 * 
+	 * @param jobName
+	 * @param serverName The server (if null or empty, the statistics are collected for the cluster)
+	 * @param osbResourceType
+	 * @param resourceType
+	 * @param statisticType The statistic type (if null or empty, all the types are collected)
+	 * @param periodSecs
+	 * @param jitterSecs The maximum random delay added to each run
+	 */
+	public void scheduleCollection(String jobName, String serverName, String osbResourceType, String resourceType, String statisticType, int periodSecs, int jitterSecs) {
+		
+		CollectionJob job = newCollectionJob(jobName, serverName, osbResourceType, resourceType, statisticType, periodSecs, jitterSecs);
+		
+		synchronized (this) {
+			if(collectionScheduler == null) {
+				throw new IllegalStateException("The collection scheduler is not started");
+			}
+			collectionScheduler.addJob(job);
+		}
+	}
+	
+	/**
+	 * 
+	 * @param jobName
+	 * @return true if the job was found
+	 */
+	public boolean cancelCollection(String jobName) {
+		
+		synchronized (this) {
+			return (collectionScheduler != null) && collectionScheduler.removeJob(jobName);
+		}
+	}
+	
+	/**
+	 * Timing statistics of the collection jobs (last duration, lag, missed ticks ...)
+	 * 
+	 * @return The KEY is the NAME of the job
+	 */
+	public Map<String, Map<String, Long>> getCollectionJobStatistics() {
+		
+		Map<String, Map<String, Long>> jobStatistics = new LinkedHashMap<>();
+		
+		CollectionScheduler scheduler = collectionScheduler;
+		if(scheduler != null) {
+			for(CollectionJob job : scheduler.getJobs()) {
+				jobStatistics.put(job.getName(), job.getStatistics());
+			}
+		}
+		return jobStatistics;
+	}
+	
+	/**
+	 * 
+	 * @param jobName
+	 * @return The snapshot published by the last run of the job (version 0 if the job didn't run yet)
+	 */
+	public StatisticsSnapshot getCollectedStatistics(String jobName) {
+		
+		CollectionScheduler scheduler = collectionScheduler;
+		CollectionJob job = (scheduler != null) ? scheduler.getJob(jobName) : null;
+		if(job == null) {
+			return SnapshotStore.EMPTY_SNAPSHOT;
+		}
+		return snapshotStore.getLatest(StatisticsSnapshot.toScopeKey(job.getServerName(), job.getOsbResourceType(), job.getResourceType(), job.getStatisticType()));
+	}
+	
+	/**
+	 * Forces the monitored Refs (cached for wlosbstats.refCacheTtlSecs) to be 
+	 * retrieved again from the aggregator at the next collection, for example 
+	 * just after the activation of an OSB session.
+	 */
+	public void refreshMonitoredRefs() {
+		refRegistry.invalidate();
+		AppLog.getLogger().notice("Monitored Refs will be refreshed at the next collection");
+	}
+	
+	/**
+	 * Retrieves the statistics of several ResourceType in a single round trip : all
+	 * the requested types are OR-ed in one bitmask so only one aggregator call is done
+	 * for the OSB type, the result being split afterwards per ResourceType.
+	 * 
+	 * @param serverName
+	 * @param osbResourceType
+	 * @param resourceTypeStrings
+	 * @param statisticTypeString
+	 * @return Statistics per requested resource type (the KEY is the resource type as provided by the caller)
+	 */
+	public Map<String, Map<String, Map<String, Map<String, Double>>>> getServiceStatisticsForResourceTypes(String serverName, String osbResourceType, String[] resourceTypeStrings, String statisticTypeString) {
+		
+		Map<String, Map<String, Map<String, Map<String, Double>>>> statisticsPerResourceType = new LinkedHashMap<>();
+		StatisticType statisticType = null;
+		
+		// -----------------------------------------------------
+		// Check if valid input parameter
+		if(!isValidOsbResourceType(osbResourceType)) {
+			return statisticsPerResourceType;
+		}
+		
+		if(resourceTypeStrings == null || resourceTypeStrings.length == 0) {
+			return statisticsPerResourceType;
+		}
+		
+		Map<ResourceType, String> resourceTypes = new EnumMap<>(ResourceType.class);
+		for(String resourceTypeString : resourceTypeStrings) {
+			ResourceType resourceType = getResourceType(resourceTypeString);
+			if(resourceType != null && !resourceTypes.containsKey(resourceType)) {
+				resourceTypes.put(resourceType, resourceTypeString);
+			}
+		}
+		if(resourceTypes.size() == 0) {
+			return statisticsPerResourceType;
+		}
+		
+		if(statisticTypeString != null) {
+			statisticType = getStatisticType(statisticTypeString);
+			if(statisticType == null) {
+				AppLog.getLogger().warning("Not possible to get StatisticType enum from string value [" + statisticTypeString + "]");
+				return statisticsPerResourceType;
+			}
+		}
+		// -----------------------------------------------------
+		
+		// -----------------------------------------------------
+		// Check the connection (re-created if broken)
+		if(!initServiceDomainMBean()) {
+			AppLog.getLogger().error("Unable to reset serviceDomainClient ...");
+			return statisticsPerResourceType;
+		}
+		// -----------------------------------------------------
+		
+		// -----------------------------------------------------
+		// Get the statistics (only one call to the aggregator for all the resource types)
+		// and split them per ResourceType
+		final StatisticType filteredStatisticType = statisticType;
+		final Map<ResourceType, ColumnarStatisticsBuilder> splitStatistics = new EnumMap<>(ResourceType.class);
+		for(ResourceType resourceType : resourceTypes.keySet()) {
+			splitStatistics.put(resourceType, new ColumnarStatisticsBuilder());
+		}
+		boolean retrieved = getDetailsForResourceType(serverName, osbResourceType, new RefBatchFetcher.BatchHandler() {
+			public void processBatch(HashMap<Ref, ServiceResourceStatistic> statsMap) {
+				processStatisticsPerResourceType(statsMap, filteredStatisticType, splitStatistics);
+			}
+		}, resourceTypes.keySet().toArray(new ResourceType[resourceTypes.size()]));
+		if(!retrieved) {
+			// The batches processed before the failure are discarded (no partial statistics)
+			return statisticsPerResourceType;
+		}
+		// -----------------------------------------------------
+		
+		// -----------------------------------------------------
+		// Statistics per requested ResourceType
+		for(Map.Entry<ResourceType, String> resourceType : resourceTypes.entrySet()) {
+			statisticsPerResourceType.put(resourceType.getValue(), splitStatistics.get(resourceType.getKey()).build().toMap());
+		}
+		// -----------------------------------------------------
+		
+		return statisticsPerResourceType;
+	}
+	
+	/**
+	 * Retrieves the statistics of all the RUNNING servers of the domain. Each server
+	 * is queried in its own work item, scheduled on the (bounded) capture work manager,
+	 * so the servers are processed at the same time. A server which doesn't answer
+	 * within the timeout is skipped (and so is not part of the returned map).
+	 * 
+	 * @param osbResourceType
+	 * @param resourceType
+	 * @param statisticType
+	 * @return Statistics per server (the KEY is the NAME of the server)
+	 */
+	public Map<String, Map<String, Map<String, Map<String, Double>>>> collectAllServers(String osbResourceType, String resourceType, String statisticType) {
+		
+		Map<String, Map<String, Map<String, Map<String, Double>>>> statisticsPerServer = new LinkedHashMap<>();
+		
+		List<String> serverNames = getRunningServerNames();
+		if(serverNames.size() == 0) {
+			AppLog.getLogger().warning("Didn't find any RUNNING server - Not possible to collect the statistics of [" + osbResourceType + "]");
+			return statisticsPerServer;
+		}
+		
+		long timeoutMillis = AppProperties.getIntProperty(AppProperties.SERVER_COLLECT_TIMEOUT_SECS_PROP, AppProperties.DEFAULT_SERVER_COLLECT_TIMEOUT_SECS) * (long) ONE_SECOND_MILLIS;
+		WorkManager workManager = getWorkManager(CAPTURE_THREADS_WORK_MGR_JNDI);
+		
+		// -----------------------------------------------------
+		// Schedule one work per server
+		List<ServerStatisticsWork> works = new ArrayList<>();
+		for(String serverName : serverNames) {
+			
+			ServerStatisticsWork work = new ServerStatisticsWork(serverName, osbResourceType, resourceType, statisticType);
+			if(workManager != null) {
+				try {
+					work.workItem = workManager.schedule(work);
+				} catch (Exception ex) {
+					AppLog.getLogger().error("Unable to schedule the collection of the statistics for server [" + serverName + "] - Message is [" + ex.getMessage() + "]");
+					continue;
+				}
+			} else {
+				// No work manager available so the servers are processed one after the other
+				work.run();
+			}
+			works.add(work);
+		}
+		// -----------------------------------------------------
+		
+		// -----------------------------------------------------
+		// Wait for the works (each server having its own timeout)
+		List<ServerStatisticsWork> pendingWorks = new ArrayList<>(works);
+		while(pendingWorks.size() > 0) {
+			
+			List<WorkItem> pendingWorkItems = new ArrayList<>();
+			Iterator<ServerStatisticsWork> iterator = pendingWorks.iterator();
+			while(iterator.hasNext()) {
+				
+				ServerStatisticsWork work = iterator.next();
+				if(work.isCompleted()) {
+					iterator.remove();
+				} else if(work.getElapsedMillis() > timeoutMillis && work.timeOut()) {
+					AppLog.getLogger().warning("Timeout of [" + timeoutMillis + "] ms reached for server [" + work.serverName + "] - Its statistics are skipped for this collection");
+					iterator.remove();
+				} else if(!work.isCompleted()) {
+					pendingWorkItems.add(work.workItem);
+				}
+			}
+			
+			if(pendingWorkItems.size() > 0) {
+				try {
+					workManager.waitForAny(pendingWorkItems, WORK_COMPLETION_POLL_MILLIS);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					AppLog.getLogger().warning("Interrupted while waiting for the statistics of the servers");
+					break;
+				}
+			}
+		}
+		// -----------------------------------------------------
+		
+		for(ServerStatisticsWork work : works) {
+			if(work.isCollected()) {
+				statisticsPerServer.put(work.serverName, work.statistics);
+			}
+		}
+		return statisticsPerServer;
+	}
+	
+	/**
+	 * Work retrieving the statistics of one server
+	 */
+	private class ServerStatisticsWork extends ContextAwareWork {
+		
+		private final String serverName;
+		private final String osbResourceType;
+		private final String resourceType;
+		private final String statisticType;
+		private final long scheduledTime = System.currentTimeMillis();
+		// The outcome is decided once : PENDING -> DONE / FAILED (by the work) or PENDING -> RELEASED (by the timeout)
+		private final AtomicInteger state = new AtomicInteger(PENDING);
+		private Map<String, Map<String, Map<String, Double>>> statistics = null;
+		private WorkItem workItem;
+		
+		// States
+		private final static int PENDING = 0;
+		private final static int DONE = 1;
+		private final static int FAILED = 2;
+		private final static int RELEASED = 3;
+		
+		/**
+		 * 
+		 * @param serverName
+		 * @param osbResourceType
+		 * @param resourceType
+		 * @param statisticType
+		 */
+		public ServerStatisticsWork(String serverName, String osbResourceType, String resourceType, String statisticType) {
+			this.serverName = serverName;
+			this.osbResourceType = osbResourceType;
+			this.resourceType = resourceType;
+			this.statisticType = statisticType;
+		}
+		
+		/**
+		 * Collects the statistics of the server
+		 */
+		public void doRun() {
+			
+			if(state.get() != PENDING) {
+				// Timed out while waiting in the queue : the thread is given back at once
+				return;
+			}
+			
+			try {
+				ColumnarStatistics collected = collectStatistics(serverName, osbResourceType, resourceType, statisticType);
+				if(collected != null) {
+					// Written before the state so a reader seeing DONE sees the statistics
+					statistics = collected.toMap();
+					if(!state.compareAndSet(PENDING, DONE)) {
+						AppLog.getLogger().debug("The statistics of server [" + serverName + "] have been collected after the timeout - They are dropped");
+					}
+				} else if(state.compareAndSet(PENDING, FAILED)) {
+					AppLog.getLogger().error("Unable to collect the statistics for server [" + serverName + "] - Its statistics are skipped for this collection");
+				}
+			} catch (Exception ex) {
+				if(state.compareAndSet(PENDING, FAILED)) {
+					AppLog.getLogger().error("Unable to collect the statistics for server [" + serverName + "] - Message is [" + ex.getMessage() + "]");
+				}
+			}
+		}
+		
+		/**
+		 * The collection of the server timed out : the work is not started (or its statistics are dropped)
+		 * 
+		 * @return false if the work has already finished (its outcome is kept)
+		 */
+		public boolean timeOut() {
+			return state.compareAndSet(PENDING, RELEASED);
+		}
+		
+		/**
+		 * The work manager stops the work : same as a timeout
+		 */
+		public void release() {
+			timeOut();
+		}
+		
+		/**
+		 * @return true if the work is finished (see isCollected)
+		 */
+		public boolean isCompleted() {
+			int current = state.get();
+			return current == DONE || current == FAILED;
+		}
+		
+		/**
+		 * @return true if the statistics of the server have been collected
+		 */
+		public boolean isCollected() {
+			return state.get() == DONE;
+		}
+		
+		/**
+		 * @return The time since the work has been scheduled (the time in the queue is part of the timeout)
+		 */
+		public long getElapsedMillis() {
+			return System.currentTimeMillis() - scheduledTime;
+		}
+	}
+	
+	/**
+	 * Gets the NAME of all the servers in RUNNING state of the domain 
+	 * 
+	 * @return The names of the RUNNING servers
+	 */
+	private List<String> getRunningServerNames() {
+		
+		List<String> serverNames = new ArrayList<>();
+		
+		MBeanServerConnection connection = getConn();
+		if(connection == null) {
+			AppLog.getLogger().error("Unable to get the list of the RUNNING servers - No connection to the domain runtime");
+			return serverNames;
+		}
+		
+		try {
+			ObjectName[] serverRuntimes = (ObjectName[]) connection.getAttribute(domainRuntimeServiceMBean, SERVER_RUNTIMES);
+			for(ObjectName serverRuntime : serverRuntimes) {
+				
+				try {
+					String state = (String) connection.getAttribute(serverRuntime, STATE);
+					if(SERVER_STATE_RUNNING.equals(state)) {
+						serverNames.add((String) connection.getAttribute(serverRuntime, NAME));
+					}
+				} catch (Exception ex) {
+					AppLog.getLogger().warning("Unable to get the state of server [" + serverRuntime + "] - Message is [" + ex.getMessage() + "]");
+				}
+			}
+		} catch (Exception ex) {
+			AppLog.getLogger().error("Unable to get the list of the RUNNING servers - Message is [" + ex.getMessage() + "]");
+			connectionManager.requestHealthCheck();
+		}
+		return serverNames;
+	}
+	
+	/**
+	 * Retrieves a named work manager from the local JNDI tree. 
+	 * 
+	 * @param wkMgrName The name of the work manager to retrieve
+	 * @return The work manager or null if it can't be located (the works are then processed sequentially)
+	 */
+	private WorkManager getWorkManager(String wkMgrName) {
+		
+		WorkManager workManager = workManagers.get(wkMgrName);
+		if(workManager == null) {
+			InitialContext ctx = null;
+			
+			try {
+				ctx = new InitialContext();
+				workManager = (WorkManager) ctx.lookup(wkMgrName);
+				workManagers.put(wkMgrName, workManager);
+			} catch (NamingException nEx) {
+				AppLog.getLogger().warning("Work Manager [" + wkMgrName + "] cannot be located - The works will be processed sequentially. " + nEx.getMessage());
+			} finally {
+				if (ctx != null) {
+					try { ctx.close(); } catch (Exception e) {}
+				}
+			}
+		}
+		return workManager;
+	}
+	
+	/**
+	 * Call statistics of the ServiceDomainMBean methods (the only path to the aggregator)
+	 * 
+	 * @return The KEY is the NAME of the method and the CONTENT is the statistics (count, failures, totalMicros, averageMicros, maxMicros)
+	 */
+	public Map<String, Map<String, Long>> getServiceDomainCallMetrics() {
+		return serviceDomainClient.getCallMetrics();
+	}
+	
+	/**
+	 * 
+	 * @param serverName
+	 * @param osbResourceType
+	 * @param handler
+	 * @param resourceTypes
+	 * @return true if the statistics of all the services have been retrieved (if false, the batches already 
+	 * given to the handler are only a part of the services and must be discarded)
+	 */
+	private boolean getDetailsForResourceType(String serverName, String osbResourceType, RefBatchFetcher.BatchHandler handler, ResourceType... resourceTypes) {
+	//private HashMap<Ref, ServiceResourceStatistic> getDetailsForResourceType(String osbResourceType, ResourceType resourceType) {
+
+		try {
+
+			Ref[] references = getRefForOsbType(osbResourceType);
+
+			if (references == null) {
+				return false;
+			}
+			
+			if (references.length > 0) {
+				//AppLog.getLogger().debug("Found [" + references.length + "] elements of type [" + osbResourceType + "]");
+
+				// Bitwise map for desired resource types.
+				int typeFlag = 0;
+				for(ResourceType resourceType : resourceTypes) {
+					typeFlag = typeFlag | resourceType.value();
+				}
+
+				// Get cluster-level statistics.
+				try {
+					// Get statistics.
+					getStatisticForOsbType(serverName, osbResourceType, references, typeFlag, handler);
+					//HashMap<Ref, ServiceResourceStatistic> statsMap = getStatisticForOsbType(osbResourceType, references, typeFlag);
+				
+					return true;
+				} catch (IllegalArgumentException iae) {
+
+					AppLog.getLogger().error("------------------------------------------------");
+					AppLog.getLogger().error("Encountered IllegalArgumentException... Details:");
+					AppLog.getLogger().error(iae.getMessage());
+					AppLog.getLogger().error("Check if reference OR bitmap are valid... !!!");
+					AppLog.getLogger().error("------------------------------------------------");
+					throw iae;
+				} catch (DomainMonitoringDisabledException dmde) {
+
+					// Statistics not available as monitoring is turned off at domain level.
+					AppLog.getLogger().error("------------------------------------------------");
+					AppLog.getLogger().error("Statistics not available as monitoring is turned off at domain level.");
+					AppLog.getLogger().error("------------------------------------------------");
+					throw dmde;
+				} catch (MonitoringException me) {
+
+					// Internal problem... May be aggregation server is crashed...
+					AppLog.getLogger().error("------------------------------------------------");
+					AppLog.getLogger().error("Statistics is not available... Check if aggregation server is crashed...");
+					AppLog.getLogger().error("------------------------------------------------");
+					throw me;
+				}
+
+			} else {
+				// Nothing to collect : the (empty) statistics are complete
+				AppLog.getLogger().error("Didn't find any element with monitoring enabled - Not possible to collect anything for elements of type [" + osbResourceType + "]");
+				return true;
+			}
+
+		} catch (Exception ex) {
+			AppLog.getLogger().error("Problem to get the details of OSB resource [" + osbResourceType + "] and ResourceType " + Arrays.toString(resourceTypes), ex);
+			
+			// The connection is checked before being used again
+			connectionManager.requestHealthCheck();
+		}
+		return false; 
+	}
+	
+	/**
+	 * 
+	 * @param resourceType
+	 * @return
+	 */
+	private ResourceType getResourceType(String resourceType) {
+
+		try {
+			// Try from the "string" enum value
+			return ResourceType.valueOf(resourceType.toUpperCase());
+		} catch (Exception ex) {
+
+			// Try from internal DH constants (probably coming from WS)
+			switch (resourceType) {
+
+				case MonitorProperties.OSB_RESOURCE_TYPE_FLOW_COMPONENT:
+					return ResourceType.FLOW_COMPONENT;
+	
+				case MonitorProperties.OSB_RESOURCE_TYPE_SERVICE:
+					return ResourceType.SERVICE;
+	
+				case MonitorProperties.OSB_RESOURCE_TYPE_WEBSERVICE_OPERATION:
+					return ResourceType.WEBSERVICE_OPERATION;
+	
+				case MonitorProperties.OSB_RESOURCE_TYPE_URI:
+					return ResourceType.URI;
+	
+				default:
+					AppLog.getLogger().error("Wrong resourceType [" + resourceType + "]");
+					return null;
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @param osbResourceType
+	 * @return
+	 * @throws Exception
+	 */
+	private Ref[] getRefForOsbType(String osbResourceType) {
+
+		try {
+			// The monitored Refs only change when an OSB session is activated
+			return refRegistry.getMonitoredRefs(serviceDomainClient, osbResourceType);
+		} catch(Exception ex) {
+			AppLog.getLogger().error("Unable to get the reference for [" + osbResourceType + "] - Message is [" + ex.getMessage() + "]");
+			return null;
+		}
+	}
+
+	/**
+	 * 
+	 * @param serverName
+	 * @param osbResourceType
+	 * @param serviceRefs
+	 * @param typeFlag
+	 * @param handler
+	 * @throws Exception
+	 */
+	private void getStatisticForOsbType(String serverName, String osbResourceType, Ref[] serviceRefs, int typeFlag, RefBatchFetcher.BatchHandler handler) throws Exception {
+	//private HashMap<Ref, ServiceResourceStatistic> getStatisticForOsbType(String osbResourceType, Ref[] serviceRefs, int typeFlag) throws Exception {
+
+		// If the serverName is set, the statistic will be retrieve for it.
+		// If the serverName is null, then the statistic will be retrieved for the cluster
+		
+		// The Refs are split in batches (pipelined on the work manager) so a huge domain
+		// doesn't produce one huge HashMap<Ref, ServiceResourceStatistic>
+		int batchSize = AppProperties.getIntProperty(AppProperties.REF_BATCH_SIZE_PROP, AppProperties.DEFAULT_REF_BATCH_SIZE);
+		int maxInFlight = AppProperties.getIntProperty(AppProperties.REF_BATCH_MAX_IN_FLIGHT_PROP, AppProperties.DEFAULT_REF_BATCH_MAX_IN_FLIGHT);
+		long batchTimeoutMillis = AppProperties.getIntProperty(AppProperties.REF_BATCH_TIMEOUT_SECS_PROP, AppProperties.DEFAULT_REF_BATCH_TIMEOUT_SECS) * (long) ONE_SECOND_MILLIS;
+		
+		RefBatchFetcher fetcher = new RefBatchFetcher(serviceDomainClient, getWorkManager(REF_BATCH_WORK_MGR_JNDI), batchSize, maxInFlight, batchTimeoutMillis, refBatchPermits);
+		fetcher.fetch(serverName, osbResourceType, serviceRefs, typeFlag, handler);
+	}
+
+	/**
+	 * 
+	 * @param osbResourceType
+	 * @return
+	 */
+	private boolean isValidOsbResourceType(String osbResourceType) {
+
+		switch (osbResourceType) {
 
 		case MonitorProperties.OSB_PS_TYPE:
 			return true;
@@ -631,186 +1779,186 @@ public class WLOsbStats implements WLOsbStatsMXBean, MBeanRegistration {
 	
 	/**
 	 * 
+	 * @param statsMap
 	 * @param statisticType
-	 * @param statisticName
-	 * @return
+	 * @param builder The columns where the statistics are added
+	 * 
+	 * Each value is added with the ids of :
+	 *    the NAME of the SERVICE (name of PS or BS for example)
+	 *    the NAME of the ResourceStatistic object
+	 *    the NAME of the StatisticValue object
 	 */
-	private boolean isValidStatisticNameForType(String statisticType, String statisticName) {
+	private void processStatistics(HashMap<Ref, ServiceResourceStatistic> statsMap, StatisticType statisticType, ColumnarStatisticsBuilder builder) {
+		
+		// Check input parameters
+		if (statsMap == null) {
+			return;
+		}
+		if (statsMap.size() == 0) {
+			return;
+		}
 
-		try {
-			Set<String> statisticNames = MonitorProperties.OSB_STATISTIC_TYPE_TREE.get(statisticType);
-			if (statisticNames != null && statisticNames.contains(statisticName)) {
-				return true;
-			} else {
-				return false;
+		Set<Map.Entry<Ref, ServiceResourceStatistic>> set = statsMap.entrySet();
+		for (Map.Entry<Ref, ServiceResourceStatistic> mapEntry : set) {
+
+			ResourceStatistic[] resStatsArray = getResourceStatistics(mapEntry.getKey(), mapEntry.getValue());
+			if(resStatsArray == null) {
+				continue;
 			}
-		} catch (Exception ex) {
-			AppLog.getLogger().error("Issue during execution of isValidStatisticNameForType method - statisticType, String statisticName");
-			return false;
+			
+			int serviceId = StatisticsDictionary.SERVICES.getId(mapEntry.getKey().getLocalName());
+			
+			// ----------------------------------------------------------------
+			// Process statistics
+			for (ResourceStatistic resStats : resStatsArray) {
+				
+				// Add the StatisticValue
+				processResourceStatistic(resStats, statisticType, builder, serviceId, StatisticsDictionary.RESOURCE_STATISTICS.getId(resStats.getName()));
+			}
+			// ----------------------------------------------------------------
 		}
 	}
 	
 	/**
-	 * 
-	 * @param statsMap
-	 * @return
-	 */
-	private Map<String, Map<String, Map<String, Double>>> processStatistics(HashMap<Ref, ServiceResourceStatistic> statsMap) {
-		return processStatistics(statsMap, null);
-	}
-	
-	/**
+	 * Same as processStatistics(statsMap, statisticType, builder) but the statsMap is expected to contain
+	 * several ResourceType (OR-ed typeFlag) : the statistics are split per ResourceType in one pass.
 	 * 
 	 * @param statsMap
 	 * @param statisticType
-	 * @return
+	 * @param statisticsPerResourceType The columns where the statistics are added (only the ResourceType present as KEY are kept)
 	 */
-	private Map<String, Map<String, Map<String, Double>>> processStatistics(HashMap<Ref, ServiceResourceStatistic> statsMap, StatisticType statisticType) {
+	private void processStatisticsPerResourceType(HashMap<Ref, ServiceResourceStatistic> statsMap, StatisticType statisticType, Map<ResourceType, ColumnarStatisticsBuilder> statisticsPerResourceType) {
 		
-		/*
-		 * MAP object containing all the informations
-		 * 
-		 * The KEY is the NAME of the SERVICE (name of PS or BS for example)
-		 * The CONTENT is a MAP object having :
-		 *    The KEY is the NAME of the ResourceStatistic object
-		 *    The CONTENT is a MAP object having :
-		 *        The KEY is the NAME of the StatisticValue object
-		 *        The CONTENT is the VALUE of the StatisticValue object
-		*/
-		Map<String, Map<String, Map<String, Double>>> globalStatistics = new LinkedHashMap<>();
-				
 		// Check input parameters
-		if (statsMap == null) {
-			return globalStatistics;
-		}
-		if (statsMap.size() == 0) {
-			return globalStatistics;
+		if (statsMap == null || statsMap.size() == 0) {
+			return;
 		}
-
+		
 		Set<Map.Entry<Ref, ServiceResourceStatistic>> set = statsMap.entrySet();
 		for (Map.Entry<Ref, ServiceResourceStatistic> mapEntry : set) {
 
-			String serviceName = mapEntry.getKey().getLocalName();
-			ServiceResourceStatistic serviceStats = mapEntry.getValue();
-			ResourceStatistic[] resStatsArray = null;
-			
-			try {
-				// Get all the statistics
-				resStatsArray = serviceStats.getAllResourceStatistics();
-			} catch (MonitoringNotEnabledException mnee) {
-
-				// Statistics not available
-				AppLog.getLogger().error("--------------------------------------------------------------------");
-				AppLog.getLogger().error("Monitoring is not enabled for the service [" + serviceName + "]");
-				AppLog.getLogger().error("--------------------------------------------------------------------");
-				continue;
-			} catch (InvalidServiceRefException isre) {
-
-				// Invalid service
-				AppLog.getLogger().error("---------------------------------------------------------------");
-				AppLog.getLogger().error("InvalidRef. Maybe the service  [" + serviceName + "] is deleted");
-				AppLog.getLogger().error("---------------------------------------------------------------");
-				continue;
-			} catch (MonitoringException me) {
-
-				// Statistics not available
-				AppLog.getLogger().error("--------------------------------------------------------------------");
-				AppLog.getLogger().error("Failed to get statistics for the service  [" + serviceName + "]");
-				AppLog.getLogger().error("Details: " + me.getMessage());
-				AppLog.getLogger().error("--------------------------------------------------------------------");
+			ResourceStatistic[] resStatsArray = getResourceStatistics(mapEntry.getKey(), mapEntry.getValue());
+			if(resStatsArray == null) {
 				continue;
 			}
 			
-			Map<String, Map<String, Double>> services = new LinkedHashMap<>();
+			int serviceId = StatisticsDictionary.SERVICES.getId(mapEntry.getKey().getLocalName());
 			
 			// ----------------------------------------------------------------
 			// Process statistics
 			for (ResourceStatistic resStats : resStatsArray) {
-
-				String resourceStatisticName = resStats.getName();
-				Map<String, Double> statisticValues = new LinkedHashMap<>();
 				
-				// Now get and print statistics for this resource
-				StatisticValue[] statValues = resStats.getStatistics();
-				for (StatisticValue value : statValues) {
-
-					StatisticType currentStatisticType = value.getType();
-					String currentStatisticValueName = value.getName();
-					if (!isValidStatisticNameForType(currentStatisticType.toString(), currentStatisticValueName)) {
-						AppLog.getLogger().warning("The StatisticValue [" + currentStatisticValueName + "] is [UNKNOWN] for the type: [" + currentStatisticType + "]");
-					}
-					
-					// boolean value to specify is statistic should be returned or not
-					boolean isFiltered = true;
-					
-					// If the statisticType parameter is used
-					if(statisticType != null && statisticType == currentStatisticType) {
-						
-						// If it's the correct type
-						if(statisticType == currentStatisticType) {
-							
-							// statisticType defined and correct value
-							isFiltered = true;
-						} else {
-							
-							// statisticType defined but not correct type/value so should be skipped/filtered
-							isFiltered = false;
-						}
-						
-					} else {
-						// statisticType is not specified so no need to filter anything
-						isFiltered = true;
-					}
-					
-					// If relevant statistic
-					if(isFiltered) {
-												
-						// Determine statistics type
-						if (currentStatisticType == StatisticType.INTERVAL) {
-							
-							StatisticValue.IntervalStatistic is = (StatisticValue.IntervalStatistic) value;
-							
-							// Add the elements to the list
-							statisticValues.put(is.getName() + MonitorProperties.OSB_STATISTIC_TYPE_INTERVAL_PROPERTY_COUNT, new Double(is.getCount()));
-							statisticValues.put(is.getName() + MonitorProperties.OSB_STATISTIC_TYPE_INTERVAL_PROPERTY_MIN, new Double(is.getMin()));
-							statisticValues.put(is.getName() + MonitorProperties.OSB_STATISTIC_TYPE_INTERVAL_PROPERTY_MAX, new Double(is.getMax()));
-							statisticValues.put(is.getName() + MonitorProperties.OSB_STATISTIC_TYPE_INTERVAL_PROPERTY_AVERAGE, new Double(is.getAverage()));
-							statisticValues.put(is.getName() + MonitorProperties.OSB_STATISTIC_TYPE_INTERVAL_PROPERTY_SUM, new Double(is.getSum()));
-							continue;
-							
-						} else if (value.getType() == StatisticType.COUNT) {
-							
-							StatisticValue.CountStatistic cs = (StatisticValue.CountStatistic) value;
-							
-							// Add the elements to the list
-							statisticValues.put(cs.getName().toString() + MonitorProperties.OSB_STATISTIC_TYPE_COUNT_PROPERTY_COUNT, new Double(cs.getCount()));
-							continue;
-
-						} else if (value.getType() == StatisticType.STATUS) {
-							
-							// Is used in 12.1.3
-							// Doesn't seem to be used in 10.3.6 ...						
-							StatisticValue.StatusStatistic ss = (StatisticValue.StatusStatistic) value;
-							
-							// Add the elements to the list
-							statisticValues.put(ss.getName() + MonitorProperties.OSB_STATISTIC_TYPE_STATUS_PROPERTY_INITIAL, new Double(ss.getInitialStatus()));
-							statisticValues.put(ss.getName() + MonitorProperties.OSB_STATISTIC_TYPE_STATUS_PROPERTY_CURRENT, new Double(ss.getCurrentStatus()));
-							continue;
-						}
-					} else {
-						AppLog.getLogger().warning("The statistic [] is not considered as relevant - Will not be part of statistics information");
-					}
+				ColumnarStatisticsBuilder builder = statisticsPerResourceType.get(resStats.getResourceType());
+				if(builder == null) {
+					// ResourceType not requested
+					continue;
 				}
 				
-				// Add the StatisticValue (NAME as KEY and VALUE as CONTENT)
-				services.put(resourceStatisticName, statisticValues);
+				// Add the StatisticValue
+				processResourceStatistic(resStats, statisticType, builder, serviceId, StatisticsDictionary.RESOURCE_STATISTICS.getId(resStats.getName()));
 			}
-			
-			// Add the service informations
-			globalStatistics.put(serviceName, services);
 			// ----------------------------------------------------------------
 		}
-		return globalStatistics;
+	}
+	
+	/**
+	 * 
+	 * @param serviceRef
+	 * @param serviceStats
+	 * @return The ResourceStatistic of the service or null if they are not available
+	 */
+	private ResourceStatistic[] getResourceStatistics(Ref serviceRef, ServiceResourceStatistic serviceStats) {
+		
+		String serviceName = serviceRef.getLocalName();
+		try {
+			// Get all the statistics
+			return serviceStats.getAllResourceStatistics();
+		} catch (MonitoringNotEnabledException mnee) {
+
+			// Statistics not available
+			AppLog.getLogger().error("--------------------------------------------------------------------");
+			AppLog.getLogger().error("Monitoring is not enabled for the service [" + serviceName + "]");
+			AppLog.getLogger().error("--------------------------------------------------------------------");
+		} catch (InvalidServiceRefException isre) {
+
+			// Invalid service
+			AppLog.getLogger().error("---------------------------------------------------------------");
+			AppLog.getLogger().error("InvalidRef. Maybe the service  [" + serviceName + "] is deleted");
+			AppLog.getLogger().error("---------------------------------------------------------------");
+			
+			// No need to ask for it anymore
+			refRegistry.evict(serviceRef);
+		} catch (MonitoringException me) {
+
+			// Statistics not available
+			AppLog.getLogger().error("--------------------------------------------------------------------");
+			AppLog.getLogger().error("Failed to get statistics for the service  [" + serviceName + "]");
+			AppLog.getLogger().error("Details: " + me.getMessage());
+			AppLog.getLogger().error("--------------------------------------------------------------------");
+		}
+		return null;
+	}
+	
+	/**
+	 * 
+	 * @param resStats
+	 * @param statisticType
+	 * @param builder The columns where the values are added
+	 * @param serviceId
+	 * @param resourceStatisticId
+	 */
+	private void processResourceStatistic(ResourceStatistic resStats, StatisticType statisticType, ColumnarStatisticsBuilder builder, int serviceId, int resourceStatisticId) {
+		
+		// Now get and print statistics for this resource
+		StatisticValue[] statValues = resStats.getStatistics();
+		for (StatisticValue value : statValues) {
+
+			StatisticType currentStatisticType = value.getType();
+			
+			// Only the values of the requested statistic type (all the types if not specified)
+			if (statisticType != null && statisticType != currentStatisticType) {
+				continue;
+			}
+			
+			// Metric ids of the facets (an UNKNOWN StatisticValue is added to the catalog)
+			int[] metricIds = MetricCatalog.getMetricIds(currentStatisticType, value.getName());
+			if (metricIds == null) {
+				continue;
+			}
+			
+			// Determine statistics type
+			if (currentStatisticType == StatisticType.INTERVAL) {
+				
+				StatisticValue.IntervalStatistic is = (StatisticValue.IntervalStatistic) value;
+				
+				// Add the elements to the list
+				builder.add(serviceId, resourceStatisticId, metricIds[MetricCatalog.INTERVAL_COUNT_FACET], is.getCount());
+				builder.add(serviceId, resourceStatisticId, metricIds[MetricCatalog.INTERVAL_MIN_FACET], is.getMin());
+				builder.add(serviceId, resourceStatisticId, metricIds[MetricCatalog.INTERVAL_MAX_FACET], is.getMax());
+				builder.add(serviceId, resourceStatisticId, metricIds[MetricCatalog.INTERVAL_AVERAGE_FACET], is.getAverage());
+				builder.add(serviceId, resourceStatisticId, metricIds[MetricCatalog.INTERVAL_SUM_FACET], is.getSum());
+				continue;
+				
+			} else if (value.getType() == StatisticType.COUNT) {
+				
+				StatisticValue.CountStatistic cs = (StatisticValue.CountStatistic) value;
+				
+				// Add the elements to the list
+				builder.add(serviceId, resourceStatisticId, metricIds[MetricCatalog.COUNT_COUNT_FACET], cs.getCount());
+				continue;
+
+			} else if (value.getType() == StatisticType.STATUS) {
+				
+				// Is used in 12.1.3
+				// Doesn't seem to be used in 10.3.6 ...						
+				StatisticValue.StatusStatistic ss = (StatisticValue.StatusStatistic) value;
+				
+				// Add the elements to the list
+				builder.add(serviceId, resourceStatisticId, metricIds[MetricCatalog.STATUS_INITIAL_FACET], ss.getInitialStatus());
+				builder.add(serviceId, resourceStatisticId, metricIds[MetricCatalog.STATUS_CURRENT_FACET], ss.getCurrentStatus());
+				continue;
+			}
+		}
 	}
 	
 	/**
@@ -868,21 +2016,17 @@ public class WLOsbStats implements WLOsbStatsMXBean, MBeanRegistration {
 	}
 		
 	/**
-	 * @return
+	 * @return The services of the last published snapshot, whatever its query (see getVersionedOsbServiceList to read a single query)
 	 */
 	public Set<String> getOsbServiceList() {
-
-		if(statistics != null && statistics.size() > 0) {
-			return statistics.keySet();
-		}
-		return null;
+		return getOsbServiceList(snapshotStore.getLatest().getStatistics());
 	}
 	
 	/**
 	 * @param statistics
 	 * @return
 	 */
-	public Set<String> getOsbServiceList(Map<String, Map<String, Map<String, Double>>> statistics) {
+	public static Set<String> getOsbServiceList(Map<String, Map<String, Map<String, Double>>> statistics) {
 
 		if(statistics != null && statistics.size() > 0) {
 			return statistics.keySet();
@@ -893,14 +2037,10 @@ public class WLOsbStats implements WLOsbStatsMXBean, MBeanRegistration {
 	/**
 	 * 
 	 * @param serviceName
-	 * @return
+	 * @return The resource statistics of the service in the last published snapshot, whatever its query (see the overload taking a version)
 	 */
 	public Set<String> getOsbResourceStatisticList(String serviceName) {
-		
-		if(statistics != null && statistics.size() > 0) {
-			return statistics.get(serviceName).keySet();
-		}
-		return null;
+		return getOsbResourceStatisticList(snapshotStore.getLatest().getStatistics(), serviceName);
 	}
 	
 	/**
@@ -909,14 +2049,25 @@ public class WLOsbStats implements WLOsbStatsMXBean, MBeanRegistration {
 	 * @param serviceName
 	 * @return
 	 */
-	public Set<String> getOsbResourceStatisticList(Map<String, Map<String, Map<String, Double>>> statistics, String serviceName) {
+	public static Set<String> getOsbResourceStatisticList(Map<String, Map<String, Map<String, Double>>> statistics, String serviceName) {
 		
 		if(statistics != null && statistics.size() > 0) {
-			return statistics.get(serviceName).keySet();
+			Map<String, Map<String, Double>> resourceStatistics = statistics.get(serviceName);
+			return (resourceStatistics != null) ? resourceStatistics.keySet() : null;
 		}
 		return null;
 	}
 	
+	/**
+	 * 
+	 * @param serviceName
+	 * @param resourceStatisticName
+	 * @return The statistics of the resource statistic in the last published snapshot, whatever its query (see the overload taking a version)
+	 */
+	public Set<String> getOsbStatisticList(String serviceName, String resourceStatisticName) {
+		return getOsbStatisticList(snapshotStore.getLatest().getStatistics(), serviceName, resourceStatisticName);
+	}
+	
 	/**
 	 * 
 	 * @param statistics
@@ -924,9 +2075,10 @@ public class WLOsbStats implements WLOsbStatsMXBean, MBeanRegistration {
 	 * @param resourceStatisticName
 	 * @return
 	 */
-	public Set<String> getOsbStatisticList(String serviceName, String resourceStatisticName) {
+	public static Set<String> getOsbStatisticList(Map<String, Map<String, Map<String, Double>>> statistics, String serviceName, String resourceStatisticName) {
 		
-		if(statistics != null && statistics.size() > 0) {			
+		Set<String> resourceStatistics = getOsbResourceStatisticList(statistics, serviceName);
+		if(resourceStatistics != null && resourceStatistics.contains(resourceStatisticName)) {			
 			return statistics.get(serviceName).get(resourceStatisticName).keySet();
 		}
 		return null;
@@ -934,40 +2086,260 @@ public class WLOsbStats implements WLOsbStatsMXBean, MBeanRegistration {
 	
 	/**
 	 * 
-	 * @param statistics
 	 * @param serviceName
 	 * @param resourceStatisticName
-	 * @return
+	 * @param statisticName
+	 * @return The value in the last published snapshot, whatever its query (see the overload taking a version), or 0 if not found
+	 */
+	public double getValueForOsbStatistic(String serviceName, String resourceStatisticName, String statisticName) {
+		return getValueForOsbStatistic(snapshotStore.getLatest().columns(), serviceName, resourceStatisticName, statisticName);
+	}
+	
+	/**
+	 * 
+	 * @param columns
+	 * @param serviceName
+	 * @param resourceStatisticName
+	 * @param statisticName
+	 * @return The value or 0 if not found
+	 */
+	private static double getValueForOsbStatistic(ColumnarStatistics columns, String serviceName, String resourceStatisticName, String statisticName) {
+		return columns.getValue(StatisticsDictionary.findKey(serviceName, resourceStatisticName, statisticName), 0);
+	}
+	
+	/**
+	 * 
+	 * @param serviceName
+	 * @param resourceStatisticName
+	 * @param statisticName
+	 * @return true if the last published snapshot (whatever its query) has a value for the statistic (to tell a real 0 apart from a missing statistic)
+	 */
+	public boolean hasValueForOsbStatistic(String serviceName, String resourceStatisticName, String statisticName) {
+		return snapshotStore.getLatest().columns().contains(StatisticsDictionary.findKey(serviceName, resourceStatisticName, statisticName));
+	}
+	
+	/**
+	 * First step of a walk services -> resource statistics -> statistics -> values on a single snapshot :
+	 * the version returned is given to the next readers so they read the same snapshot
+	 * 
+	 * @param serverName The server (if null or empty, the cluster)
+	 * @param osbResourceType
+	 * @param resourceType
+	 * @param statisticType The statistic type (if null or empty, all the types)
+	 * @return The services of the last published snapshot of the query with its version (version 0 if the query has never been collected)
 	 */
-	public Set<String> getOsbStatisticList(Map<String, Map<String, Map<String, Double>>> statistics, String serviceName, String resourceStatisticName) {
+	public VersionedNames getVersionedOsbServiceList(String serverName, String osbResourceType, String resourceType, String statisticType) {
 		
-		if(statistics != null && statistics.size() > 0) {			
-			return statistics.get(serviceName).get(resourceStatisticName).keySet();
+		StatisticsSnapshot snapshot = getSnapshot(serverName, osbResourceType, resourceType, statisticType);
+		Set<String> names = getOsbServiceList(snapshot.getStatistics());
+		return new VersionedNames(snapshot.getVersion(), snapshot.getCaptureTime(), (names != null) ? names : Collections.<String>emptySet());
+	}
+	
+	/**
+	 * 
+	 * @param version The version of a retained snapshot (see getVersionedOsbServiceList)
+	 * @param serviceName
+	 * @return The resource statistics of the service in the snapshot of the version
+	 * @throws IllegalArgumentException If the snapshot of the version is no more retained
+	 */
+	public Set<String> getOsbResourceStatisticList(long version, String serviceName) {
+		return getOsbResourceStatisticList(getRetainedSnapshot(version).getStatistics(), serviceName);
+	}
+	
+	/**
+	 * 
+	 * @param version The version of a retained snapshot (see getVersionedOsbServiceList)
+	 * @param serviceName
+	 * @param resourceStatisticName
+	 * @return The statistics of the resource statistic in the snapshot of the version
+	 * @throws IllegalArgumentException If the snapshot of the version is no more retained
+	 */
+	public Set<String> getOsbStatisticList(long version, String serviceName, String resourceStatisticName) {
+		return getOsbStatisticList(getRetainedSnapshot(version).getStatistics(), serviceName, resourceStatisticName);
+	}
+	
+	/**
+	 * 
+	 * @param version The version of a retained snapshot (see getVersionedOsbServiceList)
+	 * @param serviceName
+	 * @param resourceStatisticName
+	 * @param statisticName
+	 * @return The value in the snapshot of the version or 0 if not found
+	 * @throws IllegalArgumentException If the snapshot of the version is no more retained
+	 */
+	public double getValueForOsbStatistic(long version, String serviceName, String resourceStatisticName, String statisticName) {
+		return getValueForOsbStatistic(getRetainedSnapshot(version).columns(), serviceName, resourceStatisticName, statisticName);
+	}
+	
+	/**
+	 * 
+	 * @param version The version of a retained snapshot (see getVersionedOsbServiceList)
+	 * @param serviceName
+	 * @param resourceStatisticName
+	 * @param statisticName
+	 * @return true if the snapshot of the version has a value for the statistic
+	 * @throws IllegalArgumentException If the snapshot of the version is no more retained
+	 */
+	public boolean hasValueForOsbStatistic(long version, String serviceName, String resourceStatisticName, String statisticName) {
+		return getRetainedSnapshot(version).columns().contains(StatisticsDictionary.findKey(serviceName, resourceStatisticName, statisticName));
+	}
+	
+	/**
+	 * 
+	 * @param version
+	 * @return The retained snapshot of the version
+	 * @throws IllegalArgumentException If the snapshot of the version is no more retained
+	 */
+	private StatisticsSnapshot getRetainedSnapshot(long version) {
+		
+		StatisticsSnapshot snapshot = snapshotStore.getVersion(version);
+		if (snapshot == null) {
+			throw new IllegalArgumentException("The snapshot [" + version + "] is not retained anymore - Read the versioned list of the services of the query again");
 		}
-		return null;
+		return snapshot;
 	}
 	
 	/**
+	 * Same as getValueForOsbStatistic but also returns the version of the snapshot the value was read from
 	 * 
-	 * @param statistics
 	 * @param serviceName
 	 * @param resourceStatisticName
 	 * @param statisticName
 	 * @return
 	 */
-	public double getValueForOsbStatistic(String serviceName, String resourceStatisticName, String statisticName) {
+	public VersionedValue getVersionedValueForOsbStatistic(String serviceName, String resourceStatisticName, String statisticName) {
 		
-		if(statistics != null) {
-			
-			try {
-				return statistics.get(serviceName).get(resourceStatisticName).get(statisticName);
-			} catch (Exception ex) {
-				//AppLog.getLogger().warning("Not possible to get the value of the statistic [-> " + serviceName + "/" + resourceStatisticName + "/" + statisticName + "]");
+		// Only one read of the snapshot so the value and the version are consistent
+		StatisticsSnapshot snapshot = snapshotStore.getLatest();
+		ColumnarStatistics columns = snapshot.columns();
+		int row = columns.indexOf(StatisticsDictionary.findKey(serviceName, resourceStatisticName, statisticName));
+		if (row < 0) {
+			return new VersionedValue(snapshot.getVersion(), snapshot.getCaptureTime(), 0, false);
+		}
+		return new VersionedValue(snapshot.getVersion(), snapshot.getCaptureTime(), columns.getValue(row), true);
+	}
+	
+	/**
+	 * Reads several statistics of the last published snapshot (whatever its query) with a single call (instead of one getValueForOsbStatistic per statistic)
+	 * 
+	 * @param serviceNames
+	 * @param resourceStatisticNames
+	 * @param statisticNames
+	 * @return The values aligned with the names (NaN if the statistic is not part of the snapshot)
+	 */
+	public StatisticValues getValues(String[] serviceNames, String[] resourceStatisticNames, String[] statisticNames) {
+		return getValues(snapshotStore.getLatest(), serviceNames, resourceStatisticNames, statisticNames);
+	}
+	
+	/**
+	 * Reads several statistics of the last published snapshot of a query with a single call
+	 * 
+	 * @param serverName The server (if null or empty, the cluster)
+	 * @param osbResourceType
+	 * @param resourceType
+	 * @param statisticType The statistic type (if null or empty, all the types)
+	 * @param serviceNames
+	 * @param resourceStatisticNames
+	 * @param statisticNames
+	 * @return The values aligned with the names (NaN if the statistic is not part of the snapshot)
+	 */
+	public StatisticValues getValues(String serverName, String osbResourceType, String resourceType, String statisticType, String[] serviceNames, String[] resourceStatisticNames, String[] statisticNames) {
+		return getValues(getSnapshot(serverName, osbResourceType, resourceType, statisticType), serviceNames, resourceStatisticNames, statisticNames);
+	}
+	
+	/**
+	 * 
+	 * @param snapshot
+	 * @param serviceNames
+	 * @param resourceStatisticNames
+	 * @param statisticNames
+	 * @return
+	 */
+	private static StatisticValues getValues(StatisticsSnapshot snapshot, String[] serviceNames, String[] resourceStatisticNames, String[] statisticNames) {
+		
+		if (serviceNames == null || resourceStatisticNames == null || statisticNames == null) {
+			throw new IllegalArgumentException("The service, resource statistic and statistic names are mandatory");
+		}
+		if (serviceNames.length != resourceStatisticNames.length || serviceNames.length != statisticNames.length) {
+			throw new IllegalArgumentException("The service [" + serviceNames.length + "], resource statistic [" + resourceStatisticNames.length + "] and statistic [" + statisticNames.length + "] names must have the same length");
+		}
+		
+		ColumnarStatistics columns = snapshot.columns();
+		double[] values = new double[serviceNames.length];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = columns.getValue(StatisticsDictionary.findKey(serviceNames[i], resourceStatisticNames[i], statisticNames[i]), Double.NaN);
+		}
+		return new StatisticValues(snapshot.getVersion(), snapshot.getCaptureTime(), serviceNames, resourceStatisticNames, statisticNames, values);
+	}
+	
+	/**
+	 * Reads all the statistics of the last published snapshot (whatever its query) matching the patterns with a single call
+	 * 
+	 * @param servicePattern Wildcard pattern ('*' and '?') of the service names (null for all)
+	 * @param resourceStatisticPattern Wildcard pattern of the resource statistic names (null for all)
+	 * @param statisticPattern Wildcard pattern of the statistic names (null for all)
+	 * @return The matching values
+	 */
+	public StatisticValues getValuesMatching(String servicePattern, String resourceStatisticPattern, String statisticPattern) {
+		return getValuesMatching(snapshotStore.getLatest(), servicePattern, resourceStatisticPattern, statisticPattern);
+	}
+	
+	/**
+	 * Reads all the statistics of the last published snapshot of a query matching the patterns with a single call
+	 * 
+	 * @param serverName The server (if null or empty, the cluster)
+	 * @param osbResourceType
+	 * @param resourceType
+	 * @param statisticType The statistic type (if null or empty, all the types)
+	 * @param servicePattern Wildcard pattern ('*' and '?') of the service names (null for all)
+	 * @param resourceStatisticPattern Wildcard pattern of the resource statistic names (null for all)
+	 * @param statisticPattern Wildcard pattern of the statistic names (null for all)
+	 * @return The matching values
+	 */
+	public StatisticValues getValuesMatching(String serverName, String osbResourceType, String resourceType, String statisticType, String servicePattern, String resourceStatisticPattern, String statisticPattern) {
+		return getValuesMatching(getSnapshot(serverName, osbResourceType, resourceType, statisticType), servicePattern, resourceStatisticPattern, statisticPattern);
+	}
+	
+	/**
+	 * 
+	 * @param snapshot
+	 * @param servicePattern
+	 * @param resourceStatisticPattern
+	 * @param statisticPattern
+	 * @return
+	 */
+	private static StatisticValues getValuesMatching(StatisticsSnapshot snapshot, String servicePattern, String resourceStatisticPattern, String statisticPattern) {
+		
+		ColumnarStatistics columns = snapshot.columns();
+		NamePattern services = new NamePattern(emptyToNull(servicePattern), StatisticsDictionary.SERVICES);
+		NamePattern resourceStatistics = new NamePattern(emptyToNull(resourceStatisticPattern), StatisticsDictionary.RESOURCE_STATISTICS);
+		NamePattern statistics = new NamePattern(emptyToNull(statisticPattern), StatisticsDictionary.METRICS);
+		
+		// Each name is matched once (the patterns keep the result per id)
+		int size = columns.size();
+		int[] rows = new int[size];
+		int count = 0;
+		for (int row = 0; row < size; row++) {
+			long key = columns.getKey(row);
+			if (services.matches(StatisticsDictionary.getServiceId(key))
+					&& resourceStatistics.matches(StatisticsDictionary.getResourceStatisticId(key))
+					&& statistics.matches(StatisticsDictionary.getMetricId(key))) {
+				rows[count++] = row;
 			}
-		} else {
-			AppLog.getLogger().error("Not possible to extract statictic value - The statistic object is null");
 		}
-		return 0;
+		
+		String[] serviceNames = new String[count];
+		String[] resourceStatisticNames = new String[count];
+		String[] statisticNames = new String[count];
+		double[] values = new double[count];
+		for (int i = 0; i < count; i++) {
+			long key = columns.getKey(rows[i]);
+			serviceNames[i] = StatisticsDictionary.SERVICES.getName(StatisticsDictionary.getServiceId(key));
+			resourceStatisticNames[i] = StatisticsDictionary.RESOURCE_STATISTICS.getName(StatisticsDictionary.getResourceStatisticId(key));
+			statisticNames[i] = StatisticsDictionary.METRICS.getName(StatisticsDictionary.getMetricId(key));
+			values[i] = columns.getValue(rows[i]);
+		}
+		return new StatisticValues(snapshot.getVersion(), snapshot.getCaptureTime(), serviceNames, resourceStatisticNames, statisticNames, values);
 	}
 	
 	/**
@@ -978,15 +2350,15 @@ public class WLOsbStats implements WLOsbStatsMXBean, MBeanRegistration {
 	 * @param statisticName
 	 * @return
 	 */
-	public double getValueForOsbStatistic(Map<String, Map<String, Map<String, Double>>> statistics, String serviceName, String resourceStatisticName, String statisticName) {
+	public static double getValueForOsbStatistic(Map<String, Map<String, Map<String, Double>>> statistics, String serviceName, String resourceStatisticName, String statisticName) {
 		
 		if(statistics != null) {
 			
-			try {
-				return statistics.get(serviceName).get(resourceStatisticName).get(statisticName);
-			} catch (Exception ex) {
-				//AppLog.getLogger().error("Not possible to get the value of the statistic [" + serviceName + "/" + resourceStatisticName + "/" + statisticName + "]");
-			}
+			// Explicit checks : a missing statistic is a normal case (no exception)
+			Map<String, Map<String, Double>> resourceStatistics = statistics.get(serviceName);
+			Map<String, Double> values = (resourceStatistics != null) ? resourceStatistics.get(resourceStatisticName) : null;
+			Double value = (values != null) ? values.get(statisticName) : null;
+			return (value != null) ? value.doubleValue() : 0;
 		} else {
 			AppLog.getLogger().error("Not possible to extract statictic value - The statistic object is null");
 		}
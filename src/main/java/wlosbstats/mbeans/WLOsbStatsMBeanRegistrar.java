@@ -30,6 +30,9 @@ import javax.naming.NamingException;
  */
 public class WLOsbStatsMBeanRegistrar {
 	
+	// Members
+	private WLOsbStats mbean = null;
+	
 	/**
 	 * Registers the WLJvmStats MBean on the current server.
 	 * 
@@ -48,8 +51,16 @@ public class WLOsbStatsMBeanRegistrar {
 		ObjectName mbeanObjName = new ObjectName(WL_OSB_STATS_MBEAN_NAME);
 				
 		mbs.registerMBean(mbean, mbeanObjName);
+		this.mbean = mbean;
 		ctx.close();
 	}
+	
+	/**
+	 * @return The registered MBean (null if not registered) - Used by the REST resources of the application
+	 */
+	public WLOsbStats getMBean() {
+		return mbean;
+	}
 
 	/**
 	 * De-registers the WLJvmStats MBean from the current server.
@@ -68,10 +79,12 @@ public class WLOsbStatsMBeanRegistrar {
 		if ((mbeanObjName != null) && (mbs.isRegistered(mbeanObjName))) { 
 			mbs.unregisterMBean(mbeanObjName);
 		}
+		mbean = null;
 		ctx.close();
 	}
 
 	// Constants
+	public final static String MBEAN_CONTEXT_ATTRIBUTE = "wlosbstats.mbean";
 	private final static String RUNTIME_MBEAN_SERVER_JNDI_KEY = "java:comp/env/jmx/runtime";
 	private final static String WL_OSB_STATS_MBEAN_NAME = "wlosbstats:name=WLOsbStats";
 }
@@ -14,9 +14,20 @@
 //POSSIBILITY OF SUCH DAMAGE.
 package wlosbstats.mbeans;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import wlosbstats.baseline.Anomaly;
+import wlosbstats.history.LatencyPercentiles;
+import wlosbstats.history.StatisticHistory;
+import wlosbstats.snapshot.ServiceRanking;
+import wlosbstats.snapshot.StatisticValues;
+import wlosbstats.snapshot.StatisticsDelta;
+import wlosbstats.snapshot.StatisticsSnapshot;
+import wlosbstats.snapshot.VersionedNames;
+import wlosbstats.snapshot.VersionedValue;
+
 
 /**
  * MBean exposing statistics for the JVM running this WebLogic
@@ -32,14 +43,92 @@ public interface WLOsbStatsMXBean {
 	//public Map<String, Map<String, Map<String, Double>>> getServiceStatistics(String osbResourceType, String resourceType, String statisticType);
 	//public Map<String, Map<String, Map<String, Double>>> getServiceStatistics(String osbResourceType, String resourceType);
 	
+	// Statistics of several ResourceType retrieved with a single aggregator call (the KEY is the resource type)
+	public Map<String, Map<String, Map<String, Map<String, Double>>>> getServiceStatisticsForResourceTypes(String serverName, String osbResourceType, String[] resourceTypes, String statisticType);
+	
 	// Statistics are internal to the MBean
 	public void collectServiceStatistics(String serverName, String osbResourceType, String resourceType, String statisticType);
 	public void collectServiceStatistics(String serverName, String osbResourceType, String resourceType);
 	//public void collectServiceStatistics(String osbResourceType, String resourceType, String statisticType);
 	//public void collectServiceStatistics(String osbResourceType, String resourceType);
 	
+	// Statistics of all the RUNNING servers, queried in parallel (the KEY is the server name)
+	public Map<String, Map<String, Map<String, Map<String, Double>>>> collectAllServers(String osbResourceType, String resourceType, String statisticType);
+	
+	// Collections run in the background by the agent (the statistics of the last run are kept per job)
+	public void scheduleCollection(String jobName, String serverName, String osbResourceType, String resourceType, String statisticType, int periodSecs, int jitterSecs);
+	public boolean cancelCollection(String jobName);
+	public Map<String, Map<String, Long>> getCollectionJobStatistics();
+	public StatisticsSnapshot getCollectedStatistics(String jobName);
+	
+	// Each collection publishes an immutable snapshot (with a version incremented at each publication)
+	public long getSnapshotVersion();
+	public StatisticsSnapshot getLatestSnapshot();
+	public StatisticsSnapshot getSnapshot(String serverName, String osbResourceType, String resourceType, String statisticType);
+	
+	// Same snapshots in a compact binary form (decoded with wlosbstats.snapshot.SnapshotCodec)
+	public byte[] getSnapshotBytes();
+	public byte[] getSnapshotBytes(String serverName, String osbResourceType, String resourceType, String statisticType);
+	
+	// Only the statistics changed since a version known by the client, for the query of this version (all the statistics if the client is too far behind : the query must then be given)
+	public StatisticsDelta getChangesSince(long version);
+	public StatisticsDelta getChangesSince(String serverName, String osbResourceType, String resourceType, String statisticType, long version);
+	
+	// Top-N services of an OSB type for a metric (order is DESC or ASC), computed once per snapshot version
+	public ServiceRanking getTopN(String osbResourceType, String metricName, int n, String order);
+	
+	// Last samples of a statistic (kept in memory for each collected query)
+	public StatisticHistory getHistory(String serviceName, String resourceStatisticName, String statisticName, long fromMillis);
+	public StatisticHistory getHistory(String serverName, String osbResourceType, String resourceType, String statisticType, String serviceName, String resourceStatisticName, String statisticName, long fromMillis);
+	
+	// Latency percentiles (for example {95, 99}) of an interval statistic, estimated from the latency of each collection interval
+	public LatencyPercentiles getLatencyPercentiles(String serviceName, String resourceStatisticName, String statisticName, double[] percentiles, long fromMillis, long toMillis);
+	public LatencyPercentiles getLatencyPercentiles(String serverName, String osbResourceType, String resourceType, String statisticType, String serviceName, String resourceStatisticName, String statisticName, double[] percentiles, long fromMillis, long toMillis);
+	
+	// Statistics of the services deviating from their baseline (exponentially weighted mean and standard deviation)
+	public List<Anomaly> getAnomalies();
+	
+	// Alerting rules evaluated after each collection - JMX notifications are sent when a rule is raised or cleared (operator is '>', '<' or 'changed')
+	public void addAlertRule(String ruleName, String metricName, String operator, double threshold, double clearThreshold, String servicePattern);
+	public boolean removeAlertRule(String ruleName);
+	public List<String> getAlertRules();
+	
+	// Notification published after each snapshot : NONE, SUMMARY (version and changed services) or DELTA (also the changed values)
+	public String getSnapshotNotificationMode();
+	public void setSnapshotNotificationMode(String mode);
+	
+	// Long retention history (kept in memory-mapped files when wlosbstats.mappedHistoryEnabled is set)
+	public StatisticHistory getLongTermHistory(String serverName, String osbResourceType, String resourceType, String statisticType, String serviceName, String resourceStatisticName, String statisticName, long fromMillis, long toMillis);
+	
+	// The monitored Refs are cached - Forces them to be retrieved again (after an OSB session activation for example)
+	public void refreshMonitoredRefs();
+	
+	// State of the connection to the domain runtime of the admin server
+	public long getConnectionAgeMillis();
+	public long getConnectionReconnectCount();
+	public long getConnectionFailureCount();
+	public long getConnectingTimeMillis();
+	
+	// Number of calls, latency and failures of each ServiceDomainMBean method
+	public Map<String, Map<String, Long>> getServiceDomainCallMetrics();
+	
 	public Set<String> getOsbServiceList();
 	public Set<String> getOsbResourceStatisticList(String serviceName);
 	public Set<String> getOsbStatisticList(String serviceName, String resourceStatisticName);
 	public double getValueForOsbStatistic(String serviceName, String resourceStatisticName, String statisticName);
+	public boolean hasValueForOsbStatistic(String serviceName, String resourceStatisticName, String statisticName);
+	public VersionedValue getVersionedValueForOsbStatistic(String serviceName, String resourceStatisticName, String statisticName);
+	
+	// Same readers on a single snapshot : the services of a query come with the version of its snapshot, the next reads give this version
+	public VersionedNames getVersionedOsbServiceList(String serverName, String osbResourceType, String resourceType, String statisticType);
+	public Set<String> getOsbResourceStatisticList(long version, String serviceName);
+	public Set<String> getOsbStatisticList(long version, String serviceName, String resourceStatisticName);
+	public double getValueForOsbStatistic(long version, String serviceName, String resourceStatisticName, String statisticName);
+	public boolean hasValueForOsbStatistic(long version, String serviceName, String resourceStatisticName, String statisticName);
+	
+	// Several values with a single call : explicit list of statistics (aligned arrays) or wildcard patterns ('*' and '?')
+	public StatisticValues getValues(String[] serviceNames, String[] resourceStatisticNames, String[] statisticNames);
+	public StatisticValues getValuesMatching(String servicePattern, String resourceStatisticPattern, String statisticPattern);
+	public StatisticValues getValues(String serverName, String osbResourceType, String resourceType, String statisticType, String[] serviceNames, String[] resourceStatisticNames, String[] statisticNames);
+	public StatisticValues getValuesMatching(String serverName, String osbResourceType, String resourceType, String statisticType, String servicePattern, String resourceStatisticPattern, String statisticPattern);
 }
\ No newline at end of file
@@ -0,0 +1,80 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.notification;
+
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import javax.management.Notification;
+import javax.management.NotificationFilter;
+
+import wlosbstats.snapshot.NamePattern;
+
+/**
+ * Filter of the snapshot notifications on the OSB type of the query and on
+ * the names of the services which changed. The filter is serialized to the
+ * server by the remote JMX clients, so it only holds strings.
+ */
+public class SnapshotNotificationFilter implements NotificationFilter {
+
+	private static final long serialVersionUID = 1L;
+
+	// Members
+	private final String osbResourceType;
+	private final String servicePattern;
+	private transient Pattern pattern = null;
+
+	/**
+	 *
+	 * @param osbResourceType The OSB type of the query (null for all the types)
+	 * @param servicePattern Wildcard pattern ('*' and '?') of at least one changed service (null for all the snapshots)
+	 */
+	public SnapshotNotificationFilter(String osbResourceType, String servicePattern) {
+		this.osbResourceType = osbResourceType;
+		this.servicePattern = servicePattern;
+	}
+
+	/**
+	 * @return true for the snapshot notifications matching the OSB type and the service pattern
+	 */
+	public boolean isNotificationEnabled(Notification notification) {
+
+		if (!SnapshotNotifications.SNAPSHOT_PUBLISHED_TYPE.equals(notification.getType()) || !(notification.getUserData() instanceof Map)) {
+			return false;
+		}
+
+		Map<?, ?> userData = (Map<?, ?>) notification.getUserData();
+		if (osbResourceType != null && !osbResourceType.equals(userData.get(SnapshotNotifications.OSB_RESOURCE_TYPE_KEY))) {
+			return false;
+		}
+
+		if (servicePattern == null) {
+			return true;
+		}
+		if (pattern == null) {
+			pattern = NamePattern.toRegex(servicePattern);
+		}
+
+		Object serviceNames = userData.get(SnapshotNotifications.CHANGED_SERVICE_NAMES_KEY);
+		if (serviceNames instanceof String[]) {
+			for (String serviceName : (String[]) serviceNames) {
+				if (pattern.matcher(serviceName).matches()) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+}
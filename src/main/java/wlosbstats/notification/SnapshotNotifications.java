@@ -0,0 +1,101 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.notification;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import wlosbstats.snapshot.SnapshotDiff;
+import wlosbstats.snapshot.StatisticsDelta;
+import wlosbstats.snapshot.StatisticsSnapshot;
+
+/**
+ * Content of the notification published after each snapshot, so the consumers
+ * react to the collections instead of polling. The user data is a map of
+ * standard types (readable by any JMX client) : the version and scope of the
+ * snapshot, a summary of the changes since the previous snapshot of the same
+ * query and, in DELTA mode, the changed values themselves (see StatisticsDelta).
+ */
+public class SnapshotNotifications {
+
+	/**
+	 * Content of the notifications
+	 */
+	public enum Mode {
+		NONE, SUMMARY, DELTA
+	}
+
+	// Notification type
+	public final static String SNAPSHOT_PUBLISHED_TYPE = "wlosbstats.snapshot.published";
+
+	// Keys of the user data
+	public final static String VERSION_KEY = "version";
+	public final static String FROM_VERSION_KEY = "fromVersion";
+	public final static String CAPTURE_TIME_KEY = "captureTime";
+	public final static String SERVER_NAME_KEY = "serverName";
+	public final static String OSB_RESOURCE_TYPE_KEY = "osbResourceType";
+	public final static String RESOURCE_TYPE_KEY = "resourceType";
+	public final static String STATISTIC_TYPE_KEY = "statisticType";
+	public final static String VALUE_COUNT_KEY = "valueCount";
+	public final static String CHANGED_COUNT_KEY = "changedCount";
+	public final static String CHANGED_SERVICE_NAMES_KEY = "changedServiceNames";
+	public final static String REMOVED_SERVICE_NAMES_KEY = "removedServiceNames";
+	public final static String FULL_KEY = "full";
+	public final static String SERVICE_NAMES_KEY = "serviceNames";
+	public final static String RESOURCE_STATISTIC_NAMES_KEY = "resourceStatisticNames";
+	public final static String STATISTIC_NAMES_KEY = "statisticNames";
+	public final static String VALUES_KEY = "values";
+
+	/**
+	 *
+	 * @param previous The previous snapshot of the same query (null if none)
+	 * @param snapshot The published snapshot
+	 * @param mode SUMMARY or DELTA
+	 * @return The user data of the notification
+	 */
+	public static Map<String, Object> toUserData(StatisticsSnapshot previous, StatisticsSnapshot snapshot, Mode mode) {
+
+		StatisticsDelta delta = (previous != null && previous.getVersion() > 0) ? SnapshotDiff.diff(previous, snapshot) : SnapshotDiff.full(snapshot);
+
+		Set<String> changedServiceNames = new LinkedHashSet<>();
+		for (String serviceName : delta.getServiceNames()) {
+			changedServiceNames.add(serviceName);
+		}
+
+		Map<String, Object> userData = new HashMap<>();
+		userData.put(VERSION_KEY, snapshot.getVersion());
+		userData.put(FROM_VERSION_KEY, delta.getFromVersion());
+		userData.put(CAPTURE_TIME_KEY, snapshot.getCaptureTime());
+		userData.put(SERVER_NAME_KEY, snapshot.getServerName());
+		userData.put(OSB_RESOURCE_TYPE_KEY, snapshot.getOsbResourceType());
+		userData.put(RESOURCE_TYPE_KEY, snapshot.getResourceType());
+		userData.put(STATISTIC_TYPE_KEY, snapshot.getStatisticType());
+		userData.put(VALUE_COUNT_KEY, snapshot.columns().size());
+		userData.put(CHANGED_COUNT_KEY, delta.getValues().length);
+		userData.put(CHANGED_SERVICE_NAMES_KEY, changedServiceNames.toArray(new String[changedServiceNames.size()]));
+		userData.put(REMOVED_SERVICE_NAMES_KEY, delta.getRemovedServiceNames());
+		userData.put(FULL_KEY, delta.isFull());
+
+		if (mode == Mode.DELTA) {
+			userData.put(SERVICE_NAMES_KEY, delta.getServiceNames());
+			userData.put(RESOURCE_STATISTIC_NAMES_KEY, delta.getResourceStatisticNames());
+			userData.put(STATISTIC_NAMES_KEY, delta.getStatisticNames());
+			userData.put(VALUES_KEY, delta.getValues());
+		}
+		return userData;
+	}
+}
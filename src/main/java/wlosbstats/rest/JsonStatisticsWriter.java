@@ -0,0 +1,179 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.rest;
+
+import java.io.IOException;
+
+import org.codehaus.jackson.JsonGenerator;
+
+import wlosbstats.history.StatisticHistory;
+import wlosbstats.snapshot.ColumnarStatistics;
+import wlosbstats.snapshot.NamePattern;
+import wlosbstats.snapshot.ServiceRanking;
+import wlosbstats.snapshot.StatisticsDictionary;
+import wlosbstats.snapshot.StatisticsSnapshot;
+
+/**
+ * Writes the statistics as JSON with a streaming generator : the values are
+ * read from the columns of the snapshot and written one after the other, so
+ * no intermediate tree (nor the nested map of the snapshot) is built and the
+ * memory used doesn't depend on the number of services.
+ */
+public class JsonStatisticsWriter {
+
+	// Constants
+	private final static String VERSION_FIELD = "version";
+	private final static String CAPTURE_TIME_FIELD = "captureTime";
+	private final static String SERVER_NAME_FIELD = "serverName";
+	private final static String OSB_RESOURCE_TYPE_FIELD = "osbResourceType";
+	private final static String RESOURCE_TYPE_FIELD = "resourceType";
+	private final static String STATISTIC_TYPE_FIELD = "statisticType";
+	private final static String SERVICES_FIELD = "services";
+	private final static String SERVICE_NAME_FIELD = "serviceName";
+	private final static String RESOURCE_STATISTIC_NAME_FIELD = "resourceStatisticName";
+	private final static String STATISTIC_NAME_FIELD = "statisticName";
+	private final static String METRIC_NAME_FIELD = "metricName";
+	private final static String TIMESTAMPS_FIELD = "timestamps";
+	private final static String VALUES_FIELD = "values";
+	private final static String VALUE_FIELD = "value";
+
+	/**
+	 * Writes a snapshot as {"version":..., ..., "services":{service:{resourceStatistic:{statistic:value}}}}.
+	 * Only the values matching the 3 patterns are written (a service without any matching value is not written).
+	 *
+	 * @param generator
+	 * @param snapshot
+	 * @param services
+	 * @param resourceStatistics
+	 * @param statistics
+	 * @throws IOException
+	 */
+	public static void writeSnapshot(JsonGenerator generator, StatisticsSnapshot snapshot, NamePattern services, NamePattern resourceStatistics, NamePattern statistics) throws IOException {
+
+		generator.writeStartObject();
+		generator.writeNumberField(VERSION_FIELD, snapshot.getVersion());
+		generator.writeNumberField(CAPTURE_TIME_FIELD, snapshot.getCaptureTime());
+		generator.writeStringField(SERVER_NAME_FIELD, snapshot.getServerName());
+		generator.writeStringField(OSB_RESOURCE_TYPE_FIELD, snapshot.getOsbResourceType());
+		generator.writeStringField(RESOURCE_TYPE_FIELD, snapshot.getResourceType());
+		generator.writeStringField(STATISTIC_TYPE_FIELD, snapshot.getStatisticType());
+		generator.writeObjectFieldStart(SERVICES_FIELD);
+
+		// The rows are sorted by KEY : the values of a service (and of a resource statistic) are contiguous
+		ColumnarStatistics columns = snapshot.columns();
+		int currentServiceId = -1;
+		int currentResourceStatisticId = -1;
+
+		for (int row = 0; row < columns.size(); row++) {
+
+			long key = columns.getKey(row);
+			int serviceId = StatisticsDictionary.getServiceId(key);
+			int resourceStatisticId = StatisticsDictionary.getResourceStatisticId(key);
+			int metricId = StatisticsDictionary.getMetricId(key);
+
+			if (!services.matches(serviceId) || !resourceStatistics.matches(resourceStatisticId) || !statistics.matches(metricId)) {
+				continue;
+			}
+
+			if (serviceId != currentServiceId) {
+				if (currentServiceId != -1) {
+					generator.writeEndObject();
+					generator.writeEndObject();
+				}
+				generator.writeObjectFieldStart(StatisticsDictionary.SERVICES.getName(serviceId));
+				currentServiceId = serviceId;
+				currentResourceStatisticId = -1;
+			}
+
+			if (resourceStatisticId != currentResourceStatisticId) {
+				if (currentResourceStatisticId != -1) {
+					generator.writeEndObject();
+				}
+				generator.writeObjectFieldStart(StatisticsDictionary.RESOURCE_STATISTICS.getName(resourceStatisticId));
+				currentResourceStatisticId = resourceStatisticId;
+			}
+
+			generator.writeNumberField(StatisticsDictionary.METRICS.getName(metricId), columns.getValue(row));
+		}
+
+		if (currentServiceId != -1) {
+			generator.writeEndObject();
+			generator.writeEndObject();
+		}
+
+		generator.writeEndObject();
+		generator.writeEndObject();
+	}
+
+	/**
+	 * Writes a history as {"serviceName":..., ..., "timestamps":[...], "values":[...]}.
+	 *
+	 * @param generator
+	 * @param history
+	 * @throws IOException
+	 */
+	public static void writeHistory(JsonGenerator generator, StatisticHistory history) throws IOException {
+
+		generator.writeStartObject();
+		generator.writeStringField(SERVICE_NAME_FIELD, history.getServiceName());
+		generator.writeStringField(RESOURCE_STATISTIC_NAME_FIELD, history.getResourceStatisticName());
+		generator.writeStringField(STATISTIC_NAME_FIELD, history.getStatisticName());
+
+		generator.writeArrayFieldStart(TIMESTAMPS_FIELD);
+		for (long timestamp : history.getTimestamps()) {
+			generator.writeNumber(timestamp);
+		}
+		generator.writeEndArray();
+
+		generator.writeArrayFieldStart(VALUES_FIELD);
+		for (double value : history.getValues()) {
+			generator.writeNumber(value);
+		}
+		generator.writeEndArray();
+
+		generator.writeEndObject();
+	}
+
+	/**
+	 * Writes a ranking as {"version":..., "metricName":..., "services":[{"serviceName":..., "resourceStatisticName":..., "value":...}]}.
+	 *
+	 * @param generator
+	 * @param ranking
+	 * @throws IOException
+	 */
+	public static void writeRanking(JsonGenerator generator, ServiceRanking ranking) throws IOException {
+
+		generator.writeStartObject();
+		generator.writeNumberField(VERSION_FIELD, ranking.getVersion());
+		generator.writeNumberField(CAPTURE_TIME_FIELD, ranking.getCaptureTime());
+		generator.writeStringField(METRIC_NAME_FIELD, ranking.getMetricName());
+
+		String[] serviceNames = ranking.getServiceNames();
+		String[] resourceStatisticNames = ranking.getResourceStatisticNames();
+		double[] values = ranking.getValues();
+
+		generator.writeArrayFieldStart(SERVICES_FIELD);
+		for (int i = 0; i < serviceNames.length; i++) {
+			generator.writeStartObject();
+			generator.writeStringField(SERVICE_NAME_FIELD, serviceNames[i]);
+			generator.writeStringField(RESOURCE_STATISTIC_NAME_FIELD, resourceStatisticNames[i]);
+			generator.writeNumberField(VALUE_FIELD, values[i]);
+			generator.writeEndObject();
+		}
+		generator.writeEndArray();
+
+		generator.writeEndObject();
+	}
+}
@@ -0,0 +1,89 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.rest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import javax.servlet.ServletContext;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+
+import wlosbstats.mbeans.WLOsbStats;
+import wlosbstats.snapshot.SerializedSnapshotCache;
+import wlosbstats.snapshot.StatisticsSnapshot;
+
+/**
+ * REST resource (served under /wlosbstats/rest/metrics, HTTPS and BASIC
+ * authentication with the read-only Monitor role) exposing the last snapshot of
+ * each collected query in the Prometheus text format, to be scraped. The
+ * samples are rendered once per published version (shared by all the
+ * scrapers) and the version is the ETag of the response.
+ */
+@Path("/metrics")
+public class MetricsResource {
+
+	// Members
+	@Context
+	private ServletContext servletContext;
+
+	// Constants
+	private final static PrometheusExposition EXPOSITION = new PrometheusExposition();
+
+	/**
+	 * @param request
+	 * @return The samples of all the collected queries
+	 */
+	@GET
+	@Produces(PrometheusExposition.CONTENT_TYPE)
+	public Response getMetrics(@Context Request request) {
+
+		// Each publication increments the version : the highest version identifies the set of the last snapshots
+		// (the snapshots are read once so the ETag, the cache key and the content always match)
+		WLOsbStats mbean = RestSupport.getMBean(servletContext);
+		final List<StatisticsSnapshot> snapshots = mbean.getAllLatestSnapshots();
+		long version = 0;
+		for (StatisticsSnapshot snapshot : snapshots) {
+			version = Math.max(version, snapshot.getVersion());
+		}
+
+		EntityTag entityTag = RestSupport.toEntityTag(mbean, version);
+		Response notModified = RestSupport.notModified(request, entityTag);
+		if (notModified != null) {
+			return notModified;
+		}
+
+		byte[] bytes;
+		try {
+			bytes = mbean.getSerializedSnapshots().get(SerializedSnapshotCache.FORMAT_PROMETHEUS, SerializedSnapshotCache.ALL_QUERIES, version, new SerializedSnapshotCache.Serializer() {
+				public byte[] serialize() throws IOException {
+					ByteArrayOutputStream output = new ByteArrayOutputStream();
+					EXPOSITION.write(snapshots, output);
+					return output.toByteArray();
+				}
+			});
+		} catch (IOException ex) {
+			throw new WebApplicationException(ex);
+		}
+		return Response.ok(bytes).tag(entityTag).build();
+	}
+}
@@ -0,0 +1,347 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import wlosbstats.snapshot.ColumnarStatistics;
+import wlosbstats.snapshot.MetricCatalog;
+import wlosbstats.snapshot.NameDictionary;
+import wlosbstats.snapshot.StatisticsDictionary;
+import wlosbstats.snapshot.StatisticsSnapshot;
+
+/**
+ * Writes the snapshots in the Prometheus text exposition format (one sample
+ * per value, labelled with the server, OSB type, resource type, statistic
+ * type, service, resource statistic and statistic). The labels of the query
+ * (the scope) are all rendered, so two queries never give the same label set.
+ * The cumulative facets (count and sum since the last reset of the statistics)
+ * are exposed as a counter family, all the other values as a gauge family. The labels are rendered to bytes once :
+ * the prefix of each service of a query when the service first appears in
+ * the catalog, the label of each resource statistic and statistic when its
+ * name first appears. A scrape then only copies these bytes and formats the
+ * values into a single buffer.
+ */
+public class PrometheusExposition {
+
+	// Members
+	private final ConcurrentMap<String, ServicePrefixes> servicePrefixes = new ConcurrentHashMap<>();
+	private final LabelCache resourceStatisticLabels = new NameLabels(RESOURCE_LABEL, StatisticsDictionary.RESOURCE_STATISTICS, "");
+	private final LabelCache statisticLabels = new NameLabels(STATISTIC_LABEL, StatisticsDictionary.METRICS, "} ");
+
+	// Constants
+	public final static String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+	private final static Charset UTF8 = Charset.forName("UTF-8");
+	private final static String GAUGE_NAME = "osb_service_statistic";
+	private final static String COUNTER_NAME = "osb_service_statistic_total";
+	private final static byte[] GAUGE_HEADER = ("# HELP " + GAUGE_NAME + " Statistics of the OSB services collected by wlosbstats\n# TYPE " + GAUGE_NAME + " gauge\n").getBytes(UTF8);
+	private final static byte[] COUNTER_HEADER = ("# HELP " + COUNTER_NAME + " Cumulative statistics (counts and sums) of the OSB services collected by wlosbstats\n# TYPE " + COUNTER_NAME + " counter\n").getBytes(UTF8);
+	private final static byte[] GAUGE_NAME_BYTES = GAUGE_NAME.getBytes(UTF8);
+	private final static byte[] COUNTER_NAME_BYTES = COUNTER_NAME.getBytes(UTF8);
+	private final static String SERVER_LABEL = "server";
+	private final static String OSB_TYPE_LABEL = "osb_type";
+	private final static String RESOURCE_TYPE_LABEL = "resource_type";
+	private final static String STATISTIC_TYPE_LABEL = "statistic_type";
+	private final static String SERVICE_LABEL = "service";
+	private final static String RESOURCE_LABEL = "resource";
+	private final static String STATISTIC_LABEL = "statistic";
+	private final static int BUFFER_SIZE = 16 * 1024;
+	private final static int INITIAL_LABELS = 256;
+	private final static double MAX_INTEGRAL_VALUE = 1e15;
+
+	/**
+	 * Writes the samples of the snapshots.
+	 *
+	 * @param snapshots The last snapshot of each query
+	 * @param output
+	 * @throws IOException
+	 */
+	public void write(List<StatisticsSnapshot> snapshots, OutputStream output) throws IOException {
+
+		// The samples of a family must be grouped : one pass per family
+		ExpositionBuffer buffer = new ExpositionBuffer(output);
+		buffer.write(GAUGE_HEADER);
+		writeSamples(snapshots, false, GAUGE_NAME_BYTES, buffer);
+		buffer.write(COUNTER_HEADER);
+		writeSamples(snapshots, true, COUNTER_NAME_BYTES, buffer);
+		buffer.flush();
+	}
+
+	/**
+	 *
+	 * @param snapshots
+	 * @param cumulative true for the samples of the cumulative facets, false for the others
+	 * @param metricName
+	 * @param buffer
+	 * @throws IOException
+	 */
+	private void writeSamples(List<StatisticsSnapshot> snapshots, boolean cumulative, byte[] metricName, ExpositionBuffer buffer) throws IOException {
+
+		for (StatisticsSnapshot snapshot : snapshots) {
+
+			ColumnarStatistics columns = snapshot.columns();
+			if (columns.size() == 0) {
+				continue;
+			}
+
+			ServicePrefixes prefixes = getServicePrefixes(snapshot);
+			for (int row = 0; row < columns.size(); row++) {
+
+				long key = columns.getKey(row);
+				if (MetricCatalog.isCumulativeMetric(StatisticsDictionary.getMetricId(key)) != cumulative) {
+					continue;
+				}
+				buffer.write(metricName);
+				buffer.write(prefixes.get(StatisticsDictionary.getServiceId(key)));
+				buffer.write(resourceStatisticLabels.get(StatisticsDictionary.getResourceStatisticId(key)));
+				buffer.write(statisticLabels.get(StatisticsDictionary.getMetricId(key)));
+				buffer.writeValue(columns.getValue(row));
+				buffer.write((byte) '\n');
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param snapshot
+	 * @return The prefixes of the services of the query of the snapshot
+	 */
+	private ServicePrefixes getServicePrefixes(StatisticsSnapshot snapshot) {
+
+		String scopeKey = snapshot.scopeKey();
+		ServicePrefixes prefixes = servicePrefixes.get(scopeKey);
+		if (prefixes == null) {
+			prefixes = new ServicePrefixes(snapshot.getServerName(), snapshot.getOsbResourceType(), snapshot.getResourceType(), snapshot.getStatisticType());
+			ServicePrefixes existing = servicePrefixes.putIfAbsent(scopeKey, prefixes);
+			if (existing != null) {
+				prefixes = existing;
+			}
+		}
+		return prefixes;
+	}
+
+	/**
+	 *
+	 * @param builder
+	 * @param name
+	 * @param value
+	 * @return The builder with name="value" appended (the value is escaped)
+	 */
+	private static StringBuilder appendLabel(StringBuilder builder, String name, String value) {
+
+		builder.append(name).append("=\"");
+		if (value != null) {
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				if (c == '\\' || c == '"') {
+					builder.append('\\').append(c);
+				} else if (c == '\n') {
+					builder.append("\\n");
+				} else {
+					builder.append(c);
+				}
+			}
+		}
+		return builder.append('"');
+	}
+
+	/**
+	 * Labels rendered once per id (the ids of the dictionaries are never reused,
+	 * so a rendered label stays valid; a lost race only renders it twice)
+	 */
+	private abstract static class LabelCache {
+
+		private volatile AtomicReferenceArray<byte[]> labels = new AtomicReferenceArray<>(INITIAL_LABELS);
+
+		/**
+		 *
+		 * @param id
+		 * @return The rendered label of the id
+		 */
+		byte[] get(int id) {
+
+			AtomicReferenceArray<byte[]> current = labels;
+			if (id >= current.length()) {
+				current = grow(id);
+			}
+
+			byte[] label = current.get(id);
+			if (label == null) {
+				label = render(id).getBytes(UTF8);
+				current.set(id, label);
+			}
+			return label;
+		}
+
+		/**
+		 *
+		 * @param id
+		 * @return The labels, large enough for the id
+		 */
+		private synchronized AtomicReferenceArray<byte[]> grow(int id) {
+
+			AtomicReferenceArray<byte[]> current = labels;
+			if (id < current.length()) {
+				return current;
+			}
+
+			AtomicReferenceArray<byte[]> grown = new AtomicReferenceArray<>(Math.max(id + 1, current.length() * 2));
+			for (int i = 0; i < current.length(); i++) {
+				grown.set(i, current.get(i));
+			}
+			labels = grown;
+			return grown;
+		}
+
+		/**
+		 *
+		 * @param id
+		 * @return The label of the id
+		 */
+		abstract String render(int id);
+	}
+
+	/**
+	 * Labels of each service of a query (after the name of the family) : {server="...",osb_type="...",resource_type="...",statistic_type="...",service="..."
+	 * (an empty server is the cluster, an empty statistic type is all the statistic types)
+	 */
+	private static class ServicePrefixes extends LabelCache {
+
+		private final String scopePrefix;
+
+		ServicePrefixes(String serverName, String osbResourceType, String resourceType, String statisticType) {
+			StringBuilder builder = new StringBuilder("{");
+			appendLabel(builder, SERVER_LABEL, serverName).append(',');
+			appendLabel(builder, OSB_TYPE_LABEL, osbResourceType).append(',');
+			appendLabel(builder, RESOURCE_TYPE_LABEL, resourceType).append(',');
+			appendLabel(builder, STATISTIC_TYPE_LABEL, statisticType).append(',');
+			this.scopePrefix = builder.toString();
+		}
+
+		String render(int serviceId) {
+			return appendLabel(new StringBuilder(scopePrefix), SERVICE_LABEL, StatisticsDictionary.SERVICES.getName(serviceId)).toString();
+		}
+	}
+
+	/**
+	 * Label of each name of a dictionary : ,name="..." followed by a suffix
+	 */
+	private static class NameLabels extends LabelCache {
+
+		private final String labelName;
+		private final NameDictionary dictionary;
+		private final String suffix;
+
+		NameLabels(String labelName, NameDictionary dictionary, String suffix) {
+			this.labelName = labelName;
+			this.dictionary = dictionary;
+			this.suffix = suffix;
+		}
+
+		String render(int id) {
+			return appendLabel(new StringBuilder(","), labelName, dictionary.getName(id)).append(suffix).toString();
+		}
+	}
+
+	/**
+	 * Buffer written to the output when it's full (the values are formatted
+	 * in place : no String is created for the integral values)
+	 */
+	private static class ExpositionBuffer {
+
+		private final OutputStream output;
+		private final byte[] buffer = new byte[BUFFER_SIZE];
+		private int position = 0;
+
+		ExpositionBuffer(OutputStream output) {
+			this.output = output;
+		}
+
+		void write(byte b) throws IOException {
+			if (position == buffer.length) {
+				flush();
+			}
+			buffer[position++] = b;
+		}
+
+		void write(byte[] bytes) throws IOException {
+			if (bytes.length > buffer.length - position) {
+				flush();
+				if (bytes.length > buffer.length) {
+					output.write(bytes);
+					return;
+				}
+			}
+			System.arraycopy(bytes, 0, buffer, position, bytes.length);
+			position += bytes.length;
+		}
+
+		void writeValue(double value) throws IOException {
+
+			if (Double.isNaN(value)) {
+				writeAscii("NaN");
+			} else if (Double.isInfinite(value)) {
+				writeAscii((value > 0) ? "+Inf" : "-Inf");
+			} else if (value == Math.rint(value) && Math.abs(value) < MAX_INTEGRAL_VALUE) {
+				writeLong((long) value);
+			} else {
+				writeAscii(Double.toString(value));
+			}
+		}
+
+		private void writeLong(long value) throws IOException {
+
+			// At most 16 digits and the sign (see MAX_INTEGRAL_VALUE)
+			if (buffer.length - position < 17) {
+				flush();
+			}
+			if (value < 0) {
+				buffer[position++] = '-';
+				value = -value;
+			}
+
+			int start = position;
+			do {
+				buffer[position++] = (byte) ('0' + (value % 10));
+				value /= 10;
+			} while (value > 0);
+
+			for (int i = start, j = position - 1; i < j; i++, j--) {
+				byte digit = buffer[i];
+				buffer[i] = buffer[j];
+				buffer[j] = digit;
+			}
+		}
+
+		private void writeAscii(String value) throws IOException {
+			for (int i = 0; i < value.length(); i++) {
+				write((byte) value.charAt(i));
+			}
+		}
+
+		void flush() throws IOException {
+			if (position > 0) {
+				output.write(buffer, 0, position);
+				position = 0;
+			}
+		}
+	}
+}
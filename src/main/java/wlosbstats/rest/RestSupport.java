@@ -0,0 +1,98 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.rest;
+
+import javax.servlet.ServletContext;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+
+import wlosbstats.mbeans.WLOsbStats;
+import wlosbstats.mbeans.WLOsbStatsMBeanRegistrar;
+import wlosbstats.util.AppLog;
+
+/**
+ * Helpers shared by the REST resources
+ */
+class RestSupport {
+
+	/**
+	 *
+	 * @param servletContext
+	 * @return The MBean registered by the application
+	 */
+	static WLOsbStats getMBean(ServletContext servletContext) {
+
+		WLOsbStats mbean = (servletContext != null) ? (WLOsbStats) servletContext.getAttribute(WLOsbStatsMBeanRegistrar.MBEAN_CONTEXT_ATTRIBUTE) : null;
+		if (mbean == null) {
+			AppLog.getLogger().warning("REST request received while the WLOsbStats MBean is not registered");
+			throw new WebApplicationException(Response.Status.SERVICE_UNAVAILABLE);
+		}
+		return mbean;
+	}
+
+	/**
+	 *
+	 * @param mbean
+	 * @param version The version of the snapshot of the response
+	 * @return The ETag of the response : epoch-version (the versions restart at 1 after a restart, the epoch doesn't)
+	 */
+	static EntityTag toEntityTag(WLOsbStats mbean, long version) {
+		return new EntityTag(mbean.getSnapshotEpoch() + "-" + version);
+	}
+
+	/**
+	 *
+	 * @param request
+	 * @param entityTag
+	 * @return The 304 response if the client already has this version (If-None-Match), else null
+	 */
+	static Response notModified(Request request, EntityTag entityTag) {
+		ResponseBuilder builder = request.evaluatePreconditions(entityTag);
+		return (builder != null) ? builder.tag(entityTag).build() : null;
+	}
+
+	/**
+	 *
+	 * @param name
+	 * @param value
+	 */
+	static void checkMandatory(String name, String value) {
+		if (isEmpty(value)) {
+			throw badRequest("Query parameter [" + name + "] is mandatory");
+		}
+	}
+
+	/**
+	 *
+	 * @param message
+	 * @return
+	 */
+	static WebApplicationException badRequest(String message) {
+		return new WebApplicationException(Response.status(Response.Status.BAD_REQUEST).entity(message).type(MediaType.TEXT_PLAIN).build());
+	}
+
+	/**
+	 *
+	 * @param value
+	 * @return
+	 */
+	static boolean isEmpty(String value) {
+		return (value == null || value.length() == 0);
+	}
+}
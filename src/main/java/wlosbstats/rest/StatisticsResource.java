@@ -0,0 +1,242 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.rest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.servlet.ServletContext;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+
+import wlosbstats.history.StatisticHistory;
+import wlosbstats.mbeans.WLOsbStats;
+import wlosbstats.snapshot.NamePattern;
+import wlosbstats.snapshot.SerializedSnapshotCache;
+import wlosbstats.snapshot.ServiceRanking;
+import wlosbstats.snapshot.StatisticsDictionary;
+import wlosbstats.snapshot.StatisticsSnapshot;
+
+/**
+ * REST resource (served under /rest/statistics) exposing the snapshots, the
+ * history and the Top-N of the MBean as JSON, so the statistics can be read
+ * without a t3 client. The JSON is streamed to the response while it's
+ * written (see JsonStatisticsWriter). The responses of the snapshots and of
+ * the Top-N carry the version of the snapshot as ETag, so a client sending it
+ * back (If-None-Match) gets a 304 until a new version is published.
+ */
+@Path("/statistics")
+@Produces(MediaType.APPLICATION_JSON)
+public class StatisticsResource {
+
+	// Members
+	@Context
+	private ServletContext servletContext;
+
+	// Constants
+	private final static JsonFactory JSON_FACTORY = new JsonFactory().configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+	private final static String PATTERN_SEPARATOR = ",";
+
+	/**
+	 * Last published snapshot (of the query if the OSB type is set).
+	 * For example /rest/statistics/snapshot?osbType=osb_ps&amp;resourceType=service&amp;services=Order*&amp;fields=message-count_count,error-count_count
+	 *
+	 * @param serverName The server (if not set, the cluster)
+	 * @param osbResourceType The OSB type (if not set, the last published snapshot whatever its query)
+	 * @param resourceType Mandatory if the OSB type is set
+	 * @param statisticType The statistic type (if not set, all the types)
+	 * @param services Wildcard patterns of the services (separated by ',')
+	 * @param resourceStatistics Wildcard patterns of the resource statistics (separated by ',')
+	 * @param fields Wildcard patterns of the statistics (separated by ',')
+	 * @param request
+	 * @return The snapshot (serialized once per version if there is no filter)
+	 */
+	@GET
+	@Path("/snapshot")
+	public Response getSnapshot(@QueryParam("server") String serverName, @QueryParam("osbType") String osbResourceType, @QueryParam("resourceType") String resourceType, @QueryParam("statisticType") String statisticType,
+			@QueryParam("services") String services, @QueryParam("resources") String resourceStatistics, @QueryParam("fields") String fields, @Context Request request) {
+
+		WLOsbStats mbean = RestSupport.getMBean(servletContext);
+		final StatisticsSnapshot snapshot;
+		if (RestSupport.isEmpty(osbResourceType)) {
+			snapshot = mbean.getLatestSnapshot();
+		} else {
+			RestSupport.checkMandatory("resourceType", resourceType);
+			snapshot = mbean.getSnapshot(serverName, osbResourceType, resourceType, statisticType);
+		}
+
+		EntityTag entityTag = RestSupport.toEntityTag(mbean, snapshot.getVersion());
+		Response notModified = RestSupport.notModified(request, entityTag);
+		if (notModified != null) {
+			return notModified;
+		}
+
+		if (RestSupport.isEmpty(services) && RestSupport.isEmpty(resourceStatistics) && RestSupport.isEmpty(fields)) {
+			byte[] bytes;
+			try {
+				bytes = mbean.getSerializedSnapshots().get(SerializedSnapshotCache.FORMAT_JSON, snapshot.scopeKey(), snapshot.getVersion(), new SerializedSnapshotCache.Serializer() {
+					public byte[] serialize() throws IOException {
+						ByteArrayOutputStream output = new ByteArrayOutputStream();
+						writeSnapshot(output, snapshot, new NamePattern((String) null, StatisticsDictionary.SERVICES), new NamePattern((String) null, StatisticsDictionary.RESOURCE_STATISTICS), new NamePattern((String) null, StatisticsDictionary.METRICS));
+						return output.toByteArray();
+					}
+				});
+			} catch (IOException ex) {
+				throw new WebApplicationException(ex);
+			}
+			return Response.ok(bytes).tag(entityTag).build();
+		}
+
+		final NamePattern servicePattern = new NamePattern(toWildcards(services), StatisticsDictionary.SERVICES);
+		final NamePattern resourceStatisticPattern = new NamePattern(toWildcards(resourceStatistics), StatisticsDictionary.RESOURCE_STATISTICS);
+		final NamePattern statisticPattern = new NamePattern(toWildcards(fields), StatisticsDictionary.METRICS);
+
+		return Response.ok(new StreamingOutput() {
+			public void write(OutputStream output) throws IOException {
+				writeSnapshot(output, snapshot, servicePattern, resourceStatisticPattern, statisticPattern);
+			}
+		}).tag(entityTag).build();
+	}
+
+	/**
+	 * History of a statistic (of the query if the OSB type is set).
+	 * For example /rest/statistics/history?service=OrderPS&amp;resourceStatistic=Transport&amp;statistic=response-time_average
+	 *
+	 * @param serverName The server (if not set, the cluster)
+	 * @param osbResourceType The OSB type (if not set, the most recently collected query containing the statistic)
+	 * @param resourceType Mandatory if the OSB type is set
+	 * @param statisticType The statistic type (if not set, all the types)
+	 * @param serviceName
+	 * @param resourceStatisticName
+	 * @param statisticName
+	 * @param fromMillis Only the samples captured at or after this time are returned
+	 * @return
+	 */
+	@GET
+	@Path("/history")
+	public Response getHistory(@QueryParam("server") String serverName, @QueryParam("osbType") String osbResourceType, @QueryParam("resourceType") String resourceType, @QueryParam("statisticType") String statisticType,
+			@QueryParam("service") String serviceName, @QueryParam("resourceStatistic") String resourceStatisticName, @QueryParam("statistic") String statisticName, @QueryParam("from") @DefaultValue("0") long fromMillis) {
+
+		RestSupport.checkMandatory("service", serviceName);
+		RestSupport.checkMandatory("resourceStatistic", resourceStatisticName);
+		RestSupport.checkMandatory("statistic", statisticName);
+
+		WLOsbStats mbean = RestSupport.getMBean(servletContext);
+		final StatisticHistory history;
+		if (RestSupport.isEmpty(osbResourceType)) {
+			history = mbean.getHistory(serviceName, resourceStatisticName, statisticName, fromMillis);
+		} else {
+			RestSupport.checkMandatory("resourceType", resourceType);
+			history = mbean.getHistory(serverName, osbResourceType, resourceType, statisticType, serviceName, resourceStatisticName, statisticName, fromMillis);
+		}
+
+		return Response.ok(new StreamingOutput() {
+			public void write(OutputStream output) throws IOException {
+				JsonGenerator generator = JSON_FACTORY.createJsonGenerator(output, JsonEncoding.UTF8);
+				JsonStatisticsWriter.writeHistory(generator, history);
+				generator.close();
+			}
+		}).build();
+	}
+
+	/**
+	 * Top-N services of an OSB type for a metric.
+	 * For example /rest/statistics/top?osbType=osb_ps&amp;metric=response-time_average&amp;n=20
+	 *
+	 * @param osbResourceType
+	 * @param metricName
+	 * @param n
+	 * @param order DESC (highest values first) or ASC
+	 * @param request
+	 * @return
+	 */
+	@GET
+	@Path("/top")
+	public Response getTopN(@QueryParam("osbType") String osbResourceType, @QueryParam("metric") String metricName, @QueryParam("n") @DefaultValue("10") int n, @QueryParam("order") String order, @Context Request request) {
+
+		RestSupport.checkMandatory("osbType", osbResourceType);
+		RestSupport.checkMandatory("metric", metricName);
+
+		WLOsbStats mbean = RestSupport.getMBean(servletContext);
+		final ServiceRanking ranking;
+		try {
+			ranking = mbean.getTopN(osbResourceType, metricName, n, order);
+		} catch (IllegalArgumentException ex) {
+			throw RestSupport.badRequest(ex.getMessage());
+		}
+
+		EntityTag entityTag = RestSupport.toEntityTag(mbean, ranking.getVersion());
+		Response notModified = RestSupport.notModified(request, entityTag);
+		if (notModified != null) {
+			return notModified;
+		}
+
+		return Response.ok(new StreamingOutput() {
+			public void write(OutputStream output) throws IOException {
+				JsonGenerator generator = JSON_FACTORY.createJsonGenerator(output, JsonEncoding.UTF8);
+				JsonStatisticsWriter.writeRanking(generator, ranking);
+				generator.close();
+			}
+		}).tag(entityTag).build();
+	}
+
+	/**
+	 *
+	 * @param output
+	 * @param snapshot
+	 * @param services
+	 * @param resourceStatistics
+	 * @param statistics
+	 * @throws IOException
+	 */
+	private static void writeSnapshot(OutputStream output, StatisticsSnapshot snapshot, NamePattern services, NamePattern resourceStatistics, NamePattern statistics) throws IOException {
+		JsonGenerator generator = JSON_FACTORY.createJsonGenerator(output, JsonEncoding.UTF8);
+		JsonStatisticsWriter.writeSnapshot(generator, snapshot, services, resourceStatistics, statistics);
+		generator.close();
+	}
+
+	/**
+	 *
+	 * @param patterns
+	 * @return The wildcard patterns (null if not set : all the names match)
+	 */
+	private static String[] toWildcards(String patterns) {
+
+		if (RestSupport.isEmpty(patterns)) {
+			return null;
+		}
+
+		String[] wildcards = patterns.split(PATTERN_SEPARATOR);
+		for (int i = 0; i < wildcards.length; i++) {
+			wildcards[i] = wildcards[i].trim();
+		}
+		return wildcards;
+	}
+}
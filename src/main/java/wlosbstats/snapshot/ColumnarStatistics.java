@@ -0,0 +1,215 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.snapshot;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import wlosbstats.util.LongIntHashMap;
+
+/**
+ * Statistics of a snapshot stored as two columns : the KEY of each value (ids
+ * of the service, resource statistic and metric packed in a long, see
+ * StatisticsDictionary) and the value itself. The rows are sorted by KEY so
+ * the values of a service (and of a resource statistic) are contiguous. The
+ * nested map representation used by the MBean API is only built on demand.
+ * A hash index from the KEY to its row is built at the first lookup, so a
+ * value (present or not) is found in constant time without any allocation.
+ */
+public class ColumnarStatistics {
+
+	// Members
+	private final long[] keys;
+	private final double[] values;
+	private final int size;
+	private volatile LongIntHashMap index = null;
+
+	// Constants
+	public final static ColumnarStatistics EMPTY = new ColumnarStatistics(new long[0], new double[0], 0);
+
+	/**
+	 *
+	 * @param keys (sorted, no duplicate)
+	 * @param values
+	 * @param size
+	 */
+	ColumnarStatistics(long[] keys, double[] values, int size) {
+		this.keys = keys;
+		this.values = values;
+		this.size = size;
+	}
+
+	/**
+	 * @return The number of values
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 *
+	 * @param row
+	 * @return The KEY of the row
+	 */
+	public long getKey(int row) {
+		return keys[row];
+	}
+
+	/**
+	 *
+	 * @param row
+	 * @return The value of the row
+	 */
+	public double getValue(int row) {
+		return values[row];
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @return The row of the KEY or -1 if absent
+	 */
+	public int indexOf(long key) {
+		return (key >= 0) ? getIndex().get(key) : -1;
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @return true if the snapshot has a value for the KEY
+	 */
+	public boolean contains(long key) {
+		return indexOf(key) >= 0;
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @param defaultValue
+	 * @return The value of the KEY or defaultValue if absent
+	 */
+	public double getValue(long key, double defaultValue) {
+		int row = indexOf(key);
+		return (row >= 0) ? values[row] : defaultValue;
+	}
+
+	/**
+	 *
+	 * @param metricId
+	 * @return true if at least one value of the metric is present (stops at the first one)
+	 */
+	public boolean hasMetric(int metricId) {
+
+		if (metricId >= 0) {
+			for (int row = 0; row < size; row++) {
+				if (StatisticsDictionary.getMetricId(keys[row]) == metricId) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return The index from the KEY to the row (built once, then read-only)
+	 */
+	private LongIntHashMap getIndex() {
+
+		LongIntHashMap currentIndex = index;
+		if (currentIndex == null) {
+			synchronized (this) {
+				currentIndex = index;
+				if (currentIndex == null) {
+					currentIndex = new LongIntHashMap(size);
+					for (int row = 0; row < size; row++) {
+						currentIndex.put(keys[row], row);
+					}
+					index = currentIndex;
+				}
+			}
+		}
+		return currentIndex;
+	}
+
+	/**
+	 * Builds the nested map representation (read-only)
+	 *
+	 * The KEY is the NAME of the SERVICE
+	 * The CONTENT is a MAP object having :
+	 *    The KEY is the NAME of the ResourceStatistic object
+	 *    The CONTENT is a MAP object having :
+	 *        The KEY is the NAME of the StatisticValue object
+	 *        The CONTENT is the VALUE of the StatisticValue object
+	 *
+	 * @return
+	 */
+	public Map<String, Map<String, Map<String, Double>>> toMap() {
+
+		Map<String, Map<String, Map<String, Double>>> services = new LinkedHashMap<>();
+		Map<String, Map<String, Double>> resourceStatistics = null;
+		Map<String, Double> statistics = null;
+		int currentServiceId = -1;
+		long currentGroup = -1;
+
+		for (int row = 0; row < size; row++) {
+
+			long key = keys[row];
+			int serviceId = StatisticsDictionary.getServiceId(key);
+			if (serviceId != currentServiceId) {
+				resourceStatistics = new LinkedHashMap<>();
+				services.put(StatisticsDictionary.SERVICES.getName(serviceId), Collections.unmodifiableMap(resourceStatistics));
+				currentServiceId = serviceId;
+			}
+
+			long group = StatisticsDictionary.getGroup(key);
+			if (group != currentGroup) {
+				statistics = new LinkedHashMap<>();
+				resourceStatistics.put(StatisticsDictionary.RESOURCE_STATISTICS.getName(StatisticsDictionary.getResourceStatisticId(key)), Collections.unmodifiableMap(statistics));
+				currentGroup = group;
+			}
+
+			statistics.put(StatisticsDictionary.METRICS.getName(StatisticsDictionary.getMetricId(key)), values[row]);
+		}
+		return Collections.unmodifiableMap(services);
+	}
+
+	/**
+	 * Builds the columns from the nested map representation
+	 *
+	 * @param statistics
+	 * @return
+	 */
+	public static ColumnarStatistics fromMap(Map<String, Map<String, Map<String, Double>>> statistics) {
+
+		if (statistics == null || statistics.size() == 0) {
+			return EMPTY;
+		}
+
+		ColumnarStatisticsBuilder builder = new ColumnarStatisticsBuilder();
+		for (Map.Entry<String, Map<String, Map<String, Double>>> service : statistics.entrySet()) {
+
+			int serviceId = StatisticsDictionary.SERVICES.getId(service.getKey());
+			for (Map.Entry<String, Map<String, Double>> resourceStatistic : service.getValue().entrySet()) {
+
+				int resourceStatisticId = StatisticsDictionary.RESOURCE_STATISTICS.getId(resourceStatistic.getKey());
+				for (Map.Entry<String, Double> statistic : resourceStatistic.getValue().entrySet()) {
+					builder.add(serviceId, resourceStatisticId, StatisticsDictionary.METRICS.getId(statistic.getKey()), statistic.getValue().doubleValue());
+				}
+			}
+		}
+		return builder.build();
+	}
+}
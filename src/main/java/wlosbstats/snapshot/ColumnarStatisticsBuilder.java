@@ -0,0 +1,187 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.snapshot;
+
+import java.util.Arrays;
+
+/**
+ * Accumulates the values of a collection in growable primitive columns and
+ * builds the (sorted) ColumnarStatistics. Not thread-safe.
+ */
+public class ColumnarStatisticsBuilder {
+
+	// Members
+	private long[] keys;
+	private double[] values;
+	private int size = 0;
+
+	// Constants
+	private final static int INITIAL_CAPACITY = 1024;
+
+	public ColumnarStatisticsBuilder() {
+		this(INITIAL_CAPACITY);
+	}
+
+	/**
+	 *
+	 * @param capacity The expected number of values
+	 */
+	public ColumnarStatisticsBuilder(int capacity) {
+		keys = new long[Math.max(16, capacity)];
+		values = new double[keys.length];
+	}
+
+	/**
+	 *
+	 * @param serviceId
+	 * @param resourceStatisticId
+	 * @param metricId
+	 * @param value
+	 */
+	public void add(int serviceId, int resourceStatisticId, int metricId, double value) {
+		add(StatisticsDictionary.toKey(serviceId, resourceStatisticId, metricId), value);
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @param value
+	 */
+	public void add(long key, double value) {
+
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			values = Arrays.copyOf(values, size * 2);
+		}
+		keys[size] = key;
+		values[size] = value;
+		size++;
+	}
+
+	/**
+	 * Adds all the values of existing statistics
+	 *
+	 * @param statistics
+	 */
+	public void addAll(ColumnarStatistics statistics) {
+		for (int row = 0; row < statistics.size(); row++) {
+			add(statistics.getKey(row), statistics.getValue(row));
+		}
+	}
+
+	/**
+	 * @return The number of values added
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Sorts the rows by KEY (when a KEY has been added several times, only one of the values is kept)
+	 *
+	 * @return
+	 */
+	public ColumnarStatistics build() {
+
+		if (size == 0) {
+			return ColumnarStatistics.EMPTY;
+		}
+
+		sort(0, size - 1);
+
+		// Remove the duplicates
+		int distinct = 1;
+		for (int row = 1; row < size; row++) {
+			if (keys[row] != keys[distinct - 1]) {
+				keys[distinct] = keys[row];
+				values[distinct] = values[row];
+				distinct++;
+			} else {
+				values[distinct - 1] = values[row];
+			}
+		}
+
+		return new ColumnarStatistics(Arrays.copyOf(keys, distinct), Arrays.copyOf(values, distinct), distinct);
+	}
+
+	/**
+	 * Sorts the two columns by KEY (the values are most of the time already sorted by service)
+	 *
+	 * @param low
+	 * @param high
+	 */
+	private void sort(int low, int high) {
+
+		while (low < high) {
+
+			// Small ranges : insertion sort
+			if (high - low < 16) {
+				for (int i = low + 1; i <= high; i++) {
+					long key = keys[i];
+					double value = values[i];
+					int j = i - 1;
+					while (j >= low && keys[j] > key) {
+						keys[j + 1] = keys[j];
+						values[j + 1] = values[j];
+						j--;
+					}
+					keys[j + 1] = key;
+					values[j + 1] = value;
+				}
+				return;
+			}
+
+			long pivot = keys[(low + high) >>> 1];
+			int i = low;
+			int j = high;
+			while (i <= j) {
+				while (keys[i] < pivot) {
+					i++;
+				}
+				while (keys[j] > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					swap(i, j);
+					i++;
+					j--;
+				}
+			}
+
+			// Recursion on the smallest part (bounded stack)
+			if (j - low < high - i) {
+				sort(low, j);
+				low = i;
+			} else {
+				sort(i, high);
+				high = j;
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param i
+	 * @param j
+	 */
+	private void swap(int i, int j) {
+		long key = keys[i];
+		keys[i] = keys[j];
+		keys[j] = key;
+		double value = values[i];
+		values[i] = values[j];
+		values[j] = value;
+	}
+}
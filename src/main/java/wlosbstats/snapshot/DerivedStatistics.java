@@ -0,0 +1,178 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.snapshot;
+
+import wlosbstats.util.MonitorProperties;
+
+import com.bea.wli.monitoring.StatisticType;
+
+/**
+ * Computes the values derived from two consecutive snapshots of the same query
+ * (rates, error ratio, latency average and count over the interval) so the consumers
+ * don't have to diff the cumulative values themselves. A counter lower than in
+ * the previous snapshot is considered as reset (the statistics of OSB have been
+ * reset) : its current value is then the delta.
+ */
+public class DerivedStatistics {
+
+	// Interval statistics for which the average over the collection interval is computed
+	private final static String[] INTERVAL_STATISTICS = {
+		MonitorProperties.OSB_RESPONSE_TIME_INTERVAL_PROPERTY,
+		MonitorProperties.OSB_ELAPSED_TIME_INTERVAL_PROPERTY,
+		MonitorProperties.OSB_THROTTLING_TIME_INTERVAL_PROPERTY
+	};
+
+	// Metric ids
+	private final static int MESSAGE_COUNT_ID = MetricCatalog.getMetricId(StatisticType.COUNT, MonitorProperties.OSB_MESSAGE_COUNT_PROPERTY, MetricCatalog.COUNT_COUNT_FACET);
+	private final static int ERROR_COUNT_ID = MetricCatalog.getMetricId(StatisticType.COUNT, MonitorProperties.OSB_ERROR_COUNT_PROPERTY, MetricCatalog.COUNT_COUNT_FACET);
+	private final static int MESSAGE_RATE_ID = StatisticsDictionary.METRICS.getId(MonitorProperties.OSB_MESSAGE_COUNT_PROPERTY + MonitorProperties.OSB_DERIVED_PROPERTY_RATE);
+	private final static int ERROR_RATE_ID = StatisticsDictionary.METRICS.getId(MonitorProperties.OSB_ERROR_COUNT_PROPERTY + MonitorProperties.OSB_DERIVED_PROPERTY_RATE);
+	private final static int ERROR_RATIO_ID = StatisticsDictionary.METRICS.getId(MonitorProperties.OSB_ERROR_RATIO_PROPERTY);
+	private final static int[] INTERVAL_COUNT_IDS = new int[INTERVAL_STATISTICS.length];
+	private final static int[] INTERVAL_SUM_IDS = new int[INTERVAL_STATISTICS.length];
+	private final static int[] INTERVAL_AVERAGE_IDS = new int[INTERVAL_STATISTICS.length];
+	private final static int[] INTERVAL_COUNT_DELTA_IDS = new int[INTERVAL_STATISTICS.length];
+	static {
+		for (int i = 0; i < INTERVAL_STATISTICS.length; i++) {
+			INTERVAL_COUNT_IDS[i] = MetricCatalog.getMetricId(StatisticType.INTERVAL, INTERVAL_STATISTICS[i], MetricCatalog.INTERVAL_COUNT_FACET);
+			INTERVAL_SUM_IDS[i] = MetricCatalog.getMetricId(StatisticType.INTERVAL, INTERVAL_STATISTICS[i], MetricCatalog.INTERVAL_SUM_FACET);
+			INTERVAL_AVERAGE_IDS[i] = StatisticsDictionary.METRICS.getId(INTERVAL_STATISTICS[i] + MonitorProperties.OSB_STATISTIC_TYPE_INTERVAL_PROPERTY_INTERVAL_AVERAGE);
+			INTERVAL_COUNT_DELTA_IDS[i] = StatisticsDictionary.METRICS.getId(INTERVAL_STATISTICS[i] + MonitorProperties.OSB_STATISTIC_TYPE_INTERVAL_PROPERTY_INTERVAL_COUNT);
+		}
+	}
+
+	// Constants
+	private final static double ONE_SECOND_MILLIS = 1000d;
+
+	/**
+	 * Adds the derived values to the statistics of the new snapshot.
+	 *
+	 * @param current The statistics of the new snapshot
+	 * @param previous The statistics of the previous snapshot of the same query
+	 * @param elapsedMillis The time between the two captures
+	 * @return The statistics of the new snapshot with the derived values
+	 */
+	public static ColumnarStatistics addDerivedStatistics(ColumnarStatistics current, ColumnarStatistics previous, long elapsedMillis) {
+
+		if (current == null || previous == null || previous.size() == 0 || elapsedMillis <= 0) {
+			return current;
+		}
+
+		double elapsedSecs = elapsedMillis / ONE_SECOND_MILLIS;
+		ColumnarStatisticsBuilder builder = new ColumnarStatisticsBuilder(current.size() + (current.size() / 4));
+		builder.addAll(current);
+
+		// The rows of a resource statistic (same group) are contiguous
+		long currentGroup = -1;
+		for (int row = 0; row < current.size(); row++) {
+
+			long key = current.getKey(row);
+			long group = StatisticsDictionary.getGroup(key);
+			if (group != currentGroup) {
+				addDerivedValues(current, previous, key, elapsedSecs, builder);
+				currentGroup = group;
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 *
+	 * @param metricName
+	 * @return true if the metric is one of the derived values
+	 */
+	public static boolean isDerivedMetric(String metricName) {
+
+		int metricId = StatisticsDictionary.METRICS.findId(metricName);
+		if (metricId == NameDictionary.UNKNOWN) {
+			return false;
+		}
+		if (metricId == MESSAGE_RATE_ID || metricId == ERROR_RATE_ID || metricId == ERROR_RATIO_ID) {
+			return true;
+		}
+		for (int i = 0; i < INTERVAL_STATISTICS.length; i++) {
+			if (metricId == INTERVAL_AVERAGE_IDS[i] || metricId == INTERVAL_COUNT_DELTA_IDS[i]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 *
+	 * @param current
+	 * @param previous
+	 * @param groupKey Any KEY of the resource statistic
+	 * @param elapsedSecs
+	 * @param builder The derived values are added to it
+	 */
+	private static void addDerivedValues(ColumnarStatistics current, ColumnarStatistics previous, long groupKey, double elapsedSecs, ColumnarStatisticsBuilder builder) {
+
+		// -----------------------------------------------------
+		// Throughput and errors
+		double messages = getDelta(current, previous, StatisticsDictionary.withMetric(groupKey, MESSAGE_COUNT_ID));
+		double errors = getDelta(current, previous, StatisticsDictionary.withMetric(groupKey, ERROR_COUNT_ID));
+
+		if (!Double.isNaN(messages)) {
+			builder.add(StatisticsDictionary.withMetric(groupKey, MESSAGE_RATE_ID), messages / elapsedSecs);
+		}
+		if (!Double.isNaN(errors)) {
+			builder.add(StatisticsDictionary.withMetric(groupKey, ERROR_RATE_ID), errors / elapsedSecs);
+		}
+		if (!Double.isNaN(messages) && !Double.isNaN(errors)) {
+			builder.add(StatisticsDictionary.withMetric(groupKey, ERROR_RATIO_ID), (messages > 0) ? errors / messages : 0d);
+		}
+		// -----------------------------------------------------
+
+		// -----------------------------------------------------
+		// Latency over the interval (delta sum / delta count) and number of messages measured
+		// (no latency for an idle interval : 0 would be read as a 0 ms latency)
+		for (int i = 0; i < INTERVAL_STATISTICS.length; i++) {
+
+			double count = getDelta(current, previous, StatisticsDictionary.withMetric(groupKey, INTERVAL_COUNT_IDS[i]));
+			double sum = getDelta(current, previous, StatisticsDictionary.withMetric(groupKey, INTERVAL_SUM_IDS[i]));
+
+			if (!Double.isNaN(count) && !Double.isNaN(sum)) {
+				if (count > 0) {
+					builder.add(StatisticsDictionary.withMetric(groupKey, INTERVAL_AVERAGE_IDS[i]), sum / count);
+				}
+				builder.add(StatisticsDictionary.withMetric(groupKey, INTERVAL_COUNT_DELTA_IDS[i]), count);
+			}
+		}
+		// -----------------------------------------------------
+	}
+
+	/**
+	 *
+	 * @param current
+	 * @param previous
+	 * @param key
+	 * @return The increase of the counter (NaN if the counter is not part of both snapshots)
+	 */
+	private static double getDelta(ColumnarStatistics current, ColumnarStatistics previous, long key) {
+
+		int row = current.indexOf(key);
+		int previousRow = previous.indexOf(key);
+		if (row < 0 || previousRow < 0) {
+			return Double.NaN;
+		}
+
+		double value = current.getValue(row);
+		double delta = value - previous.getValue(previousRow);
+
+		// Counter reset between the two snapshots
+		return (delta < 0) ? value : delta;
+	}
+}
@@ -0,0 +1,199 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.snapshot;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import wlosbstats.util.AppLog;
+import wlosbstats.util.MonitorProperties;
+
+import com.bea.wli.monitoring.StatisticType;
+
+/**
+ * Catalog of the metrics produced by each StatisticValue : for a StatisticType
+ * and a statistic name, the ids (see StatisticsDictionary.METRICS) of each of
+ * its facets (count, min, max ... see the *_FACET constants). The catalog is
+ * built once from MonitorProperties so the keys ("response-time_min" ...) are
+ * never built during a collection; a statistic unknown to MonitorProperties is
+ * added to the catalog the first time it's found.
+ */
+public class MetricCatalog {
+
+	// Facets of the INTERVAL statistics
+	public final static int INTERVAL_COUNT_FACET = 0;
+	public final static int INTERVAL_MIN_FACET = 1;
+	public final static int INTERVAL_MAX_FACET = 2;
+	public final static int INTERVAL_AVERAGE_FACET = 3;
+	public final static int INTERVAL_SUM_FACET = 4;
+
+	// Facets of the COUNT statistics
+	public final static int COUNT_COUNT_FACET = 0;
+
+	// Facets of the STATUS statistics
+	public final static int STATUS_INITIAL_FACET = 0;
+	public final static int STATUS_CURRENT_FACET = 1;
+
+	// Suffix of each facet (in the order of the facet constants)
+	private final static Map<StatisticType, String[]> FACET_SUFFIXES = new EnumMap<>(StatisticType.class);
+	static {
+		FACET_SUFFIXES.put(StatisticType.INTERVAL, new String[] {
+			MonitorProperties.OSB_STATISTIC_TYPE_INTERVAL_PROPERTY_COUNT,
+			MonitorProperties.OSB_STATISTIC_TYPE_INTERVAL_PROPERTY_MIN,
+			MonitorProperties.OSB_STATISTIC_TYPE_INTERVAL_PROPERTY_MAX,
+			MonitorProperties.OSB_STATISTIC_TYPE_INTERVAL_PROPERTY_AVERAGE,
+			MonitorProperties.OSB_STATISTIC_TYPE_INTERVAL_PROPERTY_SUM
+		});
+		FACET_SUFFIXES.put(StatisticType.COUNT, new String[] {
+			MonitorProperties.OSB_STATISTIC_TYPE_COUNT_PROPERTY_COUNT
+		});
+		FACET_SUFFIXES.put(StatisticType.STATUS, new String[] {
+			MonitorProperties.OSB_STATISTIC_TYPE_STATUS_PROPERTY_INITIAL,
+			MonitorProperties.OSB_STATISTIC_TYPE_STATUS_PROPERTY_CURRENT
+		});
+	}
+
+	// Cumulative facets (counters since the last reset of the statistics) indexed by metric id
+	private static volatile boolean[] cumulativeMetrics = new boolean[0];
+
+	// Metric ids of the facets per StatisticType and statistic name
+	private final static Map<StatisticType, Map<String, int[]>> CATALOG = new EnumMap<>(StatisticType.class);
+	static {
+		for (StatisticType statisticType : FACET_SUFFIXES.keySet()) {
+
+			Map<String, int[]> metricIds = new ConcurrentHashMap<>();
+			Set<String> statisticNames = MonitorProperties.OSB_STATISTIC_TYPE_TREE.get(statisticType.toString());
+			if (statisticNames != null) {
+				for (String statisticName : statisticNames) {
+					metricIds.put(statisticName, newMetricIds(statisticType, statisticName));
+				}
+			}
+			CATALOG.put(statisticType, metricIds);
+		}
+	}
+
+	/**
+	 * Gets the metric ids of all the facets of a statistic (O(1), no string built for a known statistic)
+	 *
+	 * @param statisticType
+	 * @param statisticName
+	 * @return The metric id of each facet (see the *_FACET constants) or null if the StatisticType is not supported
+	 */
+	public static int[] getMetricIds(StatisticType statisticType, String statisticName) {
+
+		Map<String, int[]> metricIds = CATALOG.get(statisticType);
+		if (metricIds == null) {
+			return null;
+		}
+
+		int[] ids = metricIds.get(statisticName);
+		if (ids == null) {
+			synchronized (metricIds) {
+				ids = metricIds.get(statisticName);
+				if (ids == null) {
+					ids = newMetricIds(statisticType, statisticName);
+					metricIds.put(statisticName, ids);
+					AppLog.getLogger().notice("The StatisticValue [" + statisticName + "] of type [" + statisticType + "] has been added to the metric catalog");
+				}
+			}
+		}
+		return ids;
+	}
+
+	/**
+	 *
+	 * @param statisticType
+	 * @param statisticName
+	 * @param facet
+	 * @return The metric id of the facet of the statistic
+	 */
+	public static int getMetricId(StatisticType statisticType, String statisticName, int facet) {
+		return getMetricIds(statisticType, statisticName)[facet];
+	}
+
+	/**
+	 *
+	 * @param metricId
+	 * @return true if the metric is a cumulative facet (count and sum of the INTERVAL statistics, count of the COUNT statistics)
+	 */
+	public static boolean isCumulativeMetric(int metricId) {
+		boolean[] cumulative = cumulativeMetrics;
+		return metricId >= 0 && metricId < cumulative.length && cumulative[metricId];
+	}
+
+	/**
+	 * Checks a metric name given by a user (a rule on an unknown metric would never match)
+	 *
+	 * @param metricName For example error-ratio, response-time_max or status_current
+	 * @return true if the metric is a facet of a statistic of the catalog or a derived value
+	 */
+	public static boolean isKnownMetric(String metricName) {
+
+		if (DerivedStatistics.isDerivedMetric(metricName)) {
+			return true;
+		}
+		int metricId = StatisticsDictionary.METRICS.findId(metricName);
+		if (metricId == NameDictionary.UNKNOWN) {
+			return false;
+		}
+		for (Map<String, int[]> metricIds : CATALOG.values()) {
+			for (int[] ids : metricIds.values()) {
+				for (int id : ids) {
+					if (id == metricId) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 *
+	 * @param statisticType
+	 * @param statisticName
+	 * @return The metric ids of the facets (the keys are built only here)
+	 */
+	private static int[] newMetricIds(StatisticType statisticType, String statisticName) {
+
+		String[] suffixes = FACET_SUFFIXES.get(statisticType);
+		int[] ids = new int[suffixes.length];
+		for (int facet = 0; facet < suffixes.length; facet++) {
+			ids[facet] = StatisticsDictionary.METRICS.getId((statisticName + suffixes[facet]).intern());
+		}
+		if (statisticType == StatisticType.INTERVAL) {
+			setCumulative(ids[INTERVAL_COUNT_FACET]);
+			setCumulative(ids[INTERVAL_SUM_FACET]);
+		} else if (statisticType == StatisticType.COUNT) {
+			setCumulative(ids[COUNT_COUNT_FACET]);
+		}
+		return ids;
+	}
+
+	/**
+	 * The array is copied so a reader never sees it partially updated
+	 *
+	 * @param metricId
+	 */
+	private static synchronized void setCumulative(int metricId) {
+
+		boolean[] cumulative = Arrays.copyOf(cumulativeMetrics, Math.max(cumulativeMetrics.length, metricId + 1));
+		cumulative[metricId] = true;
+		cumulativeMetrics = cumulative;
+	}
+}
@@ -0,0 +1,105 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.snapshot;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns a dense int id to each name (service, resource statistic or metric).
+ * The ids are never reused so they can be kept in the snapshots. The lookup of
+ * an existing name doesn't lock; only the creation of a new id does.
+ */
+public class NameDictionary {
+
+	// Members
+	private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+	private volatile String[] names = new String[INITIAL_CAPACITY];
+	private volatile int size = 0;
+	private final int maxSize;
+
+	// Constants
+	public final static int UNKNOWN = -1;
+	private final static int INITIAL_CAPACITY = 256;
+
+	/**
+	 *
+	 * @param maxSize The maximum number of names (depends on the number of bits of the id in the keys)
+	 */
+	public NameDictionary(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 *
+	 * @param name
+	 * @return The id of the name (created if unknown)
+	 */
+	public int getId(String name) {
+
+		Integer id = ids.get(name);
+		if (id != null) {
+			return id.intValue();
+		}
+
+		synchronized (this) {
+			id = ids.get(name);
+			if (id != null) {
+				return id.intValue();
+			}
+
+			if (size >= maxSize) {
+				throw new IllegalStateException("Too many names (" + maxSize + " max) - [" + name + "] can't be added");
+			}
+
+			String[] currentNames = names;
+			if (size == currentNames.length) {
+				currentNames = Arrays.copyOf(currentNames, currentNames.length * 2);
+			}
+			currentNames[size] = name;
+			names = currentNames;
+			ids.put(name, size);
+			return size++;
+		}
+	}
+
+	/**
+	 *
+	 * @param name
+	 * @return The id of the name or UNKNOWN (never creates an id)
+	 */
+	public int findId(String name) {
+
+		Integer id = (name != null) ? ids.get(name) : null;
+		return (id != null) ? id.intValue() : UNKNOWN;
+	}
+
+	/**
+	 *
+	 * @param id
+	 * @return The name
+	 */
+	public String getName(int id) {
+		return names[id];
+	}
+
+	/**
+	 * @return The number of names
+	 */
+	public int size() {
+		return size;
+	}
+}
@@ -0,0 +1,128 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.snapshot;
+
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+/**
+ * Wildcard pattern ('*' any characters, '?' one character, or several
+ * alternative patterns) matched against the names of a dictionary. The result is kept per id, so each name is matched at
+ * most once whatever the number of values using it (not thread safe : a
+ * pattern is used by one thread at a time).
+ */
+public class NamePattern {
+
+	// Members
+	private final Pattern pattern;
+	private final NameDictionary dictionary;
+	private byte[] results;
+
+	// Constants
+	private final static byte UNKNOWN = 0;
+	private final static byte MATCH = 1;
+	private final static byte NO_MATCH = 2;
+
+	/**
+	 *
+	 * @param wildcard The pattern (null or "*" matches all the names)
+	 * @param dictionary The dictionary of the names
+	 */
+	public NamePattern(String wildcard, NameDictionary dictionary) {
+		this((wildcard != null) ? new String[] { wildcard } : null, dictionary);
+	}
+
+	/**
+	 *
+	 * @param wildcards The alternative patterns (null, empty or containing "*" matches all the names)
+	 * @param dictionary The dictionary of the names
+	 */
+	public NamePattern(String[] wildcards, NameDictionary dictionary) {
+		this.pattern = toRegex(wildcards);
+		this.dictionary = dictionary;
+		this.results = (pattern != null) ? new byte[dictionary.size()] : null;
+	}
+
+	/**
+	 *
+	 * @param id
+	 * @return true if the name of the id matches the pattern
+	 */
+	public boolean matches(int id) {
+
+		if (pattern == null) {
+			return true;
+		}
+		if (id >= results.length) {
+			// Name created after this pattern
+			results = Arrays.copyOf(results, Math.max(id + 1, dictionary.size()));
+		}
+		if (results[id] == UNKNOWN) {
+			results[id] = pattern.matcher(dictionary.getName(id)).matches() ? MATCH : NO_MATCH;
+		}
+		return results[id] == MATCH;
+	}
+
+	/**
+	 *
+	 * @param wildcards
+	 * @return The regular expression matching any of the patterns (null if all the names match)
+	 */
+	private static Pattern toRegex(String[] wildcards) {
+
+		if (wildcards == null) {
+			return null;
+		}
+
+		StringBuilder regex = new StringBuilder();
+		for (String wildcard : wildcards) {
+			if (wildcard.equals("*")) {
+				return null;
+			}
+			if (regex.length() > 0) {
+				regex.append('|');
+			}
+			regex.append("(?:").append(toRegex(wildcard).pattern()).append(')');
+		}
+		return (regex.length() > 0) ? Pattern.compile(regex.toString(), Pattern.DOTALL) : null;
+	}
+
+	/**
+	 *
+	 * @param wildcard
+	 * @return The regular expression of the pattern (the other characters are quoted)
+	 */
+	public static Pattern toRegex(String wildcard) {
+
+		StringBuilder regex = new StringBuilder();
+		StringBuilder literal = new StringBuilder();
+		for (int i = 0; i < wildcard.length(); i++) {
+			char c = wildcard.charAt(i);
+			if (c == '*' || c == '?') {
+				if (literal.length() > 0) {
+					regex.append(Pattern.quote(literal.toString()));
+					literal.setLength(0);
+				}
+				regex.append((c == '*') ? ".*" : ".");
+			} else {
+				literal.append(c);
+			}
+		}
+		if (literal.length() > 0) {
+			regex.append(Pattern.quote(literal.toString()));
+		}
+		return Pattern.compile(regex.toString(), Pattern.DOTALL);
+	}
+}
@@ -0,0 +1,110 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.snapshot;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serialized forms (binary, JSON, Prometheus...) of the snapshots, kept by
+ * format and version. Each version of a query is serialized once whatever the
+ * number of clients asking for it (the concurrent requests for a version not
+ * yet serialized wait for the first one) and the bytes are kept until a newer
+ * version of the query is requested.
+ */
+public class SerializedSnapshotCache {
+
+	/**
+	 * Serializes the snapshot (called at most once per format and version)
+	 */
+	public interface Serializer {
+		public byte[] serialize() throws IOException;
+	}
+
+	/**
+	 * Bytes of one version, serialized at the first request
+	 */
+	private static class Entry {
+		private final long version;
+		private byte[] bytes = null;
+
+		private Entry(long version) {
+			this.version = version;
+		}
+
+		private synchronized byte[] getBytes(Serializer serializer) throws IOException {
+			if (bytes == null) {
+				bytes = serializer.serialize();
+			}
+			return bytes;
+		}
+	}
+
+	// Members
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+	// Constants
+	public final static String FORMAT_BINARY = "binary";
+	public final static String FORMAT_JSON = "json";
+	public final static String FORMAT_PROMETHEUS = "prometheus";
+	public final static String ALL_QUERIES = "*";
+	private final static int MAX_CACHED_ENTRIES = 256;
+
+	/**
+	 *
+	 * @param format
+	 * @param scopeKey The query of the snapshot (see StatisticsSnapshot.toScopeKey) or ALL_QUERIES
+	 * @param version The version of the snapshot
+	 * @param serializer Called if the version is not yet serialized
+	 * @return The serialized snapshot (shared : must not be modified)
+	 * @throws IOException
+	 */
+	public byte[] get(String format, String scopeKey, long version, Serializer serializer) throws IOException {
+
+		String cacheKey = format + "|" + scopeKey;
+		Entry entry = entries.get(cacheKey);
+		if (entry == null || entry.version != version) {
+			entry = getEntry(cacheKey, version);
+			if (entry == null) {
+				// Older than the cached version (the client is late) : not kept
+				return serializer.serialize();
+			}
+		}
+		return entry.getBytes(serializer);
+	}
+
+	/**
+	 *
+	 * @param cacheKey
+	 * @param version
+	 * @return The entry of the version (created if the cached one is older, null if it's newer)
+	 */
+	private synchronized Entry getEntry(String cacheKey, long version) {
+
+		Entry entry = entries.get(cacheKey);
+		if (entry != null && entry.version > version) {
+			return null;
+		}
+		if (entry == null || entry.version < version) {
+			if (entries.size() >= MAX_CACHED_ENTRIES) {
+				entries.clear();
+			}
+			entry = new Entry(version);
+			entries.put(cacheKey, entry);
+		}
+		return entry;
+	}
+}
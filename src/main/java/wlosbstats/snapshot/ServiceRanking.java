@@ -0,0 +1,76 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.snapshot;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Services ranked by the value of a metric (the first one is the highest value
+ * for a descending ranking). A service appears once per resource statistic
+ * having the metric.
+ */
+public class ServiceRanking {
+
+	// Members
+	private final long version;
+	private final long captureTime;
+	private final String metricName;
+	private final String[] serviceNames;
+	private final String[] resourceStatisticNames;
+	private final double[] values;
+
+	/**
+	 *
+	 * @param version The version of the ranked snapshot
+	 * @param captureTime
+	 * @param metricName
+	 * @param serviceNames
+	 * @param resourceStatisticNames
+	 * @param values
+	 */
+	@ConstructorProperties({"version", "captureTime", "metricName", "serviceNames", "resourceStatisticNames", "values"})
+	public ServiceRanking(long version, long captureTime, String metricName, String[] serviceNames, String[] resourceStatisticNames, double[] values) {
+		this.version = version;
+		this.captureTime = captureTime;
+		this.metricName = metricName;
+		this.serviceNames = serviceNames;
+		this.resourceStatisticNames = resourceStatisticNames;
+		this.values = values;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public long getCaptureTime() {
+		return captureTime;
+	}
+
+	public String getMetricName() {
+		return metricName;
+	}
+
+	public String[] getServiceNames() {
+		return serviceNames;
+	}
+
+	public String[] getResourceStatisticNames() {
+		return resourceStatisticNames;
+	}
+
+	public double[] getValues() {
+		return values;
+	}
+}
@@ -0,0 +1,250 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.snapshot;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Compact binary form of a snapshot, much smaller and cheaper to build than the
+ * open type (TabularData) form of the nested maps. Layout (big endian) :
+ *
+ *   int magic, byte format version, long version, long capture time,
+ *   4 strings (server, OSB type, resource type, statistic type),
+ *   3 string tables (services, resource statistics, metrics),
+ *   varint row count, then for each row :
+ *   varint service index, varint resource statistic index, varint metric index, double value
+ *
+ * A string is a varint (length + 1, 0 for null) followed by the UTF-8 bytes.
+ * The indexes refer to the tables of the payload, not to the ids of the agent.
+ * decode() is the reader used by the Java clients (it only needs this jar).
+ */
+public class SnapshotCodec {
+
+	// Constants
+	public final static int MAGIC = 0x574C5342;
+	public final static byte FORMAT_VERSION = 1;
+	private final static Charset UTF8 = Charset.forName("UTF-8");
+	private final static int BYTES_PER_ROW_ESTIMATE = 12;
+
+	/**
+	 *
+	 * @param snapshot
+	 * @return The binary form of the snapshot
+	 */
+	public static byte[] encode(StatisticsSnapshot snapshot) {
+
+		ColumnarStatistics columns = snapshot.columns();
+		int size = columns.size();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + size * BYTES_PER_ROW_ESTIMATE);
+		DataOutputStream out = new DataOutputStream(bytes);
+
+		try {
+			out.writeInt(MAGIC);
+			out.writeByte(FORMAT_VERSION);
+			out.writeLong(snapshot.getVersion());
+			out.writeLong(snapshot.getCaptureTime());
+			writeString(out, snapshot.getServerName());
+			writeString(out, snapshot.getOsbResourceType());
+			writeString(out, snapshot.getResourceType());
+			writeString(out, snapshot.getStatisticType());
+
+			// -----------------------------------------------------
+			// Tables of the names used by the snapshot (index = order of first use)
+			int[] serviceIndexes = newIndexes(StatisticsDictionary.SERVICES);
+			int[] resourceStatisticIndexes = newIndexes(StatisticsDictionary.RESOURCE_STATISTICS);
+			int[] metricIndexes = newIndexes(StatisticsDictionary.METRICS);
+			int[] serviceIds = new int[size];
+			int[] resourceStatisticIds = new int[size];
+			int[] metricIds = new int[size];
+			int serviceCount = 0;
+			int resourceStatisticCount = 0;
+			int metricCount = 0;
+
+			for (int row = 0; row < size; row++) {
+				long key = columns.getKey(row);
+				serviceCount = addIndex(serviceIndexes, serviceIds, serviceCount, StatisticsDictionary.getServiceId(key));
+				resourceStatisticCount = addIndex(resourceStatisticIndexes, resourceStatisticIds, resourceStatisticCount, StatisticsDictionary.getResourceStatisticId(key));
+				metricCount = addIndex(metricIndexes, metricIds, metricCount, StatisticsDictionary.getMetricId(key));
+			}
+
+			writeTable(out, StatisticsDictionary.SERVICES, serviceIds, serviceCount);
+			writeTable(out, StatisticsDictionary.RESOURCE_STATISTICS, resourceStatisticIds, resourceStatisticCount);
+			writeTable(out, StatisticsDictionary.METRICS, metricIds, metricCount);
+			// -----------------------------------------------------
+
+			// -----------------------------------------------------
+			// Rows
+			writeVarInt(out, size);
+			for (int row = 0; row < size; row++) {
+				long key = columns.getKey(row);
+				writeVarInt(out, serviceIndexes[StatisticsDictionary.getServiceId(key)]);
+				writeVarInt(out, resourceStatisticIndexes[StatisticsDictionary.getResourceStatisticId(key)]);
+				writeVarInt(out, metricIndexes[StatisticsDictionary.getMetricId(key)]);
+				out.writeDouble(columns.getValue(row));
+			}
+			// -----------------------------------------------------
+
+			out.flush();
+		} catch (IOException ex) {
+			// Not possible with an in-memory stream
+			throw new IllegalStateException("Not possible to encode the snapshot [" + snapshot.getVersion() + "]", ex);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 *
+	 * @param bytes The binary form of a snapshot
+	 * @return The snapshot
+	 * @throws IOException If the bytes are not a snapshot of a supported format
+	 */
+	public static StatisticsSnapshot decode(byte[] bytes) throws IOException {
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+
+		int magic = in.readInt();
+		if (magic != MAGIC) {
+			throw new IOException("Not a snapshot - Magic is [" + Integer.toHexString(magic) + "]");
+		}
+		byte formatVersion = in.readByte();
+		if (formatVersion != FORMAT_VERSION) {
+			throw new IOException("Format version [" + formatVersion + "] not supported");
+		}
+
+		long version = in.readLong();
+		long captureTime = in.readLong();
+		String serverName = readString(in);
+		String osbResourceType = readString(in);
+		String resourceType = readString(in);
+		String statisticType = readString(in);
+
+		int[] serviceIds = readTable(in, StatisticsDictionary.SERVICES);
+		int[] resourceStatisticIds = readTable(in, StatisticsDictionary.RESOURCE_STATISTICS);
+		int[] metricIds = readTable(in, StatisticsDictionary.METRICS);
+
+		int size = readVarInt(in);
+		ColumnarStatisticsBuilder builder = new ColumnarStatisticsBuilder(size);
+		for (int row = 0; row < size; row++) {
+			int serviceId = serviceIds[readVarInt(in)];
+			int resourceStatisticId = resourceStatisticIds[readVarInt(in)];
+			int metricId = metricIds[readVarInt(in)];
+			builder.add(serviceId, resourceStatisticId, metricId, in.readDouble());
+		}
+
+		return new StatisticsSnapshot(version, captureTime, serverName, osbResourceType, resourceType, statisticType, builder.build());
+	}
+
+	/**
+	 *
+	 * @param dictionary
+	 * @return The index of each id of the dictionary in the payload (-1 if not used)
+	 */
+	private static int[] newIndexes(NameDictionary dictionary) {
+		int[] indexes = new int[dictionary.size()];
+		Arrays.fill(indexes, -1);
+		return indexes;
+	}
+
+	/**
+	 *
+	 * @param indexes
+	 * @param ids The ids in the order of the table
+	 * @param count The number of ids in the table
+	 * @param id
+	 * @return The new number of ids in the table
+	 */
+	private static int addIndex(int[] indexes, int[] ids, int count, int id) {
+		if (indexes[id] < 0) {
+			indexes[id] = count;
+			ids[count++] = id;
+		}
+		return count;
+	}
+
+	private static void writeTable(DataOutputStream out, NameDictionary dictionary, int[] ids, int count) throws IOException {
+		writeVarInt(out, count);
+		for (int i = 0; i < count; i++) {
+			writeString(out, dictionary.getName(ids[i]));
+		}
+	}
+
+	/**
+	 *
+	 * @param in
+	 * @param dictionary
+	 * @return The id (in the dictionary of this JVM) of each name of the table
+	 * @throws IOException
+	 */
+	private static int[] readTable(DataInputStream in, NameDictionary dictionary) throws IOException {
+		int[] ids = new int[readVarInt(in)];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = dictionary.getId(readString(in));
+		}
+		return ids;
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			writeVarInt(out, 0);
+			return;
+		}
+		byte[] utf8 = value.getBytes(UTF8);
+		writeVarInt(out, utf8.length + 1);
+		out.write(utf8);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = readVarInt(in);
+		if (length == 0) {
+			return null;
+		}
+		byte[] utf8 = new byte[length - 1];
+		in.readFully(utf8);
+		return new String(utf8, UTF8);
+	}
+
+	/**
+	 * Writes a non negative int on 1 to 5 bytes (7 bits per byte, high bit set if more bytes follow)
+	 *
+	 * @param out
+	 * @param value
+	 * @throws IOException
+	 */
+	private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	private static int readVarInt(DataInputStream in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed varint");
+	}
+}
@@ -0,0 +1,152 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.snapshot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Computes the StatisticsDelta between two snapshots of the same query. Both
+ * snapshots are sorted by KEY so a single merge pass finds the new, changed
+ * and removed statistics.
+ */
+public class SnapshotDiff {
+
+	// Constants
+	private final static int INITIAL_CAPACITY = 64;
+
+	/**
+	 *
+	 * @param base The snapshot known by the client
+	 * @param current
+	 * @return The statistics of current which are new or different in base
+	 */
+	public static StatisticsDelta diff(StatisticsSnapshot base, StatisticsSnapshot current) {
+
+		ColumnarStatistics before = base.columns();
+		ColumnarStatistics after = current.columns();
+		int beforeSize = before.size();
+		int afterSize = after.size();
+
+		// -----------------------------------------------------
+		// Services still present (their removed statistics are returned one by one)
+		BitSet currentServices = new BitSet();
+		for (int row = 0; row < afterSize; row++) {
+			currentServices.set(StatisticsDictionary.getServiceId(after.getKey(row)));
+		}
+		// -----------------------------------------------------
+
+		// -----------------------------------------------------
+		// Merge of the 2 sorted columns
+		// (in steady state only a small part of the statistics changes)
+		long[] keys = new long[Math.max(INITIAL_CAPACITY, afterSize / 8)];
+		double[] values = new double[keys.length];
+		int count = 0;
+		List<String> removedServiceNames = new ArrayList<>();
+		int lastRemovedServiceId = -1;
+		int i = 0;
+		int j = 0;
+
+		while (i < beforeSize || j < afterSize) {
+
+			long beforeKey = (i < beforeSize) ? before.getKey(i) : Long.MAX_VALUE;
+			long afterKey = (j < afterSize) ? after.getKey(j) : Long.MAX_VALUE;
+			long key;
+			double value;
+
+			if (afterKey < beforeKey) {
+				// New statistic
+				key = afterKey;
+				value = after.getValue(j++);
+			} else if (beforeKey < afterKey) {
+				// Removed statistic
+				int serviceId = StatisticsDictionary.getServiceId(beforeKey);
+				i++;
+				if (!currentServices.get(serviceId)) {
+					if (serviceId != lastRemovedServiceId) {
+						removedServiceNames.add(StatisticsDictionary.SERVICES.getName(serviceId));
+						lastRemovedServiceId = serviceId;
+					}
+					continue;
+				}
+				key = beforeKey;
+				value = Double.NaN;
+			} else {
+				// Same statistic (only kept if the value changed)
+				value = after.getValue(j++);
+				boolean changed = Double.doubleToLongBits(value) != Double.doubleToLongBits(before.getValue(i++));
+				if (!changed) {
+					continue;
+				}
+				key = afterKey;
+			}
+
+			if (count == keys.length) {
+				keys = Arrays.copyOf(keys, count * 2);
+				values = Arrays.copyOf(values, count * 2);
+			}
+			keys[count] = key;
+			values[count++] = value;
+		}
+		// -----------------------------------------------------
+
+		return newDelta(base.getVersion(), current, false, keys, values, count, removedServiceNames.toArray(new String[removedServiceNames.size()]));
+	}
+
+	/**
+	 *
+	 * @param current
+	 * @return All the statistics of the snapshot (used when the delta can't be computed)
+	 */
+	public static StatisticsDelta full(StatisticsSnapshot current) {
+
+		ColumnarStatistics columns = current.columns();
+		int size = columns.size();
+		long[] keys = new long[size];
+		double[] values = new double[size];
+		for (int row = 0; row < size; row++) {
+			keys[row] = columns.getKey(row);
+			values[row] = columns.getValue(row);
+		}
+		return newDelta(0, current, true, keys, values, size, new String[0]);
+	}
+
+	/**
+	 *
+	 * @param fromVersion
+	 * @param current
+	 * @param full
+	 * @param keys
+	 * @param values
+	 * @param count
+	 * @param removedServiceNames
+	 * @return
+	 */
+	private static StatisticsDelta newDelta(long fromVersion, StatisticsSnapshot current, boolean full, long[] keys, double[] values, int count, String[] removedServiceNames) {
+
+		String[] serviceNames = new String[count];
+		String[] resourceStatisticNames = new String[count];
+		String[] statisticNames = new String[count];
+		for (int k = 0; k < count; k++) {
+			serviceNames[k] = StatisticsDictionary.SERVICES.getName(StatisticsDictionary.getServiceId(keys[k]));
+			resourceStatisticNames[k] = StatisticsDictionary.RESOURCE_STATISTICS.getName(StatisticsDictionary.getResourceStatisticId(keys[k]));
+			statisticNames[k] = StatisticsDictionary.METRICS.getName(StatisticsDictionary.getMetricId(keys[k]));
+		}
+		return new StatisticsDelta(fromVersion, current.getVersion(), current.getCaptureTime(), full, serviceNames, resourceStatisticNames, statisticNames,
+				(values.length == count) ? values : Arrays.copyOf(values, count), removedServiceNames);
+	}
+}
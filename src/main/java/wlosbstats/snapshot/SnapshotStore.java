@@ -0,0 +1,186 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.snapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Holds the last published snapshot of each query and the last published
+ * snapshot overall. The values derived from the previous snapshot of the same
+ * query (see DerivedStatistics) are added when a snapshot is published. The
+ * publication is the only synchronized operation (so the versions are
+ * published in order); the readers only read volatile references and never
+ * block. The last published snapshots of each query are also retained by
+ * version, so the changes since a version known by a client can be computed
+ * (whatever the number of queries published in between).
+ */
+public class SnapshotStore {
+
+	// Members
+	private final Map<String, StatisticsSnapshot> snapshots = new ConcurrentHashMap<>();
+	private volatile StatisticsSnapshot latest = EMPTY_SNAPSHOT;
+	private long lastVersion = 0;
+	private final Map<String, RetainedSnapshots> retained = new ConcurrentHashMap<>();
+	private final int retainedSnapshots;
+	private final long epoch = System.currentTimeMillis();
+
+	// Constants
+	public final static StatisticsSnapshot EMPTY_SNAPSHOT = new StatisticsSnapshot(0, 0, null, null, null, null, ColumnarStatistics.EMPTY);
+
+	/**
+	 *
+	 * @param retainedSnapshots The number of published snapshots retained by version for each query
+	 */
+	public SnapshotStore(int retainedSnapshots) {
+		this.retainedSnapshots = Math.max(1, retainedSnapshots);
+	}
+
+	/**
+	 * Builds and publishes the snapshot of a collection.
+	 *
+	 * @param serverName
+	 * @param osbResourceType
+	 * @param resourceType
+	 * @param statisticType
+	 * @param statistics The collected statistics
+	 * @param captureTime
+	 * @return The published snapshot
+	 */
+	public synchronized StatisticsSnapshot publish(String serverName, String osbResourceType, String resourceType, String statisticType, ColumnarStatistics statistics, long captureTime) {
+
+		StatisticsSnapshot previous = snapshots.get(StatisticsSnapshot.toScopeKey(serverName, osbResourceType, resourceType, statisticType));
+		if (previous != null) {
+			statistics = DerivedStatistics.addDerivedStatistics(statistics, previous.columns(), captureTime - previous.getCaptureTime());
+		}
+
+		StatisticsSnapshot snapshot = new StatisticsSnapshot(++lastVersion, captureTime, serverName, osbResourceType, resourceType, statisticType, statistics);
+		snapshots.put(snapshot.scopeKey(), snapshot);
+		RetainedSnapshots retainedOfQuery = retained.get(snapshot.scopeKey());
+		if (retainedOfQuery == null) {
+			retainedOfQuery = new RetainedSnapshots(retainedSnapshots);
+			retained.put(snapshot.scopeKey(), retainedOfQuery);
+		}
+		retainedOfQuery.add(snapshot);
+		latest = snapshot;
+		return snapshot;
+	}
+
+	/**
+	 * @return The creation time of the store (the versions restart at 1 in each store, so a version is only unique with its epoch)
+	 */
+	public long getEpoch() {
+		return epoch;
+	}
+
+	/**
+	 * @return The last published snapshot (EMPTY_SNAPSHOT if nothing has been published yet)
+	 */
+	public StatisticsSnapshot getLatest() {
+		return latest;
+	}
+
+	/**
+	 *
+	 * @param scopeKey See StatisticsSnapshot.toScopeKey
+	 * @return The last published snapshot of the query (EMPTY_SNAPSHOT if nothing has been published yet)
+	 */
+	public StatisticsSnapshot getLatest(String scopeKey) {
+
+		StatisticsSnapshot snapshot = (scopeKey != null) ? snapshots.get(scopeKey) : null;
+		return (snapshot != null) ? snapshot : EMPTY_SNAPSHOT;
+	}
+
+	/**
+	 *
+	 * @param version
+	 * @return The snapshot of the version (whatever its query) or null if it's no more retained
+	 */
+	public StatisticsSnapshot getVersion(long version) {
+
+		if (version <= 0) {
+			return null;
+		}
+		for (RetainedSnapshots retainedOfQuery : retained.values()) {
+			StatisticsSnapshot snapshot = retainedOfQuery.get(version);
+			if (snapshot != null) {
+				return snapshot;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 *
+	 * @param scopeKey See StatisticsSnapshot.toScopeKey
+	 * @param version
+	 * @return The snapshot of the version or null if it's no more retained (or if it's the snapshot of another query)
+	 */
+	public StatisticsSnapshot getVersion(String scopeKey, long version) {
+
+		RetainedSnapshots retainedOfQuery = (scopeKey != null && version > 0) ? retained.get(scopeKey) : null;
+		return (retainedOfQuery != null) ? retainedOfQuery.get(version) : null;
+	}
+
+	/**
+	 * @return The last published snapshot of each query
+	 */
+	public List<StatisticsSnapshot> getAllLatest() {
+		return new ArrayList<>(snapshots.values());
+	}
+
+	/**
+	 * Removes the snapshot of a query which is no more collected
+	 *
+	 * @param scopeKey
+	 */
+	public void remove(String scopeKey) {
+		if (scopeKey != null) {
+			snapshots.remove(scopeKey);
+			retained.remove(scopeKey);
+		}
+	}
+
+	/**
+	 * Last published snapshots of one query (written under the lock of the store, read without lock)
+	 */
+	private static class RetainedSnapshots {
+
+		private final AtomicReferenceArray<StatisticsSnapshot> snapshots;
+		private int next = 0;
+
+		private RetainedSnapshots(int size) {
+			this.snapshots = new AtomicReferenceArray<>(size);
+		}
+
+		private void add(StatisticsSnapshot snapshot) {
+			snapshots.set(next, snapshot);
+			next = (next + 1) % snapshots.length();
+		}
+
+		private StatisticsSnapshot get(long version) {
+			for (int i = 0; i < snapshots.length(); i++) {
+				StatisticsSnapshot snapshot = snapshots.get(i);
+				if (snapshot != null && snapshot.getVersion() == version) {
+					return snapshot;
+				}
+			}
+			return null;
+		}
+	}
+}
@@ -0,0 +1,76 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.snapshot;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Values of several statistics read from the same snapshot with a single call.
+ * The arrays are aligned : the value i is the one of the statistic
+ * serviceNames[i] / resourceStatisticNames[i] / statisticNames[i].
+ */
+public class StatisticValues {
+
+	// Members
+	private final long version;
+	private final long captureTime;
+	private final String[] serviceNames;
+	private final String[] resourceStatisticNames;
+	private final String[] statisticNames;
+	private final double[] values;
+
+	/**
+	 *
+	 * @param version
+	 * @param captureTime
+	 * @param serviceNames
+	 * @param resourceStatisticNames
+	 * @param statisticNames
+	 * @param values The value of each statistic (NaN if the statistic is not part of the snapshot)
+	 */
+	@ConstructorProperties({"version", "captureTime", "serviceNames", "resourceStatisticNames", "statisticNames", "values"})
+	public StatisticValues(long version, long captureTime, String[] serviceNames, String[] resourceStatisticNames, String[] statisticNames, double[] values) {
+		this.version = version;
+		this.captureTime = captureTime;
+		this.serviceNames = serviceNames;
+		this.resourceStatisticNames = resourceStatisticNames;
+		this.statisticNames = statisticNames;
+		this.values = values;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public long getCaptureTime() {
+		return captureTime;
+	}
+
+	public String[] getServiceNames() {
+		return serviceNames;
+	}
+
+	public String[] getResourceStatisticNames() {
+		return resourceStatisticNames;
+	}
+
+	public String[] getStatisticNames() {
+		return statisticNames;
+	}
+
+	public double[] getValues() {
+		return values;
+	}
+}
@@ -0,0 +1,100 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.snapshot;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Statistics which changed between two versions of a snapshot. The arrays are
+ * aligned (see StatisticValues) and contain the new and changed statistics; a
+ * NaN value means that the statistic has been removed. The services which have
+ * been removed are only listed in removedServiceNames. If the delta can't be
+ * computed (client too far behind), full is true and the arrays contain all
+ * the statistics of the snapshot.
+ */
+public class StatisticsDelta {
+
+	// Members
+	private final long fromVersion;
+	private final long version;
+	private final long captureTime;
+	private final boolean full;
+	private final String[] serviceNames;
+	private final String[] resourceStatisticNames;
+	private final String[] statisticNames;
+	private final double[] values;
+	private final String[] removedServiceNames;
+
+	/**
+	 *
+	 * @param fromVersion The version the delta starts from (0 if full)
+	 * @param version The version of the snapshot
+	 * @param captureTime
+	 * @param full true if all the statistics of the snapshot are returned
+	 * @param serviceNames
+	 * @param resourceStatisticNames
+	 * @param statisticNames
+	 * @param values
+	 * @param removedServiceNames
+	 */
+	@ConstructorProperties({"fromVersion", "version", "captureTime", "full", "serviceNames", "resourceStatisticNames", "statisticNames", "values", "removedServiceNames"})
+	public StatisticsDelta(long fromVersion, long version, long captureTime, boolean full, String[] serviceNames, String[] resourceStatisticNames, String[] statisticNames, double[] values, String[] removedServiceNames) {
+		this.fromVersion = fromVersion;
+		this.version = version;
+		this.captureTime = captureTime;
+		this.full = full;
+		this.serviceNames = serviceNames;
+		this.resourceStatisticNames = resourceStatisticNames;
+		this.statisticNames = statisticNames;
+		this.values = values;
+		this.removedServiceNames = removedServiceNames;
+	}
+
+	public long getFromVersion() {
+		return fromVersion;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public long getCaptureTime() {
+		return captureTime;
+	}
+
+	public boolean isFull() {
+		return full;
+	}
+
+	public String[] getServiceNames() {
+		return serviceNames;
+	}
+
+	public String[] getResourceStatisticNames() {
+		return resourceStatisticNames;
+	}
+
+	public String[] getStatisticNames() {
+		return statisticNames;
+	}
+
+	public double[] getValues() {
+		return values;
+	}
+
+	public String[] getRemovedServiceNames() {
+		return removedServiceNames;
+	}
+}
@@ -0,0 +1,104 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.snapshot;
+
+/**
+ * Dictionaries of the names found in the statistics and packing of the ids in
+ * the long KEY of a value : service id (19 bits, so a KEY is never negative),
+ * resource statistic id (20 bits) and metric id (24 bits). The keys sort by
+ * service, then resource statistic, then metric. The ids are never reused (the
+ * snapshots and the caches of the consumers keep them) : a dictionary refuses
+ * a new name once all the ids of its bits are given.
+ */
+public class StatisticsDictionary {
+
+	// Constants
+	private final static int SERVICE_BITS = 19;
+	private final static int RESOURCE_STATISTIC_BITS = 20;
+	private final static int METRIC_BITS = 24;
+	private final static long SERVICE_MASK = (1L << SERVICE_BITS) - 1;
+	private final static long RESOURCE_STATISTIC_MASK = (1L << RESOURCE_STATISTIC_BITS) - 1;
+	private final static long METRIC_MASK = (1L << METRIC_BITS) - 1;
+
+	// Dictionaries
+	public final static NameDictionary SERVICES = new NameDictionary(1 << SERVICE_BITS);
+	public final static NameDictionary RESOURCE_STATISTICS = new NameDictionary(1 << RESOURCE_STATISTIC_BITS);
+	public final static NameDictionary METRICS = new NameDictionary(1 << METRIC_BITS);
+
+	/**
+	 *
+	 * @param serviceId
+	 * @param resourceStatisticId
+	 * @param metricId
+	 * @return The KEY of the value
+	 * @throws IllegalArgumentException If an id doesn't fit in its bits
+	 */
+	public static long toKey(int serviceId, int resourceStatisticId, int metricId) {
+
+		if ((serviceId & ~SERVICE_MASK) != 0 || (resourceStatisticId & ~RESOURCE_STATISTIC_MASK) != 0 || (metricId & ~METRIC_MASK) != 0) {
+			throw new IllegalArgumentException("Ids [" + serviceId + ", " + resourceStatisticId + ", " + metricId + "] out of the range of a KEY");
+		}
+		return ((long) serviceId << (RESOURCE_STATISTIC_BITS + METRIC_BITS)) | ((long) resourceStatisticId << METRIC_BITS) | metricId;
+	}
+
+	/**
+	 *
+	 * @param serviceName
+	 * @param resourceStatisticName
+	 * @param metricName
+	 * @return The KEY of the value or -1 if one of the names is unknown
+	 */
+	public static long findKey(String serviceName, String resourceStatisticName, String metricName) {
+
+		int serviceId = SERVICES.findId(serviceName);
+		int resourceStatisticId = RESOURCE_STATISTICS.findId(resourceStatisticName);
+		int metricId = METRICS.findId(metricName);
+		if (serviceId < 0 || resourceStatisticId < 0 || metricId < 0) {
+			return -1;
+		}
+		return toKey(serviceId, resourceStatisticId, metricId);
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @param metricId
+	 * @return The KEY of another metric of the same service and resource statistic
+	 */
+	public static long withMetric(long key, int metricId) {
+		return (key & ~METRIC_MASK) | metricId;
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @return The service and resource statistic part of the key (same for all the metrics of a resource statistic)
+	 */
+	public static long getGroup(long key) {
+		return key >>> METRIC_BITS;
+	}
+
+	public static int getServiceId(long key) {
+		return (int) (key >>> (RESOURCE_STATISTIC_BITS + METRIC_BITS));
+	}
+
+	public static int getResourceStatisticId(long key) {
+		return (int) ((key >>> METRIC_BITS) & RESOURCE_STATISTIC_MASK);
+	}
+
+	public static int getMetricId(long key) {
+		return (int) (key & METRIC_MASK);
+	}
+}
@@ -0,0 +1,147 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.snapshot;
+
+import java.beans.ConstructorProperties;
+import java.util.Map;
+
+/**
+ * Immutable result of one collection : the statistics, the version of the
+ * snapshot (incremented at each publication) and the time of the capture.
+ * A snapshot is never modified once published so it can be read by any
+ * number of threads without locking. The statistics are kept as columns
+ * (see ColumnarStatistics); the nested map view is built the first time it's
+ * requested.
+ */
+public class StatisticsSnapshot {
+
+	// Members
+	private final long version;
+	private final long captureTime;
+	private final String serverName;
+	private final String osbResourceType;
+	private final String resourceType;
+	private final String statisticType;
+	private final ColumnarStatistics columns;
+	private volatile Map<String, Map<String, Map<String, Double>>> statistics = null;
+
+	// Constants
+	private final static String SCOPE_KEY_SEPARATOR = "|";
+
+	/**
+	 *
+	 * @param version
+	 * @param captureTime
+	 * @param serverName The server (null for the cluster)
+	 * @param osbResourceType
+	 * @param resourceType
+	 * @param statisticType The statistic type (null for all the types)
+	 * @param statistics
+	 */
+	@ConstructorProperties({"version", "captureTime", "serverName", "osbResourceType", "resourceType", "statisticType", "statistics"})
+	public StatisticsSnapshot(long version, long captureTime, String serverName, String osbResourceType, String resourceType, String statisticType, Map<String, Map<String, Map<String, Double>>> statistics) {
+		this(version, captureTime, serverName, osbResourceType, resourceType, statisticType, ColumnarStatistics.fromMap(statistics));
+	}
+
+	/**
+	 *
+	 * @param version
+	 * @param captureTime
+	 * @param serverName The server (null for the cluster)
+	 * @param osbResourceType
+	 * @param resourceType
+	 * @param statisticType The statistic type (null for all the types)
+	 * @param columns
+	 */
+	public StatisticsSnapshot(long version, long captureTime, String serverName, String osbResourceType, String resourceType, String statisticType, ColumnarStatistics columns) {
+		this.version = version;
+		this.captureTime = captureTime;
+		this.serverName = serverName;
+		this.osbResourceType = osbResourceType;
+		this.resourceType = resourceType;
+		this.statisticType = statisticType;
+		this.columns = (columns != null) ? columns : ColumnarStatistics.EMPTY;
+	}
+
+	/**
+	 * @return The version of the snapshot (0 if nothing has been collected yet)
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return The time the statistics have been collected
+	 */
+	public long getCaptureTime() {
+		return captureTime;
+	}
+
+	public String getServerName() {
+		return serverName;
+	}
+
+	public String getOsbResourceType() {
+		return osbResourceType;
+	}
+
+	public String getResourceType() {
+		return resourceType;
+	}
+
+	public String getStatisticType() {
+		return statisticType;
+	}
+
+	/**
+	 * @return The statistics as nested maps (read-only, built on the first call)
+	 */
+	public Map<String, Map<String, Map<String, Double>>> getStatistics() {
+
+		Map<String, Map<String, Map<String, Double>>> view = statistics;
+		if (view == null) {
+			view = columns.toMap();
+			statistics = view;
+		}
+		return view;
+	}
+
+	/**
+	 * @return The statistics as columns
+	 */
+	public ColumnarStatistics columns() {
+		return columns;
+	}
+
+	/**
+	 * @return The KEY of the query which produced the snapshot
+	 */
+	public String scopeKey() {
+		return toScopeKey(serverName, osbResourceType, resourceType, statisticType);
+	}
+
+	/**
+	 * Builds the KEY identifying a query (the snapshots of the same query replace each other)
+	 *
+	 * @param serverName
+	 * @param osbResourceType
+	 * @param resourceType
+	 * @param statisticType
+	 * @return
+	 */
+	public static String toScopeKey(String serverName, String osbResourceType, String resourceType, String statisticType) {
+		return (serverName == null ? "" : serverName) + SCOPE_KEY_SEPARATOR + osbResourceType + SCOPE_KEY_SEPARATOR + resourceType + SCOPE_KEY_SEPARATOR + (statisticType == null ? "" : statisticType);
+	}
+}
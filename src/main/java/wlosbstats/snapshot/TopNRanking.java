@@ -0,0 +1,161 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.snapshot;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Computes the top N services of a snapshot for a metric with a bounded heap
+ * (O(rows * log N), no sort of the whole snapshot). The rankings are cached
+ * until a new version of the snapshot is published, so the repeated requests
+ * of the dashboards between two collections are answered from the cache.
+ */
+public class TopNRanking {
+
+	// Members
+	private final Map<String, ServiceRanking> cache = new ConcurrentHashMap<>();
+
+	// Constants
+	private final static int MAX_CACHED_RANKINGS = 256;
+
+	/**
+	 *
+	 * @param snapshot
+	 * @param metricName For example response-time_average
+	 * @param n
+	 * @param descending true for the highest values first
+	 * @return The ranking (from the cache if the snapshot has already been ranked for the same request)
+	 */
+	public ServiceRanking getTopN(StatisticsSnapshot snapshot, String metricName, int n, boolean descending) {
+
+		String cacheKey = snapshot.scopeKey() + "|" + metricName + "|" + n + "|" + descending;
+		ServiceRanking ranking = cache.get(cacheKey);
+		if (ranking != null && ranking.getVersion() == snapshot.getVersion()) {
+			return ranking;
+		}
+
+		ranking = rank(snapshot, metricName, n, descending);
+		if (cache.size() >= MAX_CACHED_RANKINGS) {
+			cache.clear();
+		}
+		cache.put(cacheKey, ranking);
+		return ranking;
+	}
+
+	/**
+	 *
+	 * @param snapshot
+	 * @param metricName
+	 * @param n
+	 * @param descending
+	 * @return
+	 */
+	public static ServiceRanking rank(StatisticsSnapshot snapshot, String metricName, int n, boolean descending) {
+
+		ColumnarStatistics columns = snapshot.columns();
+		int metricId = StatisticsDictionary.METRICS.findId(metricName);
+		int capacity = Math.max(0, Math.min(n, columns.size()));
+
+		// -----------------------------------------------------
+		// Heap of the kept rows : the root is the worst kept value
+		int[] rows = new int[capacity];
+		double[] values = new double[capacity];
+		int count = 0;
+		double sign = descending ? 1 : -1;
+
+		if (metricId >= 0 && capacity > 0) {
+			for (int row = 0; row < columns.size(); row++) {
+
+				long key = columns.getKey(row);
+				double value = columns.getValue(row);
+				if (StatisticsDictionary.getMetricId(key) != metricId || Double.isNaN(value)) {
+					continue;
+				}
+
+				// The values are compared multiplied by sign (so the heap is always a min heap)
+				double score = sign * value;
+				if (count < capacity) {
+					rows[count] = row;
+					values[count] = score;
+					siftUp(rows, values, count++);
+				} else if (score > values[0]) {
+					rows[0] = row;
+					values[0] = score;
+					siftDown(rows, values, 0, count);
+				}
+			}
+		}
+		// -----------------------------------------------------
+
+		// -----------------------------------------------------
+		// Extraction of the heap (the worst value first, so from the end of the result)
+		String[] serviceNames = new String[count];
+		String[] resourceStatisticNames = new String[count];
+		double[] rankedValues = new double[count];
+		for (int i = count - 1; i >= 0; i--) {
+			long key = columns.getKey(rows[0]);
+			serviceNames[i] = StatisticsDictionary.SERVICES.getName(StatisticsDictionary.getServiceId(key));
+			resourceStatisticNames[i] = StatisticsDictionary.RESOURCE_STATISTICS.getName(StatisticsDictionary.getResourceStatisticId(key));
+			rankedValues[i] = columns.getValue(rows[0]);
+
+			rows[0] = rows[i];
+			values[0] = values[i];
+			siftDown(rows, values, 0, i);
+		}
+		// -----------------------------------------------------
+
+		return new ServiceRanking(snapshot.getVersion(), snapshot.getCaptureTime(), metricName, serviceNames, resourceStatisticNames, rankedValues);
+	}
+
+	private static void siftUp(int[] rows, double[] values, int index) {
+		while (index > 0) {
+			int parent = (index - 1) >>> 1;
+			if (values[parent] <= values[index]) {
+				return;
+			}
+			swap(rows, values, parent, index);
+			index = parent;
+		}
+	}
+
+	private static void siftDown(int[] rows, double[] values, int index, int size) {
+		while (true) {
+			int smallest = index;
+			int left = 2 * index + 1;
+			int right = left + 1;
+			if (left < size && values[left] < values[smallest]) {
+				smallest = left;
+			}
+			if (right < size && values[right] < values[smallest]) {
+				smallest = right;
+			}
+			if (smallest == index) {
+				return;
+			}
+			swap(rows, values, smallest, index);
+			index = smallest;
+		}
+	}
+
+	private static void swap(int[] rows, double[] values, int i, int j) {
+		int row = rows[i];
+		rows[i] = rows[j];
+		rows[j] = row;
+		double value = values[i];
+		values[i] = values[j];
+		values[j] = value;
+	}
+}
@@ -0,0 +1,55 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.snapshot;
+
+import java.beans.ConstructorProperties;
+import java.util.Set;
+
+/**
+ * Names read from a snapshot together with the version of this snapshot : the
+ * version pins the snapshot for the next reads (see the readers taking a version).
+ */
+public class VersionedNames {
+
+	// Members
+	private final long version;
+	private final long captureTime;
+	private final Set<String> names;
+
+	/**
+	 *
+	 * @param version
+	 * @param captureTime
+	 * @param names
+	 */
+	@ConstructorProperties({"version", "captureTime", "names"})
+	public VersionedNames(long version, long captureTime, Set<String> names) {
+		this.version = version;
+		this.captureTime = captureTime;
+		this.names = names;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public long getCaptureTime() {
+		return captureTime;
+	}
+
+	public Set<String> getNames() {
+		return names;
+	}
+}
@@ -0,0 +1,61 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.snapshot;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Value of a statistic together with the version of the snapshot it was read from.
+ * present tells a real 0 apart from a statistic missing from the snapshot.
+ */
+public class VersionedValue {
+
+	// Members
+	private final long version;
+	private final long captureTime;
+	private final double value;
+	private final boolean present;
+
+	/**
+	 *
+	 * @param version
+	 * @param captureTime
+	 * @param value (0 if not present)
+	 * @param present
+	 */
+	@ConstructorProperties({"version", "captureTime", "value", "present"})
+	public VersionedValue(long version, long captureTime, double value, boolean present) {
+		this.version = version;
+		this.captureTime = captureTime;
+		this.value = value;
+		this.present = present;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public long getCaptureTime() {
+		return captureTime;
+	}
+
+	public double getValue() {
+		return value;
+	}
+
+	public boolean isPresent() {
+		return present;
+	}
+}
@@ -0,0 +1,226 @@
+//Copyright (C) 2008-2013 Paul Done . All rights reserved.
+//This file is part of the DomainHealth software distribution. Refer to the  
+//file LICENSE in the root of the DomainHealth distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE 
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.util;
+
+/**
+ * Application settings which can be tuned by the administrator. Each setting
+ * is read from a JVM system property (-Dwlosbstats.xxx=...) of the server
+ * running the application and falls back to its default value when the
+ * property is not set or is not valid.
+ */
+public class AppProperties {
+
+	// -----------------------------------------------------------------
+	// Connection to the domain runtime of the admin server
+	// ----------------------------------------------------
+	public final static String CONNECTION_HEALTH_CHECK_SECS_PROP = "wlosbstats.connectionHealthCheckSecs";
+	public final static int DEFAULT_CONNECTION_HEALTH_CHECK_SECS = 60;
+	// -----------------------------------------------------------------
+	
+	// -----------------------------------------------------------------
+	// Collection of the statistics of all the servers
+	// -----------------------------------------------
+	// Budget of each server, from the scheduling of its work (the time in the queue is included)
+	public final static String SERVER_COLLECT_TIMEOUT_SECS_PROP = "wlosbstats.serverCollectTimeoutSecs";
+	public final static int DEFAULT_SERVER_COLLECT_TIMEOUT_SECS = 30;
+	// -----------------------------------------------------------------
+	
+	// -----------------------------------------------------------------
+	// Batches of Ref sent to the aggregator
+	// -------------------------------------
+	public final static String REF_BATCH_SIZE_PROP = "wlosbstats.refBatchSize";
+	public final static int DEFAULT_REF_BATCH_SIZE = 200;
+	public final static String REF_BATCH_MAX_IN_FLIGHT_PROP = "wlosbstats.refBatchMaxInFlight";
+	public final static int DEFAULT_REF_BATCH_MAX_IN_FLIGHT = 4;
+	public final static String REF_BATCH_TIMEOUT_SECS_PROP = "wlosbstats.refBatchTimeoutSecs";
+	public final static int DEFAULT_REF_BATCH_TIMEOUT_SECS = 60;
+	// Must match the max-threads-constraint of wlosbstats_RefBatchFetcherWorkMngr (weblogic.xml)
+	public final static String REF_BATCH_MAX_THREADS_PROP = "wlosbstats.refBatchMaxThreads";
+	public final static int DEFAULT_REF_BATCH_MAX_THREADS = 8;
+	// -----------------------------------------------------------------
+	
+	// -----------------------------------------------------------------
+	// Cache of the monitored Refs
+	// ---------------------------
+	public final static String REF_CACHE_TTL_SECS_PROP = "wlosbstats.refCacheTtlSecs";
+	public final static int DEFAULT_REF_CACHE_TTL_SECS = 300;
+	// -----------------------------------------------------------------
+	
+	// -----------------------------------------------------------------
+	// Scheduled collections
+	// ---------------------
+	// List of jobs separated by ';' - Each job is "name,serverName,osbType,resourceType,statisticType,periodSecs[,jitterSecs]"
+	// (an empty serverName means the cluster and an empty statisticType means all the types)
+	public final static String COLLECTION_JOBS_PROP = "wlosbstats.collectionJobs";
+	public final static String DEFAULT_COLLECTION_JOBS = null;
+	public final static String COLLECTION_JOB_SEPARATOR = ";";
+	public final static String COLLECTION_JOB_FIELD_SEPARATOR = ",";
+	// -----------------------------------------------------------------
+	
+	// -----------------------------------------------------------------
+	// Snapshots kept to compute the deltas (for each query)
+	// --------------------------------------------------
+	public final static String RETAINED_SNAPSHOTS_PROP = "wlosbstats.retainedSnapshots";
+	public final static int DEFAULT_RETAINED_SNAPSHOTS = 32;
+	// -----------------------------------------------------------------
+	
+	// -----------------------------------------------------------------
+	// In-memory history (maxSeries * samples * 8 bytes at most)
+	// ----------------------------------------------------------
+	public final static String HISTORY_SAMPLES_PROP = "wlosbstats.historySamples";
+	public final static int DEFAULT_HISTORY_SAMPLES = 720;
+	public final static String HISTORY_MAX_SERIES_PROP = "wlosbstats.historyMaxSeries";
+	public final static int DEFAULT_HISTORY_MAX_SERIES = 60000;
+	// -----------------------------------------------------------------
+	
+	// -----------------------------------------------------------------
+	// Latency percentiles (one histogram per service and interval statistic per time bucket)
+	// --------------------------------------------------------------------------------------
+	public final static String PERCENTILE_BUCKET_MINUTES_PROP = "wlosbstats.percentileBucketMinutes";
+	public final static int DEFAULT_PERCENTILE_BUCKET_MINUTES = 60;
+	public final static String PERCENTILE_BUCKETS_PROP = "wlosbstats.percentileBuckets";
+	public final static int DEFAULT_PERCENTILE_BUCKETS = 24;
+	public final static String PERCENTILE_MAX_HISTOGRAMS_PROP = "wlosbstats.percentileMaxHistograms";
+	public final static int DEFAULT_PERCENTILE_MAX_HISTOGRAMS = 20000;
+	// -----------------------------------------------------------------
+	
+	// -----------------------------------------------------------------
+	// Baselines (EWMA) of the throughput, error ratio and latency and anomaly detection
+	// ---------------------------------------------------------------------------------
+	public final static String BASELINE_HALF_LIFE_SAMPLES_PROP = "wlosbstats.baselineHalfLifeSamples";
+	public final static int DEFAULT_BASELINE_HALF_LIFE_SAMPLES = 20;
+	public final static String BASELINE_SIGMA_THRESHOLD_PROP = "wlosbstats.baselineSigmaThreshold";
+	public final static double DEFAULT_BASELINE_SIGMA_THRESHOLD = 3;
+	public final static String BASELINE_WARMUP_SAMPLES_PROP = "wlosbstats.baselineWarmupSamples";
+	public final static int DEFAULT_BASELINE_WARMUP_SAMPLES = 10;
+	// -----------------------------------------------------------------
+	
+	// -----------------------------------------------------------------
+	// Alerting rules evaluated after each collection (JMX notifications)
+	// List of rules separated by ';' - Each rule is "name,metric,operator,threshold[,clearThreshold[,servicePattern]]"
+	// (operator is '>', '<' or 'changed' - for example "errors,error-ratio,>,0.05,0.02,Proxy/*")
+	// ------------------------------------------------------------------
+	public final static String ALERT_RULES_PROP = "wlosbstats.alertRules";
+	public final static String DEFAULT_ALERT_RULES = null;
+	public final static String ALERT_RULE_SEPARATOR = ";";
+	public final static String ALERT_RULE_FIELD_SEPARATOR = ",";
+	// -----------------------------------------------------------------
+	
+	// -----------------------------------------------------------------
+	// Notification published after each snapshot (NONE, SUMMARY or DELTA)
+	// --------------------------------------------------------------------
+	public final static String SNAPSHOT_NOTIFICATIONS_PROP = "wlosbstats.snapshotNotifications";
+	public final static String DEFAULT_SNAPSHOT_NOTIFICATIONS = "NONE";
+	// -----------------------------------------------------------------
+	
+	// -----------------------------------------------------------------
+	// Memory-mapped history (long retention, off-heap)
+	// ------------------------------------------------
+	public final static String MAPPED_HISTORY_ENABLED_PROP = "wlosbstats.mappedHistoryEnabled";
+	public final static boolean DEFAULT_MAPPED_HISTORY_ENABLED = false;
+	public final static String MAPPED_HISTORY_DIR_PROP = "wlosbstats.mappedHistoryDir";
+	public final static String DEFAULT_MAPPED_HISTORY_DIR = System.getProperty("user.dir") + "/wlosbstats/history";
+	public final static String MAPPED_HISTORY_SEGMENT_HOURS_PROP = "wlosbstats.mappedHistorySegmentHours";
+	public final static int DEFAULT_MAPPED_HISTORY_SEGMENT_HOURS = 1;
+	public final static String MAPPED_HISTORY_RETENTION_DAYS_PROP = "wlosbstats.mappedHistoryRetentionDays";
+	public final static int DEFAULT_MAPPED_HISTORY_RETENTION_DAYS = 8;
+	public final static String MAPPED_HISTORY_SEGMENT_RECORDS_PROP = "wlosbstats.mappedHistorySegmentRecords";
+	public final static int DEFAULT_MAPPED_HISTORY_SEGMENT_RECORDS = 4000000;
+	// -----------------------------------------------------------------
+	
+	/**
+	 * Gets the string value of a setting.
+	 * 
+	 * @param name The name of the system property
+	 * @param defaultValue The value to use if the property is not set
+	 * @return The value of the setting
+	 */
+	public static String getProperty(String name, String defaultValue) {
+		String value = System.getProperty(name);
+		return (value == null || value.trim().length() == 0) ? defaultValue : value.trim();
+	}
+
+	/**
+	 * Gets the integer value of a setting.
+	 * 
+	 * @param name The name of the system property
+	 * @param defaultValue The value to use if the property is not set or not a number
+	 * @return The value of the setting
+	 */
+	public static int getIntProperty(String name, int defaultValue) {
+		String value = getProperty(name, null);
+		
+		if (value != null) {
+			try {
+				return Integer.parseInt(value);
+			} catch (NumberFormatException e) {
+				AppLog.getLogger().warning("Invalid value [" + value + "] for property [" + name + "] - Using default value [" + defaultValue + "]");
+			}
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Gets the long value of a setting.
+	 * 
+	 * @param name The name of the system property
+	 * @param defaultValue The value to use if the property is not set or not a number
+	 * @return The value of the setting
+	 */
+	public static long getLongProperty(String name, long defaultValue) {
+		String value = getProperty(name, null);
+		
+		if (value != null) {
+			try {
+				return Long.parseLong(value);
+			} catch (NumberFormatException e) {
+				AppLog.getLogger().warning("Invalid value [" + value + "] for property [" + name + "] - Using default value [" + defaultValue + "]");
+			}
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Gets the double value of a setting.
+	 * 
+	 * @param name The name of the system property
+	 * @param defaultValue The value to use if the property is not set or not a number
+	 * @return The value of the setting
+	 */
+	public static double getDoubleProperty(String name, double defaultValue) {
+		String value = getProperty(name, null);
+		
+		if (value != null) {
+			try {
+				return Double.parseDouble(value);
+			} catch (NumberFormatException e) {
+				AppLog.getLogger().warning("Invalid value [" + value + "] for property [" + name + "] - Using default value [" + defaultValue + "]");
+			}
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Gets the boolean value of a setting.
+	 * 
+	 * @param name The name of the system property
+	 * @param defaultValue The value to use if the property is not set
+	 * @return The value of the setting
+	 */
+	public static boolean getBooleanProperty(String name, boolean defaultValue) {
+		String value = getProperty(name, null);
+		return (value == null) ? defaultValue : Boolean.parseBoolean(value);
+	}
+}
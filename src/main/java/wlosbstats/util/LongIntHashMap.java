@@ -0,0 +1,153 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.util;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from a long to a (non negative) int, without any
+ * boxing : get() doesn't allocate and returns ABSENT for a missing key. Entries
+ * can't be removed (the maps are rebuilt instead).
+ */
+public class LongIntHashMap {
+
+	// Members
+	private long[] keys;
+	private int[] values;
+	private int size = 0;
+	private int mask;
+	private int resizeThreshold;
+
+	// Constants
+	public final static int ABSENT = -1;
+	private final static float LOAD_FACTOR = 0.5f;
+	private final static int MIN_CAPACITY = 16;
+
+	/**
+	 *
+	 * @param expectedSize
+	 */
+	public LongIntHashMap(int expectedSize) {
+		allocate(capacityFor(expectedSize));
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @return The value or ABSENT
+	 */
+	public int get(long key) {
+
+		int index = hash(key) & mask;
+		while (true) {
+			int value = values[index];
+			if (value == ABSENT) {
+				return ABSENT;
+			}
+			if (keys[index] == key) {
+				return value;
+			}
+			index = (index + 1) & mask;
+		}
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @param value (must be >= 0)
+	 */
+	public void put(long key, int value) {
+
+		if (value < 0) {
+			throw new IllegalArgumentException("Only positive values are allowed");
+		}
+
+		int index = hash(key) & mask;
+		while (values[index] != ABSENT) {
+			if (keys[index] == key) {
+				values[index] = value;
+				return;
+			}
+			index = (index + 1) & mask;
+		}
+
+		keys[index] = key;
+		values[index] = value;
+		if (++size > resizeThreshold) {
+			resize();
+		}
+	}
+
+	/**
+	 * @return The number of entries
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Doubles the capacity
+	 */
+	private void resize() {
+
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(keys.length * 2);
+		size = 0;
+
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldValues[i] != ABSENT) {
+				put(oldKeys[i], oldValues[i]);
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param capacity (power of 2)
+	 */
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new int[capacity];
+		Arrays.fill(values, ABSENT);
+		mask = capacity - 1;
+		resizeThreshold = (int) (capacity * LOAD_FACTOR);
+	}
+
+	/**
+	 *
+	 * @param expectedSize
+	 * @return The power of 2 keeping the load factor below LOAD_FACTOR
+	 */
+	private static int capacityFor(int expectedSize) {
+
+		int capacity = MIN_CAPACITY;
+		while (capacity * LOAD_FACTOR < expectedSize) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	/**
+	 * Mixes the bits of the key (the ids packed in the keys are small numbers)
+	 *
+	 * @param key
+	 * @return
+	 */
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+}
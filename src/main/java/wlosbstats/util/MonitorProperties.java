@@ -109,6 +109,22 @@ public class MonitorProperties {
 	
 	public final static String OSB_STATISTIC_TYPE_STATUS_PROPERTY_INITIAL = "_init";
 	public final static String OSB_STATISTIC_TYPE_STATUS_PROPERTY_CURRENT = "_current";
+	
+	// -----------------------------------------------------------------
+	// Derived from two consecutive snapshots
+	// --------------------------------------
+	public final static String OSB_DERIVED_PROPERTY_RATE = "_rate";
+	public final static String OSB_STATISTIC_TYPE_INTERVAL_PROPERTY_INTERVAL_AVERAGE = "_interval-average";
+	public final static String OSB_STATISTIC_TYPE_INTERVAL_PROPERTY_INTERVAL_COUNT = "_interval-count";
+	public final static String OSB_ERROR_RATIO_PROPERTY = "error-ratio";
+	// -----------------------------------------------------------------
+	
+	// -----------------------------------------------------------------
+	// Order of the Top-N rankings
+	// ---------------------------
+	public final static String RANKING_ORDER_DESC = "DESC";
+	public final static String RANKING_ORDER_ASC = "ASC";
+	// -----------------------------------------------------------------
 		
 	// -----------------------------------------------------------------
 	public final static Map<String, Set<String>> OSB_STATISTIC_TYPE_TREE = new HashMap<String, Set<String>>();
@@ -0,0 +1,120 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.history;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HistorySegmentTest {
+
+	private File directory;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("segment").toFile();
+	}
+
+	@After
+	public void tearDown() {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	@Test
+	public void testAppendAndRead() throws IOException {
+
+		HistorySegment segment = HistorySegment.create(directory, 1000L, 4, 10);
+		assertTrue(segment.append(0, 1000L, 1d));
+		assertTrue(segment.append(1, 1000L, 10d));
+		assertTrue(segment.append(0, 2000L, 2d));
+		assertTrue(segment.append(0, 3000L, 3d));
+		segment.commit();
+
+		assertArrayEquals(new double[] { 2d, 3d }, read(segment, 0, 1500L, 3000L).getValues(), 0d);
+		assertArrayEquals(new long[] { 1000L }, read(segment, 1, 0L, Long.MAX_VALUE).getTimestamps());
+		assertEquals(0, read(segment, 2, 0L, Long.MAX_VALUE).getTimestamps().length);
+		assertEquals(3000L, segment.getLastTime());
+	}
+
+	@Test
+	public void testUncommittedRecordsAreNotRead() throws IOException {
+
+		HistorySegment segment = HistorySegment.create(directory, 1000L, 4, 10);
+		segment.append(0, 1000L, 1d);
+		segment.commit();
+		segment.append(0, 2000L, 2d);
+
+		assertArrayEquals(new long[] { 1000L }, read(segment, 0, 0L, Long.MAX_VALUE).getTimestamps());
+	}
+
+	@Test
+	public void testLimits() throws IOException {
+
+		HistorySegment segment = HistorySegment.create(directory, 1000L, 2, 2);
+
+		assertFalse(segment.append(2, 1000L, 1d));
+		assertFalse(segment.append(-1, 1000L, 1d));
+		assertTrue(segment.hasRoom(2));
+		assertTrue(segment.append(0, 1000L, 1d));
+		assertTrue(segment.append(1, 1000L, 1d));
+		assertFalse(segment.hasRoom(1));
+		assertFalse(segment.append(0, 2000L, 1d));
+	}
+
+	@Test
+	public void testReopenReadOnly() throws IOException {
+
+		HistorySegment segment = HistorySegment.create(directory, 1000L, 4, 10);
+		segment.append(3, 1000L, 7d);
+		segment.commit();
+		segment.force();
+
+		HistorySegment reopened = HistorySegment.open(segment.getFile());
+		assertEquals(1000L, reopened.getStartTime());
+		assertArrayEquals(new double[] { 7d }, read(reopened, 3, 0L, Long.MAX_VALUE).getValues(), 0d);
+		assertFalse(reopened.append(3, 2000L, 8d));
+	}
+
+	@Test
+	public void testDelete() throws IOException {
+
+		HistorySegment segment = HistorySegment.create(directory, 1000L, 4, 10);
+		segment.append(0, 1000L, 1d);
+
+		assertTrue(segment.delete());
+		assertFalse(segment.getFile().exists());
+	}
+
+	private static StatisticHistory read(HistorySegment segment, int seriesId, long fromMillis, long toMillis) {
+		SampleBuffer samples = new SampleBuffer();
+		segment.read(seriesId, fromMillis, toMillis, samples);
+		return samples.toHistoryReversed("service", "resource", "statistic");
+	}
+}
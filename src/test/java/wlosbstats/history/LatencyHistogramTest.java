@@ -0,0 +1,89 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.history;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void testEmpty() {
+		assertTrue(Double.isNaN(new LatencyHistogram().getQuantile(0.5)));
+	}
+
+	@Test
+	public void testQuantilesWithinRelativeAccuracy() {
+
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int value = 1; value <= 1000; value++) {
+			histogram.add(value, 1);
+		}
+
+		assertEquals(1000d, histogram.getCount(), 0d);
+		assertRelative(500d, histogram.getQuantile(0.5));
+		assertRelative(990d, histogram.getQuantile(0.99));
+		assertEquals(1d, histogram.getQuantile(0), 0d);
+		assertRelative(1000d, histogram.getQuantile(1));
+	}
+
+	@Test
+	public void testWeights() {
+
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.add(10d, 99);
+		histogram.add(1000d, 1);
+		histogram.add(5d, 0);
+		histogram.add(Double.NaN, 10);
+
+		assertEquals(100d, histogram.getCount(), 0d);
+		assertRelative(10d, histogram.getQuantile(0.5));
+		assertRelative(10d, histogram.getQuantile(0.99));
+		assertRelative(1000d, histogram.getQuantile(0.999));
+	}
+
+	@Test
+	public void testMerge() {
+
+		LatencyHistogram low = new LatencyHistogram();
+		LatencyHistogram high = new LatencyHistogram();
+		low.add(0d, 50);
+		high.add(100d, 50);
+		low.merge(high);
+		low.merge(new LatencyHistogram());
+
+		assertEquals(100d, low.getCount(), 0d);
+		assertEquals(0d, low.getQuantile(0.25), 0d);
+		assertRelative(100d, low.getQuantile(0.75));
+	}
+
+	@Test
+	public void testBinsCappedOnWideRange() {
+
+		// More than the maximum number of bins : the lowest bins are collapsed, the high quantiles stay accurate
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.add(0.02d, 1);
+		histogram.add(1e30d, 1);
+
+		assertRelative(1e30d, histogram.getQuantile(1));
+		assertEquals(2d, histogram.getCount(), 0d);
+	}
+
+	private static void assertRelative(double expected, double actual) {
+		assertEquals(expected, actual, expected * LatencyHistogram.RELATIVE_ACCURACY);
+	}
+}
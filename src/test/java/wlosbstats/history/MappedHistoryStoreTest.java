@@ -0,0 +1,115 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.history;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import wlosbstats.snapshot.ColumnarStatisticsBuilder;
+import wlosbstats.snapshot.StatisticsDictionary;
+import wlosbstats.snapshot.StatisticsSnapshot;
+
+public class MappedHistoryStoreTest {
+
+	private final static long HOUR_MILLIS = 3600000L;
+
+	private File directory;
+	private MappedHistoryStore store;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("history").toFile();
+		store = new MappedHistoryStore(directory, HOUR_MILLIS, 24 * HOUR_MILLIS, 2, 100);
+	}
+
+	@After
+	public void tearDown() {
+		store.close();
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	@Test
+	public void testRecordAndRead() {
+
+		store.record(snapshot(1, 1000L, 1d, 2d, 3d));
+		store.record(snapshot(2, 2000L, 4d, 5d, 6d));
+
+		StatisticHistory history = store.getHistory(scopeKey(), "service", "resource", "metric-0", 0L, Long.MAX_VALUE);
+		assertArrayEquals(new long[] { 1000L, 2000L }, history.getTimestamps());
+		assertArrayEquals(new double[] { 1d, 4d }, history.getValues(), 0d);
+
+		history = store.getHistory(scopeKey(), "service", "resource", "metric-1", 1500L, Long.MAX_VALUE);
+		assertArrayEquals(new long[] { 2000L }, history.getTimestamps());
+	}
+
+	@Test
+	public void testValuesBeyondMaxSeriesAreDropped() {
+
+		// 3 values for 2 series at most : the third one is dropped at each snapshot
+		store.record(snapshot(1, 1000L, 1d, 2d, 3d));
+		store.record(snapshot(2, 2000L, 4d, 5d, 6d));
+
+		assertEquals(2, store.getDroppedRecords());
+		assertEquals(0, store.getHistory(scopeKey(), "service", "resource", "metric-2", 0L, Long.MAX_VALUE).getTimestamps().length);
+		assertEquals(2, store.getHistory(scopeKey(), "service", "resource", "metric-1", 0L, Long.MAX_VALUE).getTimestamps().length);
+	}
+
+	@Test
+	public void testExpiredSegmentsAreDeleted() {
+
+		store.record(snapshot(1, 0L, 1d, 2d, 3d));
+		store.record(snapshot(2, 2 * HOUR_MILLIS, 1d, 2d, 3d));
+		store.record(snapshot(3, 30 * HOUR_MILLIS, 1d, 2d, 3d));
+
+		File[] segments = directory.listFiles();
+		int segmentCount = 0;
+		for (File file : segments) {
+			if (file.getName().startsWith(HistorySegment.FILE_PREFIX)) {
+				segmentCount++;
+			}
+		}
+		assertEquals(1, segmentCount);
+		assertEquals(1, store.getHistory(scopeKey(), "service", "resource", "metric-0", 0L, Long.MAX_VALUE).getTimestamps().length);
+	}
+
+	private static String scopeKey() {
+		return StatisticsSnapshot.toScopeKey("server", "Service", "SERVICE", null);
+	}
+
+	private static StatisticsSnapshot snapshot(long version, long captureTime, double... values) {
+
+		ColumnarStatisticsBuilder builder = new ColumnarStatisticsBuilder();
+		int serviceId = StatisticsDictionary.SERVICES.getId("service");
+		int resourceStatisticId = StatisticsDictionary.RESOURCE_STATISTICS.getId("resource");
+		for (int i = 0; i < values.length; i++) {
+			builder.add(serviceId, resourceStatisticId, StatisticsDictionary.METRICS.getId("metric-" + i), values[i]);
+		}
+		return new StatisticsSnapshot(version, captureTime, "server", "Service", "SERVICE", null, builder.build());
+	}
+}
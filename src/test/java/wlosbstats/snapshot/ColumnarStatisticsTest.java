@@ -0,0 +1,116 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.snapshot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ColumnarStatisticsTest {
+
+	@Test
+	public void testBuildSortsByKey() {
+
+		// Enough rows for the quicksort (not only the insertion sort)
+		Random random = new Random(42);
+		ColumnarStatisticsBuilder builder = new ColumnarStatisticsBuilder(16);
+		for (int i = 0; i < 1000; i++) {
+			int serviceId = random.nextInt(100);
+			int metricId = random.nextInt(1000);
+			builder.add(serviceId, 0, metricId, serviceId * 1000 + metricId);
+		}
+		ColumnarStatistics statistics = builder.build();
+
+		for (int row = 1; row < statistics.size(); row++) {
+			assertTrue(statistics.getKey(row - 1) < statistics.getKey(row));
+		}
+		for (int row = 0; row < statistics.size(); row++) {
+			long key = statistics.getKey(row);
+			assertEquals(StatisticsDictionary.getServiceId(key) * 1000 + StatisticsDictionary.getMetricId(key), statistics.getValue(row), 0d);
+			assertEquals(row, statistics.indexOf(key));
+		}
+	}
+
+	@Test
+	public void testBuildRemovesDuplicates() {
+
+		ColumnarStatisticsBuilder builder = new ColumnarStatisticsBuilder();
+		builder.add(1, 1, 1, 10d);
+		builder.add(2, 1, 1, 20d);
+		builder.add(1, 1, 1, 10d);
+		ColumnarStatistics statistics = builder.build();
+
+		assertEquals(2, statistics.size());
+		assertEquals(10d, statistics.getValue(StatisticsDictionary.toKey(1, 1, 1), Double.NaN), 0d);
+		assertEquals(20d, statistics.getValue(StatisticsDictionary.toKey(2, 1, 1), Double.NaN), 0d);
+	}
+
+	@Test
+	public void testEmpty() {
+
+		assertSame(ColumnarStatistics.EMPTY, new ColumnarStatisticsBuilder().build());
+		assertSame(ColumnarStatistics.EMPTY, ColumnarStatistics.fromMap(null));
+		assertEquals(0, ColumnarStatistics.EMPTY.toMap().size());
+	}
+
+	@Test
+	public void testMissingAndNegativeKeys() {
+
+		ColumnarStatisticsBuilder builder = new ColumnarStatisticsBuilder();
+		builder.add(1, 1, 1, 10d);
+		ColumnarStatistics statistics = builder.build();
+
+		assertEquals(-1, statistics.indexOf(StatisticsDictionary.toKey(1, 1, 2)));
+		assertEquals(-1, statistics.indexOf(-1L));
+		assertFalse(statistics.contains(-1L));
+		assertEquals(0d, statistics.getValue(StatisticsDictionary.toKey(1, 1, 2), 0d), 0d);
+	}
+
+	@Test
+	public void testMapRoundTrip() {
+
+		Map<String, Map<String, Map<String, Double>>> services = new LinkedHashMap<>();
+		services.put("service-b", resourceStatistics("resource-1", "message-count_count", 5d));
+		services.put("service-a", resourceStatistics("resource-2", "response-time_max", 1.5d));
+		services.get("service-a").put("resource-1", statistics("error-count_count", 0d));
+
+		ColumnarStatistics statistics = ColumnarStatistics.fromMap(services);
+		Map<String, Map<String, Map<String, Double>>> map = statistics.toMap();
+
+		assertEquals(3, statistics.size());
+		assertEquals(services, map);
+		assertEquals(statistics.size(), ColumnarStatistics.fromMap(map).size());
+		assertTrue(statistics.hasMetric(StatisticsDictionary.METRICS.findId("response-time_max")));
+	}
+
+	private static Map<String, Map<String, Double>> resourceStatistics(String resourceStatisticName, String statisticName, double value) {
+		Map<String, Map<String, Double>> resourceStatistics = new LinkedHashMap<>();
+		resourceStatistics.put(resourceStatisticName, statistics(statisticName, value));
+		return resourceStatistics;
+	}
+
+	private static Map<String, Double> statistics(String statisticName, double value) {
+		Map<String, Double> statistics = new LinkedHashMap<>();
+		statistics.put(statisticName, value);
+		return statistics;
+	}
+}
@@ -0,0 +1,72 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.snapshot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Test;
+
+import wlosbstats.util.MonitorProperties;
+
+import com.bea.wli.monitoring.StatisticType;
+
+public class DerivedStatisticsTest {
+
+	private final static int SERVICE = StatisticsDictionary.SERVICES.getId("derived-service");
+	private final static int RESOURCE = StatisticsDictionary.RESOURCE_STATISTICS.getId("derived-resource");
+	private final static String RESPONSE_TIME = MonitorProperties.OSB_RESPONSE_TIME_INTERVAL_PROPERTY;
+	private final static int COUNT_ID = MetricCatalog.getMetricId(StatisticType.INTERVAL, RESPONSE_TIME, MetricCatalog.INTERVAL_COUNT_FACET);
+	private final static int SUM_ID = MetricCatalog.getMetricId(StatisticType.INTERVAL, RESPONSE_TIME, MetricCatalog.INTERVAL_SUM_FACET);
+	private final static long AVERAGE_KEY = key(RESPONSE_TIME + MonitorProperties.OSB_STATISTIC_TYPE_INTERVAL_PROPERTY_INTERVAL_AVERAGE);
+	private final static long COUNT_DELTA_KEY = key(RESPONSE_TIME + MonitorProperties.OSB_STATISTIC_TYPE_INTERVAL_PROPERTY_INTERVAL_COUNT);
+
+	@Test
+	public void testAverageOverTheInterval() {
+
+		ColumnarStatistics derived = DerivedStatistics.addDerivedStatistics(latency(14d, 400d), latency(10d, 200d), 60000L);
+
+		assertEquals(50d, derived.getValue(AVERAGE_KEY, Double.NaN), 0d);
+		assertEquals(4d, derived.getValue(COUNT_DELTA_KEY, Double.NaN), 0d);
+	}
+
+	@Test
+	public void testNoAverageForAnIdleInterval() {
+
+		ColumnarStatistics derived = DerivedStatistics.addDerivedStatistics(latency(10d, 200d), latency(10d, 200d), 60000L);
+
+		assertFalse(derived.contains(AVERAGE_KEY));
+		assertEquals(0d, derived.getValue(COUNT_DELTA_KEY, Double.NaN), 0d);
+	}
+
+	@Test
+	public void testCounterReset() {
+
+		ColumnarStatistics derived = DerivedStatistics.addDerivedStatistics(latency(2d, 30d), latency(10d, 200d), 60000L);
+
+		assertEquals(15d, derived.getValue(AVERAGE_KEY, Double.NaN), 0d);
+	}
+
+	private static ColumnarStatistics latency(double count, double sum) {
+		ColumnarStatisticsBuilder builder = new ColumnarStatisticsBuilder();
+		builder.add(SERVICE, RESOURCE, COUNT_ID, count);
+		builder.add(SERVICE, RESOURCE, SUM_ID, sum);
+		return builder.build();
+	}
+
+	private static long key(String metricName) {
+		return StatisticsDictionary.toKey(SERVICE, RESOURCE, StatisticsDictionary.METRICS.getId(metricName));
+	}
+}
@@ -0,0 +1,89 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.snapshot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class SnapshotCodecTest {
+
+	@Test
+	public void testRoundTrip() throws IOException {
+
+		ColumnarStatisticsBuilder builder = new ColumnarStatisticsBuilder();
+		builder.add(id("codec-service-1"), resourceStatisticId("codec-resource"), metricId("response-time_max"), 12.5d);
+		builder.add(id("codec-service-1"), resourceStatisticId("codec-resource"), metricId("message-count_count"), 3d);
+		builder.add(id("codec-service-2"), resourceStatisticId("codec-resource"), metricId("response-time_max"), Double.NaN);
+		StatisticsSnapshot snapshot = new StatisticsSnapshot(42L, 1000L, "server-1", "ProxyService", "SERVICE", null, builder.build());
+
+		StatisticsSnapshot decoded = SnapshotCodec.decode(SnapshotCodec.encode(snapshot));
+
+		assertEquals(42L, decoded.getVersion());
+		assertEquals(1000L, decoded.getCaptureTime());
+		assertEquals("server-1", decoded.getServerName());
+		assertEquals("ProxyService", decoded.getOsbResourceType());
+		assertEquals("SERVICE", decoded.getResourceType());
+		assertNull(decoded.getStatisticType());
+		assertEquals(snapshot.columns().size(), decoded.columns().size());
+		for (int row = 0; row < snapshot.columns().size(); row++) {
+			assertEquals(snapshot.columns().getKey(row), decoded.columns().getKey(row));
+			assertEquals(snapshot.columns().getValue(row), decoded.columns().getValue(row), 0d);
+		}
+	}
+
+	@Test
+	public void testEmptySnapshot() throws IOException {
+
+		StatisticsSnapshot decoded = SnapshotCodec.decode(SnapshotCodec.encode(new StatisticsSnapshot(1L, 2L, null, "BusinessService", "URI", "COUNT", ColumnarStatistics.EMPTY)));
+
+		assertNull(decoded.getServerName());
+		assertEquals("COUNT", decoded.getStatisticType());
+		assertEquals(0, decoded.columns().size());
+	}
+
+	@Test(expected = IOException.class)
+	public void testInvalidMagic() throws IOException {
+
+		byte[] bytes = SnapshotCodec.encode(new StatisticsSnapshot(1L, 2L, null, "ProxyService", "SERVICE", null, ColumnarStatistics.EMPTY));
+		bytes[0] = 0;
+		SnapshotCodec.decode(bytes);
+	}
+
+	@Test(expected = IOException.class)
+	public void testTruncated() throws IOException {
+
+		ColumnarStatisticsBuilder builder = new ColumnarStatisticsBuilder();
+		builder.add(id("codec-service-1"), resourceStatisticId("codec-resource"), metricId("response-time_max"), 12.5d);
+		byte[] bytes = SnapshotCodec.encode(new StatisticsSnapshot(1L, 2L, null, "ProxyService", "SERVICE", null, builder.build()));
+		SnapshotCodec.decode(Arrays.copyOf(bytes, bytes.length - 4));
+	}
+
+	private static int id(String serviceName) {
+		return StatisticsDictionary.SERVICES.getId(serviceName);
+	}
+
+	private static int resourceStatisticId(String resourceStatisticName) {
+		return StatisticsDictionary.RESOURCE_STATISTICS.getId(resourceStatisticName);
+	}
+
+	private static int metricId(String metricName) {
+		return StatisticsDictionary.METRICS.getId(metricName);
+	}
+}
@@ -0,0 +1,103 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.snapshot;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SnapshotDiffTest {
+
+	private final static int RESOURCE = StatisticsDictionary.RESOURCE_STATISTICS.getId("diff-resource");
+	private final static int COUNT = StatisticsDictionary.METRICS.getId("message-count_count");
+	private final static int MAX = StatisticsDictionary.METRICS.getId("response-time_max");
+	private final static int SERVICE_1 = StatisticsDictionary.SERVICES.getId("diff-service-1");
+	private final static int SERVICE_2 = StatisticsDictionary.SERVICES.getId("diff-service-2");
+	private final static int SERVICE_3 = StatisticsDictionary.SERVICES.getId("diff-service-3");
+
+	@Test
+	public void testChangedNewAndRemovedStatistics() {
+
+		ColumnarStatisticsBuilder before = new ColumnarStatisticsBuilder();
+		before.add(SERVICE_1, RESOURCE, COUNT, 1d);
+		before.add(SERVICE_1, RESOURCE, MAX, 5d);
+		before.add(SERVICE_2, RESOURCE, COUNT, 7d);
+
+		ColumnarStatisticsBuilder after = new ColumnarStatisticsBuilder();
+		after.add(SERVICE_1, RESOURCE, COUNT, 2d);
+		after.add(SERVICE_2, RESOURCE, COUNT, 7d);
+		after.add(SERVICE_3, RESOURCE, COUNT, 1d);
+
+		StatisticsDelta delta = SnapshotDiff.diff(snapshot(1L, before.build()), snapshot(2L, after.build()));
+
+		assertFalse(delta.isFull());
+		assertEquals(1L, delta.getFromVersion());
+		assertEquals(2L, delta.getVersion());
+		// Changed count, removed max (NaN) of a service still present, new service
+		assertArrayEquals(new String[] { "diff-service-1", "diff-service-1", "diff-service-3" }, delta.getServiceNames());
+		assertArrayEquals(new String[] { "message-count_count", "response-time_max", "message-count_count" }, delta.getStatisticNames());
+		assertArrayEquals(new double[] { 2d, Double.NaN, 1d }, delta.getValues(), 0d);
+		assertEquals(0, delta.getRemovedServiceNames().length);
+	}
+
+	@Test
+	public void testRemovedService() {
+
+		ColumnarStatisticsBuilder before = new ColumnarStatisticsBuilder();
+		before.add(SERVICE_1, RESOURCE, COUNT, 1d);
+		before.add(SERVICE_2, RESOURCE, COUNT, 1d);
+		before.add(SERVICE_2, RESOURCE, MAX, 1d);
+
+		ColumnarStatisticsBuilder after = new ColumnarStatisticsBuilder();
+		after.add(SERVICE_1, RESOURCE, COUNT, 1d);
+
+		StatisticsDelta delta = SnapshotDiff.diff(snapshot(1L, before.build()), snapshot(2L, after.build()));
+
+		assertEquals(0, delta.getValues().length);
+		assertArrayEquals(new String[] { "diff-service-2" }, delta.getRemovedServiceNames());
+	}
+
+	@Test
+	public void testSameNaNIsNotAChange() {
+
+		ColumnarStatisticsBuilder statistics = new ColumnarStatisticsBuilder();
+		statistics.add(SERVICE_1, RESOURCE, MAX, Double.NaN);
+
+		StatisticsDelta delta = SnapshotDiff.diff(snapshot(1L, statistics.build()), snapshot(2L, statistics.build()));
+
+		assertEquals(0, delta.getValues().length);
+	}
+
+	@Test
+	public void testFull() {
+
+		ColumnarStatisticsBuilder statistics = new ColumnarStatisticsBuilder();
+		statistics.add(SERVICE_1, RESOURCE, COUNT, 1d);
+		statistics.add(SERVICE_2, RESOURCE, COUNT, 2d);
+
+		StatisticsDelta delta = SnapshotDiff.full(snapshot(3L, statistics.build()));
+
+		assertTrue(delta.isFull());
+		assertEquals(0L, delta.getFromVersion());
+		assertArrayEquals(new double[] { 1d, 2d }, delta.getValues(), 0d);
+	}
+
+	private static StatisticsSnapshot snapshot(long version, ColumnarStatistics columns) {
+		return new StatisticsSnapshot(version, version * 1000, null, "ProxyService", "SERVICE", null, columns);
+	}
+}
@@ -0,0 +1,73 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.snapshot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class StatisticsDictionaryTest {
+
+	private final static int MAX_SERVICE_ID = (1 << 19) - 1;
+	private final static int MAX_RESOURCE_STATISTIC_ID = (1 << 20) - 1;
+	private final static int MAX_METRIC_ID = (1 << 24) - 1;
+
+	@Test
+	public void testKeyPacking() {
+
+		long key = StatisticsDictionary.toKey(3, 5, 7);
+
+		assertEquals(3, StatisticsDictionary.getServiceId(key));
+		assertEquals(5, StatisticsDictionary.getResourceStatisticId(key));
+		assertEquals(7, StatisticsDictionary.getMetricId(key));
+		assertEquals(StatisticsDictionary.toKey(3, 5, 9), StatisticsDictionary.withMetric(key, 9));
+		assertEquals(StatisticsDictionary.getGroup(key), StatisticsDictionary.getGroup(StatisticsDictionary.toKey(3, 5, 9)));
+	}
+
+	@Test
+	public void testHighestIdsGiveAPositiveKey() {
+
+		long key = StatisticsDictionary.toKey(MAX_SERVICE_ID, MAX_RESOURCE_STATISTIC_ID, MAX_METRIC_ID);
+
+		assertTrue(key > 0);
+		assertEquals(MAX_SERVICE_ID, StatisticsDictionary.getServiceId(key));
+		assertEquals(MAX_RESOURCE_STATISTIC_ID, StatisticsDictionary.getResourceStatisticId(key));
+		assertEquals(MAX_METRIC_ID, StatisticsDictionary.getMetricId(key));
+	}
+
+	@Test
+	public void testKeysSortByServiceThenResourceStatisticThenMetric() {
+
+		assertTrue(StatisticsDictionary.toKey(1, MAX_RESOURCE_STATISTIC_ID, MAX_METRIC_ID) < StatisticsDictionary.toKey(2, 0, 0));
+		assertTrue(StatisticsDictionary.toKey(1, 1, MAX_METRIC_ID) < StatisticsDictionary.toKey(1, 2, 0));
+		assertTrue(StatisticsDictionary.toKey(MAX_SERVICE_ID - 1, 0, 0) < StatisticsDictionary.toKey(MAX_SERVICE_ID, 0, 0));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testServiceIdOutOfRange() {
+		StatisticsDictionary.toKey(MAX_SERVICE_ID + 1, 0, 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeIdRejected() {
+		StatisticsDictionary.toKey(0, -1, 0);
+	}
+
+	@Test
+	public void testFindKeyOfUnknownName() {
+		assertEquals(-1, StatisticsDictionary.findKey("unknown-service-of-the-test", "unknown", "unknown"));
+	}
+}
@@ -0,0 +1,68 @@
+//Copyright (C) 2011-2013 Paul Done . All rights reserved.
+//This file is part of the HostMachineStats software distribution. Refer to
+//the file LICENSE in the root of the HostMachineStats distribution.
+//THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+//AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+//IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+//ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+//LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+//CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+//SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+//INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+//CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+//ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+//POSSIBILITY OF SUCH DAMAGE.
+package wlosbstats.util;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class LongIntHashMapTest {
+
+	@Test
+	public void testPutAndGet() {
+
+		LongIntHashMap map = new LongIntHashMap(4);
+		map.put(1L, 10);
+		map.put(-5L, 20);
+		map.put(Long.MAX_VALUE, 0);
+
+		assertEquals(10, map.get(1L));
+		assertEquals(20, map.get(-5L));
+		assertEquals(0, map.get(Long.MAX_VALUE));
+		assertEquals(LongIntHashMap.ABSENT, map.get(2L));
+		assertEquals(3, map.size());
+	}
+
+	@Test
+	public void testReplace() {
+
+		LongIntHashMap map = new LongIntHashMap(4);
+		map.put(7L, 1);
+		map.put(7L, 2);
+
+		assertEquals(2, map.get(7L));
+		assertEquals(1, map.size());
+	}
+
+	@Test
+	public void testResize() {
+
+		LongIntHashMap map = new LongIntHashMap(0);
+		for (int i = 0; i < 10000; i++) {
+			map.put((long) i << 24, i);
+		}
+
+		assertEquals(10000, map.size());
+		for (int i = 0; i < 10000; i++) {
+			assertEquals(i, map.get((long) i << 24));
+		}
+		assertEquals(LongIntHashMap.ABSENT, map.get(10000L << 24));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeValueRejected() {
+		new LongIntHashMap(4).put(1L, -1);
+	}
+}